@@ -0,0 +1,111 @@
+package com.kalia.friday.event;
+
+import biweekly.util.ByDay;
+import biweekly.util.Frequency;
+import biweekly.util.ICalDate;
+import biweekly.util.Recurrence;
+
+import java.time.DayOfWeek;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.List;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Immutable and normalized form of an {@code rrule}, as consumed by the {@link RecurrenceEngine}.
+ *
+ * @param source     the parsed rule, used for the parts that cannot be computed arithmetically
+ * @param frequency  the frequency of the rule
+ * @param interval   the number of frequency units between two periods (at least 1)
+ * @param byDay      the {@code BYDAY} part, empty if absent
+ * @param byMonthDay the {@code BYMONTHDAY} part, empty if absent
+ * @param until      the inclusive end of the recurrence, null if absent
+ * @param count      the maximum number of occurrences, null if absent
+ * @param closedForm whether the engine can compute the occurrences of this rule without the Biweekly iterator (with a
+ *                   {@code COUNT}, the periods preceding the requested one may still be walked if their sizes vary)
+ */
+public record CompiledRecurrence(
+    Recurrence source,
+    Frequency frequency,
+    int interval,
+    List<Weekday> byDay,
+    List<Integer> byMonthDay,
+    LocalDateTime until,
+    Integer count,
+    boolean closedForm
+) {
+
+    /**
+     * Represents a {@code BYDAY} entry.
+     *
+     * @param ordinal the position of the day in the period (e.g. -1 for the last one), 0 for every day of the period
+     * @param day     the day of the week
+     */
+    public record Weekday(int ordinal, DayOfWeek day) {
+    }
+
+    public CompiledRecurrence {
+        requireNonNull(source);
+        requireNonNull(frequency);
+        byDay = List.copyOf(byDay);
+        byMonthDay = List.copyOf(byMonthDay);
+    }
+
+    /**
+     * Compiles a parsed recurrence rule.
+     *
+     * @param recurrence the rule to compile
+     * @return the compiled rule
+     * @throws IllegalArgumentException if the rule has no frequency
+     */
+    public static CompiledRecurrence of(Recurrence recurrence) {
+        requireNonNull(recurrence);
+        var frequency = recurrence.getFrequency();
+        if (frequency == null) {
+            throw new IllegalArgumentException("Recurrence rule has no frequency.");
+        }
+        var interval = recurrence.getInterval() == null ? 1 : Math.max(1, recurrence.getInterval());
+        var byDay = recurrence.getByDay().stream().map(CompiledRecurrence::toWeekday).toList();
+        var byMonthDay = List.copyOf(recurrence.getByMonthDay());
+        return new CompiledRecurrence(
+            recurrence,
+            frequency,
+            interval,
+            byDay,
+            byMonthDay,
+            toUntil(recurrence.getUntil()),
+            recurrence.getCount(),
+            isClosedForm(recurrence, frequency, byDay)
+        );
+    }
+
+    private static Weekday toWeekday(ByDay byDay) {
+        var ordinal = byDay.getNum() == null ? 0 : byDay.getNum();
+        return new Weekday(ordinal, DayOfWeek.valueOf(byDay.getDay().name()));
+    }
+
+    private static LocalDateTime toUntil(ICalDate until) {
+        if (until == null) return null;
+        var dateTime = until.toInstant().atZone(ZoneId.systemDefault()).toLocalDateTime();
+        return until.hasTime() ? dateTime : dateTime.toLocalDate().atTime(LocalTime.MAX); // a date is inclusive
+    }
+
+    private static boolean isClosedForm(Recurrence recurrence, Frequency frequency, List<Weekday> byDay) {
+        var hasOtherParts = !recurrence.getBySecond().isEmpty() ||
+            !recurrence.getByMinute().isEmpty() ||
+            !recurrence.getByHour().isEmpty() ||
+            !recurrence.getByYearDay().isEmpty() ||
+            !recurrence.getByWeekNo().isEmpty() ||
+            !recurrence.getByMonth().isEmpty() ||
+            !recurrence.getBySetPos().isEmpty() ||
+            (recurrence.getWorkweekStarts() != null && recurrence.getWorkweekStarts() != biweekly.util.DayOfWeek.MONDAY);
+        if (hasOtherParts) return false;
+        return switch (frequency) {
+            case MONTHLY -> true;
+            case YEARLY -> byDay.isEmpty() && recurrence.getByMonthDay().isEmpty();
+            default -> byDay.stream().allMatch(d -> d.ordinal() == 0);
+        };
+    }
+}
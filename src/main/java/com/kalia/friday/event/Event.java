@@ -1,7 +1,9 @@
 package com.kalia.friday.event;
 
+import com.kalia.friday.feed.FeedSubscription;
 import com.kalia.friday.user.User;
-import com.kalia.friday.util.BiweeklyUtils;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import javax.persistence.*;
 import javax.validation.constraints.NotBlank;
@@ -9,12 +11,13 @@ import javax.validation.constraints.NotNull;
 import javax.validation.constraints.Size;
 import java.io.Serial;
 import java.io.Serializable;
+import java.time.Duration;
 import java.time.LocalDateTime;
-import java.time.ZoneId;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
-import java.util.function.UnaryOperator;
 
+import static com.kalia.friday.util.StringUtils.contentHash;
 import static com.kalia.friday.util.StringUtils.requireNotBlank;
 import static com.kalia.friday.util.StringUtils.requireNotNullOrBlank;
 import static java.util.Objects.requireNonNull;
@@ -23,7 +26,15 @@ import static java.util.Objects.requireNonNull;
  * Represents the {@code Event} table in the database.
  */
 @Entity
-@Table(name = "event")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@Table(name = "event", indexes = {
+    @Index(name = "event_user_start_date_idx", columnList = "user_id, start_date"),
+    @Index(name = "event_user_end_date_idx", columnList = "user_id, end_date"),
+    @Index(name = "event_user_next_occurrence_idx", columnList = "user_id, next_occurrence"),
+    @Index(name = "event_feed_uid_idx", columnList = "feed_id, feed_uid"),
+    @Index(name = "event_user_fingerprint_idx", columnList = "user_id, fingerprint")
+})
 public class Event implements Serializable {
 
     @Serial
@@ -55,6 +66,8 @@ public class Event implements Serializable {
         this.latitude = latitude;
         this.longitude = longitude;
         this.endDate = endDate;
+        refreshFingerprint();
+        refreshNextOccurrence(LocalDateTime.now());
     }
 
     /**
@@ -127,6 +140,21 @@ public class Event implements Serializable {
     @Column(name = "end_date")
     private LocalDateTime endDate;
 
+    @Column(name = "next_occurrence")
+    private LocalDateTime nextOccurrence;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    private FeedSubscription feed;
+
+    @Column(name = "feed_uid", length = 1024)
+    private String feedUid;
+
+    @Column(name = "feed_revision")
+    private String feedRevision;
+
+    @Column(name = "fingerprint", length = 36)
+    private String fingerprint;
+
     /**
      * Gets the id of the event.
      *
@@ -217,6 +245,75 @@ public class Event implements Serializable {
         return endDate;
     }
 
+    /**
+     * Gets the start of the next occurrence of the event, as computed by the last call to
+     * {@link #refreshNextOccurrence(LocalDateTime)}.
+     *
+     * @return the stored start of the next occurrence, null if the event is over
+     */
+    public LocalDateTime nextOccurrence() {
+        return nextOccurrence;
+    }
+
+    /**
+     * Gets the fingerprint of the event, identifying its duplicates on import.
+     *
+     * @return the fingerprint of the event, null if not computed yet
+     * @see #fingerprint(String, LocalDateTime, LocalDateTime, String)
+     */
+    public String fingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * Gets the feed subscription which the event is synchronized from.
+     *
+     * @return the feed of the event, null if the event was not synchronized from a feed
+     */
+    public FeedSubscription feed() {
+        return feed;
+    }
+
+    /**
+     * Gets the key of the event in its feed.
+     *
+     * @return the key of the event in its feed, null if the event was not synchronized from a feed
+     */
+    public String feedUid() {
+        return feedUid;
+    }
+
+    /**
+     * Gets the version of the event in its feed, as of the last synchronization.
+     *
+     * @return the version of the event in its feed, null if the event was not synchronized from a feed
+     */
+    public String feedRevision() {
+        return feedRevision;
+    }
+
+    /**
+     * Sets the feed which the event is synchronized from.
+     *
+     * @param feed     the feed of the event
+     * @param uid      the key of the event in the feed
+     * @param revision the version of the event in the feed
+     */
+    public void setFeed(@NotNull FeedSubscription feed, @NotBlank String uid, @NotBlank String revision) {
+        this.feed = requireNonNull(feed);
+        this.feedUid = requireNotNullOrBlank(uid);
+        this.feedRevision = requireNotNullOrBlank(revision);
+    }
+
+    /**
+     * Sets the version of the event in its feed.
+     *
+     * @param revision the version of the event in the feed
+     */
+    public void setFeedRevision(@NotBlank String revision) {
+        this.feedRevision = requireNotNullOrBlank(revision);
+    }
+
     /**
      * Sets the title of the event.
      *
@@ -224,6 +321,7 @@ public class Event implements Serializable {
      */
     public void setTitle(@NotBlank String title) {
         this.title = requireNotNullOrBlank(title);
+        refreshFingerprint();
     }
 
     /**
@@ -252,6 +350,7 @@ public class Event implements Serializable {
      */
     public void setRecurRuleParts(@Size(min = 1) String recurRuleParts) {
         this.recurRuleParts = requireNotBlank(recurRuleParts);
+        refreshFingerprint();
     }
 
     /**
@@ -263,6 +362,7 @@ public class Event implements Serializable {
         requireNonNull(startDate);
         requireEndAfterStart(startDate, endDate);
         this.startDate = startDate;
+        refreshFingerprint();
     }
 
     /**
@@ -291,6 +391,28 @@ public class Event implements Serializable {
     public void setEndDate(LocalDateTime endDate) {
         requireEndAfterStart(startDate, endDate);
         this.endDate = endDate;
+        refreshFingerprint();
+    }
+
+    /**
+     * Computes the fingerprint of the event from its current fields.
+     */
+    void refreshFingerprint() {
+        fingerprint = fingerprint(title, startDate, endDate, recurRuleParts);
+    }
+
+    /**
+     * Computes the fingerprint of an event: a hash of what makes two events the same, their title, start, end and
+     * rrule, leaving out the details an import may complete.
+     *
+     * @param title          the title of the event
+     * @param startDate      the start date of the event
+     * @param endDate        the end date of the event
+     * @param recurRuleParts the rrule of the event
+     * @return the fingerprint of the event
+     */
+    public static String fingerprint(String title, LocalDateTime startDate, LocalDateTime endDate, String recurRuleParts) {
+        return contentHash(title, startDate, endDate, recurRuleParts).toString();
     }
 
     /**
@@ -315,43 +437,47 @@ public class Event implements Serializable {
         }
     }
 
+    /**
+     * Gets the start of the first occurrence of the event that begins at or after a given time.
+     *
+     * @param time the time from which to look for an occurrence
+     * @return the start of the next occurrence, empty if the event is over
+     */
     public Optional<LocalDateTime> nextOccurrence(LocalDateTime time) {
         requireNonNull(time);
-        var next = LocalDateTime.now();
-        var duration = endDate == null ?
-            24 * 3600 :
-            endDate.atZone(ZoneId.systemDefault()).toEpochSecond() - startDate.atZone(ZoneId.systemDefault()).toEpochSecond();
-        if (startDate.isAfter(time)) { // not started
-            return Optional.of(startDate);
-        }
-        if (recurRuleParts == null) return Optional.empty();
-        var rrule = BiweeklyUtils.recurrenceRuleFromString(recurRuleParts);
-        if (startDate.plusSeconds(duration).isBefore(time) &&
-            rrule.getValue().getUntil() != null
-            && rrule.getValue().getUntil().toInstant().isBefore(time.atZone(ZoneId.systemDefault()).toInstant())) { // recurrence has ended
-            return Optional.empty();
-        }
+        var recurrence = recurRuleParts == null ? null : RecurrenceRuleCache.compile(recurRuleParts);
+        return RecurrenceEngine.nextOccurrence(startDate, recurrence, time);
+    }
 
-        UnaryOperator<LocalDateTime> incr = switch (rrule.getValue().getFrequency()) {
-            case DAILY -> (d) -> d.plusDays(1);
-            case WEEKLY -> (d) -> d.plusWeeks(1);
-            case YEARLY -> (d) -> d.plusYears(1);
-            case MONTHLY -> (d) -> {
-                var i = 1;
-                while (d.plusMonths(i).getDayOfMonth() != d.getDayOfMonth()) {
-                    i++;
-                }
-                return d.plusMonths(i);
-            };
-            default -> throw new IllegalStateException("Unexpected value: " + rrule.getValue().getFrequency());
-        };
-
-
-        while (next.isBefore(time)) {
-            next = incr.apply(next);
-        }
+    /**
+     * Gets the occurrences of the event overlapping a range of time.
+     * <p>
+     * An occurrence lasts as long as the event and overlaps the range if it ends after its beginning, or starts in it
+     * when the event has no end.
+     *
+     * @param from the inclusive beginning of the range
+     * @param to   the exclusive end of the range
+     * @return the starts of the occurrences, in chronological order
+     */
+    public List<LocalDateTime> occurrencesBetween(LocalDateTime from, LocalDateTime to) {
+        requireNonNull(from);
+        requireNonNull(to);
+        var duration = endDate == null ? Duration.ZERO : Duration.between(startDate, endDate);
+        var recurrence = recurRuleParts == null ? null : RecurrenceRuleCache.compile(recurRuleParts);
+        var occurrences = RecurrenceEngine.occurrences(startDate, recurrence, from.minus(duration), to);
+        if (duration.isZero()) return occurrences;
+        return occurrences.stream().filter(o -> o.plus(duration).isAfter(from)).toList();
+    }
 
-        return Optional.of(next);
+    /**
+     * Computes and stores the start of the first occurrence of the event that begins at or after a given time.
+     * <p>
+     * Must be called whenever the start date or the {@code rrule} of the event changes.
+     *
+     * @param time the time from which to look for an occurrence
+     */
+    public void refreshNextOccurrence(LocalDateTime time) {
+        nextOccurrence = nextOccurrence(time).orElse(null);
     }
 
 }
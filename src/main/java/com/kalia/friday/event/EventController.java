@@ -4,21 +4,32 @@ import com.kalia.friday.login.LoginSessionDTO;
 import com.kalia.friday.util.BiweeklyUtils;
 import com.kalia.friday.util.RepositoryResponse;
 import io.micronaut.http.HttpResponse;
+import io.micronaut.http.HttpStatus;
 import io.micronaut.http.MediaType;
 import io.micronaut.http.annotation.*;
 import io.micronaut.scheduling.TaskExecutors;
 import io.micronaut.scheduling.annotation.ExecuteOn;
 import jakarta.inject.Inject;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
 
 import javax.validation.Valid;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
 import java.net.URI;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.time.LocalDateTime;
-import java.util.Comparator;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
 
 /**
  * API endpoint for communicating with the event side of the database.
@@ -27,10 +38,26 @@ import java.util.UUID;
 @Controller("/api/event")
 public class EventController {
     private static final String DEFAULT_ROUTE = "/api/event/";
+    private static final long MAX_RANGE_IN_DAYS = 366;
 
     @Inject
     private EventRepository eventRepository;
 
+    @Inject
+    private ImportJobService importJobService;
+
+    @Inject
+    private FeedFetcher feedFetcher;
+
+    /**
+     * Creates a controller by injection with Micronaut.
+     *
+     * @param nextOccurrenceService the next occurrence service to launch
+     */
+    public EventController(NextOccurrenceService nextOccurrenceService) {
+        nextOccurrenceService.start();
+    }
+
     /**
      * Creates and saves an event, provided a correct body.
      *
@@ -137,97 +164,275 @@ public class EventController {
      */
     @Post(value = "/allbyuser", consumes = MediaType.APPLICATION_FORM_URLENCODED)
     public HttpResponse<List<EventResponseDTO>> allByUser(@Body @Valid LoginSessionDTO loginSessionDTO) {
-        var findResponse = eventRepository.authenticatedFindByUserId(loginSessionDTO.userId(), loginSessionDTO.token());
+        var findResponse = eventRepository.authenticatedFindResponsesByUserId(loginSessionDTO.userId(), loginSessionDTO.token());
         if (findResponse.status() != RepositoryResponse.Status.OK) {
             return HttpResponse.unauthorized();
         }
-        var events = findResponse.get()
-            .stream()
-            .map(Event::toEventResponseDTO)
-            .toList();
-        return HttpResponse.ok(events)
+        return HttpResponse.ok(findResponse.get())
             .headers(h -> h.location(URI.create(DEFAULT_ROUTE + "allbyuser")));
     }
 
     /**
-     * Imports an ics calendar from a URL (request will use GET method).
+     * Retrieves a page of the events of a given user, ordered by start date and id.
+     *
+     * @param eventPageDTO {
+     *                     "userId": "",
+     *                     "token": "",
+     *                     "afterStart": "",
+     *                     "afterId": "",
+     *                     "size": 0
+     *                     }
+     * @return OK with body containing the events and the cursor of the next page if success | BAD_REQUEST if the cursor
+     * is incomplete | UNAUTHORIZED if invalid credentials
+     */
+    @Post("/allbyuser/page")
+    public HttpResponse<EventPageResponseDTO> allByUserPage(@Body @Valid EventPageDTO eventPageDTO) {
+        if ((eventPageDTO.afterStart() == null) != (eventPageDTO.afterId() == null)) {
+            return HttpResponse.badRequest();
+        }
+        var findResponse = eventRepository.authenticatedFindPageByUserId(
+            eventPageDTO.userId(),
+            eventPageDTO.token(),
+            eventPageDTO.afterStart(),
+            eventPageDTO.afterId(),
+            eventPageDTO.size()
+        );
+        if (findResponse.status() != RepositoryResponse.Status.OK) {
+            return HttpResponse.unauthorized();
+        }
+        var events = findResponse.get();
+        var last = events.size() == eventPageDTO.size() ? events.get(events.size() - 1) : null;
+        var page = new EventPageResponseDTO(events, last == null ? null : last.start(), last == null ? null : last.id());
+        return HttpResponse.ok(page)
+            .headers(h -> h.location(URI.create(DEFAULT_ROUTE + "allbyuser/page")));
+    }
+
+    /**
+     * Streams all events of a given user, ordered by start date and id, as a JSON array written while the events are
+     * read from the database.
+     *
+     * @param loginSessionDTO {
+     *                        "userId": "",
+     *                        "token": "",
+     *                        }
+     * @return OK with body containing events if success | UNAUTHORIZED if invalid credentials
+     */
+    @Post("/allbyuser/stream")
+    public HttpResponse<Publisher<EventResponseDTO>> allByUserStream(@Body @Valid LoginSessionDTO loginSessionDTO) {
+        var streamResponse = eventRepository.authenticatedStreamByUserId(loginSessionDTO.userId(), loginSessionDTO.token());
+        if (streamResponse.status() != RepositoryResponse.Status.OK) {
+            return HttpResponse.<Publisher<EventResponseDTO>>unauthorized().body(Flux.empty()); // a streamed body can't be null
+        }
+        var events = Flux.using(streamResponse::get, Flux::fromStream, Stream::close)
+            .subscribeOn(Schedulers.boundedElastic()); // blocking reads
+        return HttpResponse.<Publisher<EventResponseDTO>>ok(events)
+            .headers(h -> h.location(URI.create(DEFAULT_ROUTE + "allbyuser/stream")));
+    }
+
+    /**
+     * Retrieves the events of a given user overlapping a range of time, with their occurrences in that range.
+     *
+     * @param eventRangeDTO {
+     *                      "userId": "",
+     *                      "token": "",
+     *                      "from": "",
+     *                      "to": ""
+     *                      }
+     * @return OK with body containing events and occurrences if success | BAD_REQUEST if the range is empty or longer
+     * than a year | UNAUTHORIZED if invalid credentials
+     */
+    @Post("/range")
+    public HttpResponse<List<EventOccurrencesDTO>> range(@Body @Valid EventRangeDTO eventRangeDTO) {
+        var from = eventRangeDTO.from();
+        var to = eventRangeDTO.to();
+        if (!to.isAfter(from) || to.isAfter(from.plusDays(MAX_RANGE_IN_DAYS))) {
+            return HttpResponse.badRequest();
+        }
+        var findResponse = eventRepository.authenticatedFindOccurrencesInRange(
+            eventRangeDTO.userId(), eventRangeDTO.token(), from, to
+        );
+        if (findResponse.status() != RepositoryResponse.Status.OK) {
+            return HttpResponse.unauthorized();
+        }
+        return HttpResponse.ok(findResponse.get())
+            .headers(h -> h.location(URI.create(DEFAULT_ROUTE + "range")));
+    }
+
+    /**
+     * Queues the import of an ics calendar from a URL (request will use GET method). A feed that did not change since
+     * the last import of the user is not downloaded again, and the job imports no events.
      *
      * @param url             url to get the calendar
      * @param loginSessionDTO {
      *                        "userId": "",
      *                        "token": "",
      *                        }
-     * @return OK if imported | BAD REQUEST if invalid file content | UNAUTHORIZED if invalid credentials
+     * @return ACCEPTED with the queued job | BAD REQUEST if invalid url | UNAUTHORIZED if invalid credentials
+     * | SERVICE_UNAVAILABLE if too many imports are queued
      */
     @Post("/import/url")
-    public HttpResponse<Void> importFromURL(String url, @Body @Valid LoginSessionDTO loginSessionDTO) {
-        var request = HttpRequest.newBuilder().GET().uri(URI.create(url)).build();
-        var client = HttpClient.newHttpClient();
+    public HttpResponse<ImportJobDTO> importFromURL(String url, @Body @Valid LoginSessionDTO loginSessionDTO) {
+        URI uri;
         try {
-            var response = client.send(request, java.net.http.HttpResponse.BodyHandlers.ofString());
-            var events = BiweeklyUtils.eventDTOListFromString(response.body(), loginSessionDTO.userId(), loginSessionDTO.token());
-            if (events.isEmpty()) {
-                return HttpResponse.badRequest();
-            }
-
-            var saveResponse = eventRepository.authenticatedEventListSave(events);
-            if (saveResponse.status() != RepositoryResponse.Status.OK) {
-                return HttpResponse.unauthorized();
-            }
-
-            return HttpResponse.ok(null);
-        } catch (IOException | InterruptedException e) {
-            return HttpResponse.serverError();
-        } catch (NullPointerException | IllegalArgumentException e) { // if invalid format
+            uri = FeedFetcher.feedURI(url);
+        } catch (NullPointerException | IllegalArgumentException e) { // if invalid url
             return HttpResponse.badRequest();
         }
+        var userId = loginSessionDTO.userId();
+        var fetched = new AtomicReference<FeedFetcher.Feed>();
+        return submitImport(loginSessionDTO, () -> {
+            var feed = feedFetcher.fetch(userId, uri);
+            if (feed.isEmpty()) return Stream.empty(); // not modified since the last import
+            fetched.set(feed.get());
+            return BiweeklyUtils.eventDTOStream(feed.get().reader(), userId, loginSessionDTO.token());
+        }, () -> {
+            if (fetched.get() != null) fetched.get().remember();
+        });
     }
 
     /**
-     * Imports an ics calendar from a file.
+     * Queues the import of an ics calendar from a file.
      *
      * @param fileContent     file content
      * @param loginSessionDTO {
      *                        "userId": "",
      *                        "token": "",
      *                        }
-     * @return OK if imported | BAD REQUEST if invalid file content | UNAUTHORIZED if invalid credentials
+     * @return ACCEPTED with the queued job | BAD REQUEST if no file content | UNAUTHORIZED if invalid credentials
+     * | SERVICE_UNAVAILABLE if too many imports are queued
      */
     @Post("/import/file")
-    public HttpResponse<Void> importFromFile(String fileContent, @Body @Valid LoginSessionDTO loginSessionDTO) {
-        var events = BiweeklyUtils.eventDTOListFromString(fileContent, loginSessionDTO.userId(), loginSessionDTO.token());
-        if (events.isEmpty()) {
-            return HttpResponse.badRequest();
+    public HttpResponse<ImportJobDTO> importFromFile(String fileContent, @Body @Valid LoginSessionDTO loginSessionDTO) {
+        if (fileContent == null) return HttpResponse.badRequest();
+        return submitImport(loginSessionDTO, () -> BiweeklyUtils.eventDTOStream(
+            new StringReader(fileContent),
+            loginSessionDTO.userId(),
+            loginSessionDTO.token()
+        ));
+    }
+
+    /**
+     * Queues the import of an ics calendar sent as the raw request body. The body is written to a temporary file while
+     * it is received, and read back by the job.
+     *
+     * @param userId the id of the user, in the {@code X-User-Id} header
+     * @param token  the token of the user, in the {@code X-User-Token} header
+     * @param body   the ics content
+     * @return ACCEPTED with the queued job | UNAUTHORIZED if invalid credentials
+     * | SERVICE_UNAVAILABLE if too many imports are queued
+     */
+    @Post(value = "/import/stream", consumes = {"text/calendar", MediaType.TEXT_PLAIN, MediaType.APPLICATION_OCTET_STREAM})
+    public HttpResponse<ImportJobDTO> importFromStream(
+        @Header("X-User-Id") UUID userId,
+        @Header("X-User-Token") UUID token,
+        @Body InputStream body
+    ) {
+        Path file;
+        try {
+            file = Files.createTempFile("friday-import", ".ics");
+        } catch (IOException e) {
+            return HttpResponse.serverError();
         }
+        var submitted = false;
+        try {
+            Files.copy(body, file, StandardCopyOption.REPLACE_EXISTING);
+            var response = submitImport(new LoginSessionDTO(userId, token), () -> BiweeklyUtils
+                .eventDTOStream(Files.newBufferedReader(file, StandardCharsets.UTF_8), userId, token)
+                .onClose(() -> deleteTemporaryFile(file)));
+            submitted = response.getStatus() == HttpStatus.ACCEPTED;
+            return response;
+        } catch (IOException e) {
+            return HttpResponse.serverError();
+        } finally {
+            if (!submitted) deleteTemporaryFile(file);
+        }
+    }
 
+    /**
+     * Gets the progress of an import job.
+     *
+     * @param id              the id of the job
+     * @param loginSessionDTO {
+     *                        "userId": "",
+     *                        "token": "",
+     *                        }
+     * @return {
+     * "id": "",
+     * "status": "QUEUED | RUNNING | DONE | FAILED",
+     * "parsed": 0,
+     * "inserted": 0,
+     * "failed": 0,
+     * "eventsPerSecond": 0.0,
+     * "error": ""
+     * } | NOT_FOUND if the job is unknown | UNAUTHORIZED if invalid credentials
+     */
+    @Post("/import/status/{id}")
+    public HttpResponse<ImportJobDTO> importStatus(UUID id, @Body @Valid LoginSessionDTO loginSessionDTO) {
+        var response = importJobService.status(id, loginSessionDTO.userId(), loginSessionDTO.token());
+        return switch (response.status()) {
+            case OK -> HttpResponse.ok(response.get());
+            case NOT_FOUND -> HttpResponse.notFound();
+            default -> HttpResponse.unauthorized();
+        };
+    }
+
+    private HttpResponse<ImportJobDTO> submitImport(LoginSessionDTO loginSessionDTO, Callable<Stream<EventDTO>> source) {
+        return submitImport(loginSessionDTO, source, () -> {
+        });
+    }
+
+    private HttpResponse<ImportJobDTO> submitImport(
+        LoginSessionDTO loginSessionDTO,
+        Callable<Stream<EventDTO>> source,
+        Runnable onDone
+    ) {
         try {
-            var saveResponse = eventRepository.authenticatedEventListSave(events);
-            if (saveResponse.status() != RepositoryResponse.Status.OK) {
+            var response = importJobService.submit(loginSessionDTO.userId(), loginSessionDTO.token(), source, onDone);
+            if (response.status() != RepositoryResponse.Status.OK) {
                 return HttpResponse.unauthorized();
             }
-            return HttpResponse.ok(null);
-        } catch (NullPointerException | IllegalArgumentException e) { // if invalid format
-            return HttpResponse.badRequest();
+            var job = response.get();
+            return HttpResponse
+                .<ImportJobDTO>accepted()
+                .body(job)
+                .headers(h -> h.location(URI.create(DEFAULT_ROUTE + "import/status/" + job.id())));
+        } catch (RejectedExecutionException e) {
+            return HttpResponse.status(HttpStatus.SERVICE_UNAVAILABLE);
+        }
+    }
+
+    private static void deleteTemporaryFile(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) { // retried when the server stops
+            file.toFile().deleteOnExit();
         }
     }
 
+    /**
+     * Retrieves the next event of a given user.
+     *
+     * @param loginSessionDTO {
+     *                        "userId": "",
+     *                        "token": "",
+     *                        }
+     * @return OK with the event having the first upcoming occurrence (empty if none) | UNAUTHORIZED if invalid credentials
+     */
     @Post("/next")
     public HttpResponse<EventResponseDTO> nextEvent(@Body @Valid LoginSessionDTO loginSessionDTO) {
-        var findResponse = eventRepository.authenticatedFindByUserId(loginSessionDTO.userId(), loginSessionDTO.token());
-        if (findResponse.status() != RepositoryResponse.Status.OK) {
+        var findResponse = eventRepository.authenticatedFindNext(
+            loginSessionDTO.userId(),
+            loginSessionDTO.token(),
+            LocalDateTime.now()
+        );
+        if (findResponse.status() == RepositoryResponse.Status.UNAUTHORIZED) {
             return HttpResponse.unauthorized();
         }
 
-        var now = LocalDateTime.now();
-        var event = findResponse.get()
-            .stream()
-            .filter(e -> e.nextOccurrence(now).isPresent())
-            .sorted(Comparator.comparing(a -> a.nextOccurrence(now).get()))
-            .map(Event::toEventResponseDTO)
-            .findFirst()
-            .orElse(null);
-
+        var event = findResponse.status() == RepositoryResponse.Status.OK
+            ? findResponse.get().toEventResponseDTO()
+            : null;
         return HttpResponse.ok(event)
-            .headers(h -> h.location(URI.create(DEFAULT_ROUTE + "allbyuser")));
+            .headers(h -> h.location(URI.create(DEFAULT_ROUTE + "next")));
     }
 }
@@ -0,0 +1,17 @@
+package com.kalia.friday.event;
+
+import io.micronaut.core.annotation.Introspected;
+
+import javax.validation.constraints.NotNull;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Represents an event and the starts of its occurrences in a range of time, sent from the server to the client.
+ */
+@Introspected
+public record EventOccurrencesDTO(
+    @NotNull EventResponseDTO event,
+    @NotNull List<LocalDateTime> starts
+) {
+}
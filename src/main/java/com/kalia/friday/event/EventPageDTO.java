@@ -0,0 +1,24 @@
+package com.kalia.friday.event;
+
+import io.micronaut.core.annotation.Introspected;
+
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Represents the body of a request for a page of the events of a user, ordered by start date and id.
+ * <p>
+ * The first page is requested without cursor, the next ones with the cursor returned with the previous page.
+ */
+@Introspected
+public record EventPageDTO(
+    @NotNull UUID userId,
+    @NotNull UUID token,
+    LocalDateTime afterStart,
+    UUID afterId,
+    @Min(1) @Max(1000) int size
+) {
+}
@@ -0,0 +1,23 @@
+package com.kalia.friday.event;
+
+import io.micronaut.core.annotation.Introspected;
+
+import javax.validation.constraints.NotNull;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Represents a page of events sent from the server to the client.
+ *
+ * @param events    the events of the page
+ * @param nextStart the start date of the cursor of the next page, null if this page is the last one
+ * @param nextId    the id of the cursor of the next page, null if this page is the last one
+ */
+@Introspected
+public record EventPageResponseDTO(
+    @NotNull List<EventResponseDTO> events,
+    LocalDateTime nextStart,
+    UUID nextId
+) {
+}
@@ -0,0 +1,19 @@
+package com.kalia.friday.event;
+
+import io.micronaut.core.annotation.Introspected;
+
+import javax.validation.constraints.NotNull;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Represents the body of a request for the events of a user in a range of time.
+ */
+@Introspected
+public record EventRangeDTO(
+    @NotNull UUID userId,
+    @NotNull UUID token,
+    @NotNull LocalDateTime from,
+    @NotNull LocalDateTime to
+) {
+}
@@ -11,6 +11,7 @@ import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Objects;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 /**
  * Interface used by Micronaut to inject an EventRepository when requested.
@@ -43,6 +44,109 @@ public interface EventRepository {
     @ReadOnly
     RepositoryResponse<List<Event>> authenticatedFindByUserId(@NotNull UUID userId, @NotNull UUID userToken);
 
+    /**
+     * Finds all events of a user by its user id, selected directly as response DTOs.
+     *
+     * @param userId    the id of the user to which the events belong
+     * @param userToken the token of the user
+     * @return Ok with the events | Unauthorized if invalid credentials
+     */
+    @ReadOnly
+    RepositoryResponse<List<EventResponseDTO>> authenticatedFindResponsesByUserId(@NotNull UUID userId, @NotNull UUID userToken);
+
+    /**
+     * Finds a page of the events of a user, ordered by start date and id.
+     * <p>SELECT * FROM Event WHERE user_id = {userId} AND (start_date, id) > ({afterStart}, {afterId})
+     * ORDER BY start_date, id LIMIT {size};</p>
+     *
+     * @param userId     the id of the user to which the events belong
+     * @param userToken  the token of the user
+     * @param afterStart the start date of the last event of the previous page, null for the first page
+     * @param afterId    the id of the last event of the previous page, null for the first page
+     * @param size       the maximum number of events of the page
+     * @return Ok with the events | Unauthorized if invalid credentials
+     */
+    @ReadOnly
+    RepositoryResponse<List<EventResponseDTO>> authenticatedFindPageByUserId(
+        @NotNull UUID userId,
+        @NotNull UUID userToken,
+        LocalDateTime afterStart,
+        UUID afterId,
+        int size
+    );
+
+    /**
+     * Streams all events of a user, ordered by start date and id, without keeping them in memory.
+     * <p>The stream holds a database connection until it is closed.</p>
+     *
+     * @param userId    the id of the user to which the events belong
+     * @param userToken the token of the user
+     * @return Ok with the stream of events | Unauthorized if invalid credentials
+     */
+    @ReadOnly
+    RepositoryResponse<Stream<EventResponseDTO>> authenticatedStreamByUserId(@NotNull UUID userId, @NotNull UUID userToken);
+
+    /**
+     * Finds the events of a user having occurrences in a range of time, with the starts of those occurrences.
+     * <p>SELECT * FROM Event WHERE user_id = {userId} AND start_date < {to}
+     * AND (recur_rule_parts IS NOT NULL OR start_date >= {from} OR end_date > {from});</p>
+     * <p>The occurrences of a range are cached until the events of the user in that range are written.</p>
+     *
+     * @param userId    the id of the user to which the events belong
+     * @param userToken the token of the user
+     * @param from      the inclusive beginning of the range
+     * @param to        the exclusive end of the range
+     * @return Ok with the events and their occurrences | Unauthorized if invalid credentials
+     */
+    @ReadOnly
+    RepositoryResponse<List<EventOccurrencesDTO>> authenticatedFindOccurrencesInRange(
+        @NotNull UUID userId,
+        @NotNull UUID userToken,
+        @NotNull LocalDateTime from,
+        @NotNull LocalDateTime to
+    );
+
+    /**
+     * Finds the event of a user which has the first occurrence at or after a given time.
+     * <p>SELECT * FROM Event WHERE user_id = {userId} AND next_occurrence >= {time} ORDER BY next_occurrence LIMIT 1;</p>
+     * <p>The stored occurrences of the user which have passed are advanced first. The time must not be before the
+     * one at which the occurrences were computed (usually now).</p>
+     *
+     * @param userId    the id of the user to which the event belongs
+     * @param userToken the token of the user
+     * @param time      the time from which to look for an occurrence
+     * @return Ok if found | NotFound if the user has no upcoming event | Unauthorized if invalid credentials
+     */
+    @Transactional
+    RepositoryResponse<Event> authenticatedFindNext(@NotNull UUID userId, @NotNull UUID userToken, @NotNull LocalDateTime time);
+
+    /**
+     * Advances the stored next occurrence of the events for which it has passed.
+     *
+     * @param time the time from which to look for an occurrence
+     * @return the number of updated events
+     */
+    @Transactional
+    int advanceNextOccurrences(@NotNull LocalDateTime time);
+
+    /**
+     * Computes the next occurrence of the events which may still occur but have none stored (rows created before the
+     * column existed).
+     *
+     * @param time the time from which to look for an occurrence
+     * @return the number of updated events
+     */
+    @Transactional
+    int computeMissingNextOccurrences(@NotNull LocalDateTime time);
+
+    /**
+     * Computes the fingerprint of the events which have none stored (rows created before the column existed).
+     *
+     * @return the number of updated events
+     */
+    @Transactional
+    int computeMissingFingerprints();
+
     /**
      * Saves a new event.
      *
@@ -162,10 +266,16 @@ public interface EventRepository {
     }
 
     /**
-     * Inserts a list of events.
+     * Inserts a list of events, in JDBC batches, skipping the duplicates.
+     * <p>
+     * Each distinct pair of user id and token is checked once; nothing is inserted if one of them is invalid. An event
+     * is a duplicate if its user already has an event with the same {@link Event#fingerprint() fingerprint}, or if it
+     * comes earlier in the list; a duplicate only completes the missing description, place and position of the event
+     * it duplicates, unless this one is synchronized from a feed.
      *
      * @param events the list of eventDTO to save.
+     * @return OK with the number of inserted events | UNAUTHORIZED if invalid credentials
      */
     @Transactional
-    RepositoryResponse<Void> authenticatedEventListSave(List<EventDTO> events);
+    RepositoryResponse<Integer> authenticatedEventListSave(List<EventDTO> events);
 }
@@ -1,16 +1,28 @@
 package com.kalia.friday.event;
 
 import com.kalia.friday.login.LoginRepository;
+import com.kalia.friday.user.User;
 import com.kalia.friday.util.RepositoryResponse;
 import io.micronaut.transaction.annotation.ReadOnly;
 import jakarta.inject.Inject;
 import jakarta.inject.Singleton;
+import org.hibernate.SessionFactory;
+import org.hibernate.jpa.QueryHints;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import javax.persistence.EntityManager;
 import javax.transaction.Transactional;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 import static com.kalia.friday.event.Event.requireEndAfterStart;
 import static com.kalia.friday.util.BiweeklyUtils.requireValidRecurRule;
@@ -24,6 +36,21 @@ import static java.util.Objects.requireNonNull;
  */
 @Singleton
 public class EventRepositoryImpl implements EventRepository {
+    private static final int STREAM_FETCH_SIZE = 256;
+    private static final int IMPORT_BATCH_SIZE = 100; // matches hibernate.jdbc.batch_size
+    /**
+     * Query cache region of the events of a user, invalidated by Hibernate on each write to the event table.
+     */
+    static final String BY_USER_REGION = "event.by-user";
+    /**
+     * Selects the rows straight into DTOs: the entities are neither managed nor detached.
+     */
+    private static final String RESPONSE_SELECT = """
+        SELECT new com.kalia.friday.event.EventResponseDTO(
+            e.id, e.title, e.description, e.place, e.recurRuleParts, e.startDate, e.latitude, e.longitude, e.endDate
+        ) FROM Event e""";
+
+    private final Logger logger = LoggerFactory.getLogger(EventRepositoryImpl.class);
 
     @Inject
     private EntityManager manager;
@@ -31,6 +58,12 @@ public class EventRepositoryImpl implements EventRepository {
     @Inject
     private LoginRepository loginRepository;
 
+    @Inject
+    private SessionFactory sessionFactory;
+
+    @Inject
+    private OccurrenceCache occurrenceCache;
+
     @Override
     @ReadOnly
     public RepositoryResponse<Event> authenticatedFindById(UUID id, UUID userId, UUID userToken) {
@@ -60,6 +93,191 @@ public class EventRepositoryImpl implements EventRepository {
         return RepositoryResponse.ok(result);
     }
 
+    @Override
+    @ReadOnly
+    public RepositoryResponse<List<EventResponseDTO>> authenticatedFindResponsesByUserId(UUID userId, UUID userToken) {
+        requireNonNull(userId);
+        requireNonNull(userToken);
+        var userAuthenticate = loginRepository.checkIdentity(userId, userToken);
+        if (userAuthenticate.status() != RepositoryResponse.Status.OK) { // invalid user.
+            return RepositoryResponse.unauthorized();
+        }
+        var result = manager.createQuery(RESPONSE_SELECT + " WHERE e.user.id = :userId", EventResponseDTO.class)
+            .setParameter("userId", userId)
+            .setHint(QueryHints.HINT_CACHEABLE, true)
+            .setHint(QueryHints.HINT_CACHE_REGION, BY_USER_REGION)
+            .getResultList();
+        return RepositoryResponse.ok(result);
+    }
+
+    @Override
+    @ReadOnly
+    public RepositoryResponse<List<EventResponseDTO>> authenticatedFindPageByUserId(
+        UUID userId,
+        UUID userToken,
+        LocalDateTime afterStart,
+        UUID afterId,
+        int size
+    ) {
+        requireNonNull(userId);
+        requireNonNull(userToken);
+        if ((afterStart == null) != (afterId == null)) {
+            throw new IllegalArgumentException("afterStart and afterId must be both null or both set.");
+        }
+        if (size <= 0) {
+            throw new IllegalArgumentException("size must be positive.");
+        }
+        var userAuthenticate = loginRepository.checkIdentity(userId, userToken);
+        if (userAuthenticate.status() != RepositoryResponse.Status.OK) { // invalid user.
+            return RepositoryResponse.unauthorized();
+        }
+        var cursor = afterStart == null
+            ? ""
+            : " AND (e.startDate > :afterStart OR (e.startDate = :afterStart AND e.id > :afterId))";
+        var query = manager.createQuery(
+                RESPONSE_SELECT + " WHERE e.user.id = :userId" + cursor + " ORDER BY e.startDate, e.id",
+                EventResponseDTO.class
+            )
+            .setParameter("userId", userId)
+            .setMaxResults(size);
+        if (afterStart != null) {
+            query.setParameter("afterStart", afterStart).setParameter("afterId", afterId);
+        }
+        return RepositoryResponse.ok(query.getResultList());
+    }
+
+    @Override
+    @ReadOnly
+    public RepositoryResponse<Stream<EventResponseDTO>> authenticatedStreamByUserId(UUID userId, UUID userToken) {
+        requireNonNull(userId);
+        requireNonNull(userToken);
+        var userAuthenticate = loginRepository.checkIdentity(userId, userToken);
+        if (userAuthenticate.status() != RepositoryResponse.Status.OK) { // invalid user.
+            return RepositoryResponse.unauthorized();
+        }
+        // a stateless session outlives the current transaction
+        var session = sessionFactory.openStatelessSession();
+        try {
+            var transaction = session.beginTransaction();
+            var stream = session
+                .createQuery(RESPONSE_SELECT + " WHERE e.user.id = :userId ORDER BY e.startDate, e.id", EventResponseDTO.class)
+                .setParameter("userId", userId)
+                .setFetchSize(STREAM_FETCH_SIZE)
+                .stream()
+                .onClose(() -> {
+                    try {
+                        transaction.commit();
+                    } finally {
+                        session.close();
+                    }
+                });
+            return RepositoryResponse.ok(stream);
+        } catch (RuntimeException e) {
+            session.close();
+            throw e;
+        }
+    }
+
+    @Override
+    @ReadOnly
+    public RepositoryResponse<List<EventOccurrencesDTO>> authenticatedFindOccurrencesInRange(
+        UUID userId,
+        UUID userToken,
+        LocalDateTime from,
+        LocalDateTime to
+    ) {
+        requireNonNull(userId);
+        requireNonNull(userToken);
+        requireNonNull(from);
+        requireNonNull(to);
+        var userAuthenticate = loginRepository.checkIdentity(userId, userToken);
+        if (userAuthenticate.status() != RepositoryResponse.Status.OK) { // invalid user.
+            return RepositoryResponse.unauthorized();
+        }
+        var result = occurrenceCache.get(userId, from, to, () -> findInRange(userId, from, to)
+            .stream()
+            .map(e -> new EventOccurrencesDTO(e.toEventResponseDTO(), e.occurrencesBetween(from, to)))
+            .filter(e -> !e.starts().isEmpty())
+            .toList());
+        return RepositoryResponse.ok(result);
+    }
+
+    private List<Event> findInRange(UUID userId, LocalDateTime from, LocalDateTime to) {
+        return manager.createQuery("""
+                SELECT e FROM Event e
+                WHERE e.user.id = :userId AND e.startDate < :to
+                AND (e.recurRuleParts IS NOT NULL OR e.startDate >= :from OR e.endDate > :from)""", Event.class)
+            .setParameter("userId", userId)
+            .setParameter("from", from)
+            .setParameter("to", to)
+            .getResultList();
+    }
+
+    @Override
+    @Transactional
+    public RepositoryResponse<Event> authenticatedFindNext(UUID userId, UUID userToken, LocalDateTime time) {
+        requireNonNull(userId);
+        requireNonNull(userToken);
+        requireNonNull(time);
+        var userAuthenticate = loginRepository.checkIdentity(userId, userToken);
+        if (userAuthenticate.status() != RepositoryResponse.Status.OK) { // invalid user.
+            return RepositoryResponse.unauthorized();
+        }
+        manager.createQuery("SELECT e FROM Event e WHERE e.user.id = :userId AND e.nextOccurrence < :time", Event.class)
+            .setParameter("userId", userId)
+            .setParameter("time", time)
+            .getResultList()
+            .forEach(e -> e.refreshNextOccurrence(time)); // advance the occurrences that have passed
+        manager.flush();
+        var result = manager.createQuery("""
+                SELECT e FROM Event e
+                WHERE e.user.id = :userId AND e.nextOccurrence >= :time
+                ORDER BY e.nextOccurrence""", Event.class)
+            .setParameter("userId", userId)
+            .setParameter("time", time)
+            .setMaxResults(1)
+            .getResultList();
+        if (result.isEmpty()) {
+            return RepositoryResponse.notFound();
+        }
+        var next = result.get(0);
+        manager.detach(next); // detach before return
+        return RepositoryResponse.ok(next);
+    }
+
+    @Override
+    @Transactional
+    public int advanceNextOccurrences(LocalDateTime time) {
+        requireNonNull(time);
+        return refreshNextOccurrences("e.nextOccurrence < :time", time);
+    }
+
+    @Override
+    @Transactional
+    public int computeMissingNextOccurrences(LocalDateTime time) {
+        requireNonNull(time);
+        return refreshNextOccurrences(
+            "e.nextOccurrence IS NULL AND (e.recurRuleParts IS NOT NULL OR e.startDate >= :time)", time
+        );
+    }
+
+    @Override
+    @Transactional
+    public int computeMissingFingerprints() {
+        var count = 0;
+        List<Event> events;
+        do { // the updated events leave the result
+            events = manager.createQuery("SELECT e FROM Event e WHERE e.fingerprint IS NULL", Event.class)
+                .setMaxResults(IMPORT_BATCH_SIZE)
+                .getResultList();
+            events.forEach(Event::refreshFingerprint);
+            manager.flush();
+            manager.clear();
+            count += events.size();
+        } while (events.size() == IMPORT_BATCH_SIZE);
+        return count;
+    }
+
     @Override
     @Transactional
     public RepositoryResponse<Event> authenticatedSave(
@@ -90,6 +308,7 @@ public class EventRepositoryImpl implements EventRepository {
         manager.merge(user).events().add(event);
         manager.flush();
         manager.detach(event);
+        occurrenceCache.invalidate(userId, event);
         return RepositoryResponse.ok(event);
     }
 
@@ -104,6 +323,7 @@ public class EventRepositoryImpl implements EventRepository {
             return eventGetResponse;
         }
         manager.remove(eventGetResponse.get());
+        occurrenceCache.invalidate(userId, eventGetResponse.get());
         return eventGetResponse;
     }
 
@@ -135,6 +355,7 @@ public class EventRepositoryImpl implements EventRepository {
             return eventGetResponse;
         }
         var event = eventGetResponse.get();
+        occurrenceCache.invalidate(userId, event); // where it was
         event.setTitle(title);
         event.setDescription(description);
         event.setPlace(place);
@@ -143,24 +364,79 @@ public class EventRepositoryImpl implements EventRepository {
         event.setStartDate(startDate);
         event.setLatitude(latitude);
         event.setLongitude(longitude);
+        event.refreshNextOccurrence(LocalDateTime.now());
         manager.flush(); // flush changes before detach
         manager.detach(event);
+        occurrenceCache.invalidate(userId, event); // where it is
         return eventGetResponse;
     }
 
     @Override
     @Transactional
-    public RepositoryResponse<Void> authenticatedEventListSave(List<EventDTO> events) {
+    public RepositoryResponse<Integer> authenticatedEventListSave(List<EventDTO> events) {
         requireNonNull(events);
+        var identities = new HashSet<Map.Entry<UUID, UUID>>(); // checks each identity once
         for (var e : events) {
             requireNonNull(e);
-            var login = loginRepository.checkIdentity(e.userId(), e.userToken());
-            if (login.status() != RepositoryResponse.Status.OK) {
+            if (identities.add(Map.entry(e.userId(), e.userToken())) &&
+                loginRepository.checkIdentity(e.userId(), e.userToken()).status() != RepositoryResponse.Status.OK
+            ) {
                 return RepositoryResponse.unauthorized();
             }
-            var user = login.get().user();
+        }
+        // one sweep per user instead of one per event, a list holding up to whole calendars
+        identities.forEach(identity -> occurrenceCache.invalidateUser(identity.getKey()));
+        return RepositoryResponse.ok(insertInBatches(events.iterator()));
+    }
+
+    /**
+     * Inserts events, skipping the duplicates, and flushing and clearing the persistence context after each JDBC batch.
+     *
+     * @return the number of inserted events
+     */
+    private int insertInBatches(Iterator<EventDTO> events) {
+        var count = 0;
+        var batch = new ArrayList<EventDTO>(IMPORT_BATCH_SIZE);
+        while (events.hasNext()) {
+            batch.add(requireNonNull(events.next()));
+            if (batch.size() == IMPORT_BATCH_SIZE) { // sends a full JDBC batch and keeps the context small
+                count += insertBatch(batch);
+                batch.clear();
+            }
+        }
+        return count + insertBatch(batch);
+    }
+
+    /**
+     * Inserts a batch of events, looking up the duplicates of the whole batch with one query per owner.
+     *
+     * @return the number of inserted events
+     */
+    private int insertBatch(List<EventDTO> batch) {
+        var fingerprints = new HashMap<UUID, Set<String>>();
+        for (var e : batch) {
+            fingerprints
+                .computeIfAbsent(e.userId(), owner -> new HashSet<>())
+                .add(Event.fingerprint(e.title(), e.start(), e.end(), e.rrule()));
+        }
+        var known = new HashMap<Map.Entry<UUID, String>, Event>();
+        fingerprints.forEach((owner, ownerFingerprints) -> manager.createQuery(
+                "SELECT e FROM Event e WHERE e.user.id = :userId AND e.fingerprint IN :fingerprints", Event.class)
+            .setParameter("userId", owner)
+            .setParameter("fingerprints", ownerFingerprints)
+            .getResultStream()
+            .forEach(event -> known.putIfAbsent(Map.entry(owner, event.fingerprint()), event)));
+        var count = 0;
+        for (var e : batch) {
+            var owner = e.userId();
+            var key = Map.entry(owner, Event.fingerprint(e.title(), e.start(), e.end(), e.rrule()));
+            var duplicated = known.get(key);
+            if (duplicated != null) {
+                completeDetails(duplicated, e);
+                continue;
+            }
             var event = Event.createEvent(
-                user,
+                manager.getReference(User.class, owner), // neither loaded nor merged
                 e.title(),
                 e.description(),
                 e.place(),
@@ -170,9 +446,62 @@ public class EventRepositoryImpl implements EventRepository {
                 e.latitude(),
                 e.longitude()
             );
-            manager.merge(user).events().add(event);
+            manager.persist(event);
+            known.put(key, event);
+            count++;
+        }
+        manager.flush();
+        manager.clear();
+        return count;
+    }
+
+    private static void completeDetails(Event event, EventDTO duplicate) {
+        if (event.feed() != null) return; // left to the synchronization of the feed
+        if (event.description() == null && duplicate.description() != null) event.setDescription(duplicate.description());
+        if (event.place() == null && duplicate.place() != null) event.setPlace(duplicate.place());
+        if (event.latitude() == null && event.longitude() == null) {
+            event.setLatitude(duplicate.latitude());
+            event.setLongitude(duplicate.longitude());
         }
-        return RepositoryResponse.ok(null);
+    }
+
+    /**
+     * Refreshes the next occurrence of the events matching a condition on {@code :time}, one batch at a time.
+     * <p>
+     * The events are paged by id, since an event without any further occurrence still matches the condition once
+     * refreshed. The persistence context is flushed and cleared after each batch. An event whose next occurrence
+     * cannot be computed is logged and skipped, without failing its batch.
+     *
+     * @return the number of updated events
+     */
+    private int refreshNextOccurrences(String condition, LocalDateTime time) {
+        var count = 0;
+        UUID lastId = null;
+        List<Event> events;
+        do {
+            var query = manager.createQuery(
+                    "SELECT e FROM Event e WHERE (" + condition + ")" + (lastId == null ? "" : " AND e.id > :lastId") +
+                        " ORDER BY e.id",
+                    Event.class
+                )
+                .setParameter("time", time)
+                .setMaxResults(IMPORT_BATCH_SIZE);
+            if (lastId != null) query.setParameter("lastId", lastId);
+            events = query.getResultList();
+            if (events.isEmpty()) break;
+            for (var event : events) {
+                try {
+                    event.refreshNextOccurrence(time);
+                    count++;
+                } catch (RuntimeException e) { // such as a stored rule that no longer compiles, left as is
+                    logger.warn("Failed to refresh the next occurrence of event {}", event.id(), e);
+                }
+            }
+            lastId = events.get(events.size() - 1).id();
+            manager.flush();
+            manager.clear();
+        } while (events.size() == IMPORT_BATCH_SIZE);
+        return count;
     }
 
     /**
@@ -189,7 +518,7 @@ public class EventRepositoryImpl implements EventRepository {
             return eventRepository;
         }
 
-        if (!eventRepository.get().user().equals(userAuthenticate.get().user())) { // unauthorized access.
+        if (!eventRepository.get().user().id().equals(userId)) { // unauthorized access.
             return RepositoryResponse.unauthorized();
         }
 
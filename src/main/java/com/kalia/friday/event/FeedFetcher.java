@@ -0,0 +1,193 @@
+package com.kalia.friday.event;
+
+import com.kalia.friday.util.BoundedCache;
+import io.micronaut.context.annotation.Value;
+import jakarta.inject.Singleton;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.zip.GZIPInputStream;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Singleton service downloading the ics feeds imported from a URL, with the shared {@link HttpClient}.
+ * <p>
+ * The {@code ETag} and {@code Last-Modified} validators of the last successful import of a feed by a user are kept, and
+ * sent back with the next request of the same feed, so that an unchanged feed is answered with an empty
+ * {@code 304 Not Modified}. The validators can also be managed by the caller, as for the subscribed feeds. Responses
+ * are requested gzip-compressed.
+ */
+@Singleton
+public class FeedFetcher {
+    private static final int MAX_VALIDATORS = 10_000;
+
+    private record FeedKey(UUID userId, URI url) {
+    }
+
+    private record Validators(String etag, String lastModified) {
+    }
+
+    /**
+     * Body of a downloaded feed, with its validators.
+     */
+    public static final class Feed {
+        private final String etag;
+        private final String lastModified;
+        private final InputStream body;
+        private final Runnable remember;
+
+        private Feed(String etag, String lastModified, InputStream body, Runnable remember) {
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.body = body;
+            this.remember = remember;
+        }
+
+        /**
+         * Gets the {@code ETag} of the response.
+         *
+         * @return the {@code ETag} of the response, null if absent
+         */
+        public String etag() {
+            return etag;
+        }
+
+        /**
+         * Gets the {@code Last-Modified} date of the response.
+         *
+         * @return the {@code Last-Modified} date of the response, null if absent
+         */
+        public String lastModified() {
+            return lastModified;
+        }
+
+        /**
+         * Gets the content of the feed, closed with the body of the response.
+         *
+         * @return the content of the feed
+         */
+        public Reader reader() {
+            return new InputStreamReader(body, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Keeps the validators of this response, to be sent with the next request of the feed by the same user. Must
+         * only be called once the feed has been imported. Does nothing if the feed was fetched with explicit
+         * validators.
+         */
+        public void remember() {
+            remember.run();
+        }
+    }
+
+    private final HttpClient client;
+    private final Duration requestTimeout;
+    private final BoundedCache<FeedKey, Validators> validators = new BoundedCache<>(MAX_VALIDATORS);
+
+    /**
+     * Creates a fetcher by injection with Micronaut.
+     *
+     * @param client         the shared client
+     * @param requestTimeout the maximum time to wait for the headers of a response
+     */
+    public FeedFetcher(HttpClient client, @Value("${friday.feeds.request-timeout:30s}") Duration requestTimeout) {
+        this.client = requireNonNull(client);
+        this.requestTimeout = requireNonNull(requestTimeout);
+    }
+
+    /**
+     * Parses the URL of a feed.
+     *
+     * @param url the URL of the feed
+     * @return the parsed URL
+     * @throws IllegalArgumentException if the URL is invalid or not an HTTP(S) URL
+     */
+    public static URI feedURI(String url) {
+        requireNonNull(url);
+        var uri = URI.create(url);
+        var scheme = uri.getScheme();
+        if (uri.getHost() == null || !("http".equalsIgnoreCase(scheme) || "https".equalsIgnoreCase(scheme))) {
+            throw new IllegalArgumentException("Invalid feed URL: " + url);
+        }
+        return uri;
+    }
+
+    /**
+     * Downloads a feed for a user, unless it did not change since the last import of the user.
+     *
+     * @param userId the id of the user
+     * @param url    the URL of the feed
+     * @return the downloaded feed, which must be read to the end or closed | empty if the feed is not modified
+     * @throws IOException          if the feed is unreachable or answered with an error status
+     * @throws InterruptedException if interrupted while waiting for the response
+     */
+    public Optional<Feed> fetch(UUID userId, URI url) throws IOException, InterruptedException {
+        var key = new FeedKey(requireNonNull(userId), requireNonNull(url));
+        var known = validators.getIfPresent(key);
+        var feed = fetch(url, known.map(Validators::etag).orElse(null), known.map(Validators::lastModified).orElse(null));
+        return feed.map(f -> new Feed(f.etag, f.lastModified, f.body, () -> {
+            if (f.etag == null && f.lastModified == null) {
+                validators.invalidate(key);
+            } else {
+                validators.put(key, new Validators(f.etag, f.lastModified));
+            }
+        }));
+    }
+
+    /**
+     * Downloads a feed, unless it did not change since the response having the given validators.
+     *
+     * @param url          the URL of the feed
+     * @param etag         the {@code ETag} of the previous response, null if none
+     * @param lastModified the {@code Last-Modified} date of the previous response, null if none
+     * @return the downloaded feed, which must be read to the end or closed | empty if the feed is not modified
+     * @throws IOException          if the feed is unreachable or answered with an error status
+     * @throws InterruptedException if interrupted while waiting for the response
+     */
+    public Optional<Feed> fetch(URI url, String etag, String lastModified) throws IOException, InterruptedException {
+        var request = HttpRequest.newBuilder(requireNonNull(url))
+            .GET()
+            .timeout(requestTimeout)
+            .header("Accept", "text/calendar, */*;q=0.5")
+            .header("Accept-Encoding", "gzip");
+        if (etag != null) request.header("If-None-Match", etag);
+        if (lastModified != null) request.header("If-Modified-Since", lastModified);
+        var response = client.send(request.build(), HttpResponse.BodyHandlers.ofInputStream());
+        if (response.statusCode() == 304) {
+            response.body().close();
+            return Optional.empty();
+        }
+        if (response.statusCode() >= 400) {
+            response.body().close();
+            throw new IOException("Unexpected HTTP status " + response.statusCode());
+        }
+        var headers = response.headers();
+        var body = response.body();
+        if (headers.firstValue("Content-Encoding").filter("gzip"::equalsIgnoreCase).isPresent()) {
+            try {
+                body = new GZIPInputStream(body);
+            } catch (IOException e) {
+                body.close();
+                throw e;
+            }
+        }
+        return Optional.of(new Feed(
+            headers.firstValue("ETag").orElse(null),
+            headers.firstValue("Last-Modified").orElse(null),
+            body,
+            () -> {
+            }
+        ));
+    }
+}
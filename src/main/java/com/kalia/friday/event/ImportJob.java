@@ -0,0 +1,131 @@
+package com.kalia.friday.event;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * State of an asynchronous import of events, updated by the {@link ImportJobService} and read by the status requests.
+ */
+public final class ImportJob {
+
+    /**
+     * Status of an import job.
+     */
+    public enum Status {
+        QUEUED, RUNNING, DONE, FAILED
+    }
+
+    private final UUID id = UUID.randomUUID();
+    private final UUID userId;
+    private final AtomicLong parsed = new AtomicLong();
+    private final AtomicLong inserted = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong duplicates = new AtomicLong();
+    private volatile Status status = Status.QUEUED;
+    private volatile Instant start;
+    private volatile Instant end;
+    private volatile String error;
+
+    /**
+     * Creates a queued job.
+     *
+     * @param userId the id of the user importing the events
+     */
+    ImportJob(UUID userId) {
+        this.userId = requireNonNull(userId);
+    }
+
+    /**
+     * Gets the id of the job.
+     *
+     * @return the id of the job
+     */
+    public UUID id() {
+        return id;
+    }
+
+    /**
+     * Gets the id of the user importing the events.
+     *
+     * @return the id of the user
+     */
+    public UUID userId() {
+        return userId;
+    }
+
+    /**
+     * Gets the status of the job.
+     *
+     * @return the status of the job
+     */
+    public Status status() {
+        return status;
+    }
+
+    /**
+     * Gets the time at which the job ended.
+     *
+     * @return the end of the job, null if not ended
+     */
+    public Instant end() {
+        return end;
+    }
+
+    void start() {
+        start = Instant.now();
+        status = Status.RUNNING;
+    }
+
+    void parsed() {
+        parsed.incrementAndGet();
+    }
+
+    void parsed(int count) {
+        parsed.addAndGet(count);
+    }
+
+    void inserted(int count) {
+        inserted.addAndGet(count);
+    }
+
+    void failed() {
+        failed.incrementAndGet();
+    }
+
+    void failed(int count) {
+        failed.addAndGet(count);
+    }
+
+    void duplicates(int count) {
+        duplicates.addAndGet(count);
+    }
+
+    void finish() {
+        end = Instant.now();
+        status = Status.DONE;
+    }
+
+    void fail(String error) {
+        this.error = error;
+        end = Instant.now();
+        status = Status.FAILED;
+    }
+
+    /**
+     * Creates a snapshot of the job.
+     *
+     * @return the snapshot of the job
+     */
+    public ImportJobDTO toDTO() {
+        var jobStart = start;
+        var elapsed = jobStart == null ? Duration.ZERO : Duration.between(jobStart, end != null ? end : Instant.now());
+        var insertedCount = inserted.get();
+        var eventsPerSecond = elapsed.isZero() ? 0 : insertedCount * 1e9 / elapsed.toNanos();
+        return new ImportJobDTO(id, status, parsed.get(), insertedCount, failed.get(), duplicates.get(), eventsPerSecond,
+            error);
+    }
+}
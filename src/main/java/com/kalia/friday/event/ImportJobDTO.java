@@ -0,0 +1,30 @@
+package com.kalia.friday.event;
+
+import io.micronaut.core.annotation.Introspected;
+
+import java.util.UUID;
+
+/**
+ * Represents the progress of an import job sent from the server to the client.
+ *
+ * @param id              the id of the job
+ * @param status          the status of the job
+ * @param parsed          the number of events read from the source
+ * @param inserted        the number of events inserted
+ * @param failed          the number of invalid events skipped
+ * @param duplicates      the number of events skipped as duplicates of events of the user
+ * @param eventsPerSecond the number of events inserted per second since the start of the job
+ * @param error           the reason of the failure of the job, if failed
+ */
+@Introspected
+public record ImportJobDTO(
+    UUID id,
+    ImportJob.Status status,
+    long parsed,
+    long inserted,
+    long failed,
+    long duplicates,
+    double eventsPerSecond,
+    String error
+) {
+}
@@ -0,0 +1,315 @@
+package com.kalia.friday.event;
+
+import com.kalia.friday.login.LoginRepository;
+import com.kalia.friday.util.RepositoryResponse;
+import io.micronaut.context.annotation.Value;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Singleton service running the imports of events in the background, on a bounded pool of workers.
+ * <p>
+ * The events are inserted in batches, each in its own transaction, so the progress of a job is visible while it runs.
+ * The duplicates of the events of the user are skipped, so importing a calendar twice does not duplicate its events.
+ * A batch containing an invalid event is inserted again one event at a time, skipping the invalid ones. The finished
+ * jobs are forgotten after {@link #JOB_RETENTION}.
+ */
+@Singleton
+public class ImportJobService {
+    private static final int BATCH_SIZE = 100;
+    private static final Duration JOB_RETENTION = Duration.ofHours(1);
+    private final Logger logger = LoggerFactory.getLogger(ImportJobService.class);
+    private final ConcurrentHashMap<UUID, ImportJob> jobs = new ConcurrentHashMap<>();
+    private final ThreadPoolExecutor executor;
+
+    @Inject
+    private EventRepository eventRepository;
+
+    @Inject
+    private LoginRepository loginRepository;
+
+    /**
+     * Progress reported by a job writing the imported events itself.
+     */
+    public interface Progress {
+
+        /**
+         * Counts events read from the source.
+         *
+         * @param count the number of events read
+         */
+        void parsed(int count);
+
+        /**
+         * Counts events written.
+         *
+         * @param count the number of events written
+         */
+        void inserted(int count);
+
+        /**
+         * Counts invalid events skipped.
+         *
+         * @param count the number of events skipped
+         */
+        void failed(int count);
+    }
+
+    /**
+     * Work of a job writing the imported events itself, run by the worker.
+     */
+    @FunctionalInterface
+    public interface Task {
+
+        /**
+         * Imports the events.
+         *
+         * @param progress the progress of the job, to update while importing
+         * @throws Exception if the import failed
+         */
+        void run(Progress progress) throws Exception;
+    }
+
+    /**
+     * Creates a service by injection with Micronaut.
+     *
+     * @param threads       the number of workers
+     * @param queueCapacity the maximum number of queued jobs
+     */
+    public ImportJobService(
+        @Value("${friday.imports.threads:2}") int threads,
+        @Value("${friday.imports.queue-size:16}") int queueCapacity
+    ) {
+        if (threads < 1) throw new IllegalArgumentException("threads must be positive.");
+        if (queueCapacity < 1) throw new IllegalArgumentException("queueCapacity must be positive.");
+        var counter = new AtomicInteger();
+        executor = new ThreadPoolExecutor(
+            threads, threads,
+            0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(queueCapacity),
+            (r) -> new Thread(r, "Event Import " + counter.incrementAndGet()),
+            new ThreadPoolExecutor.AbortPolicy()
+        );
+    }
+
+    /**
+     * Queues the import of events for a user.
+     *
+     * @param userId    the id of the user
+     * @param userToken the token of the user
+     * @param source    opens the stream of events to import, called by the worker
+     * @return OK with the queued job | UNAUTHORIZED if invalid credentials
+     * @throws RejectedExecutionException if too many jobs are queued
+     */
+    public RepositoryResponse<ImportJobDTO> submit(UUID userId, UUID userToken, Callable<Stream<EventDTO>> source) {
+        return submit(userId, userToken, source, () -> {
+        });
+    }
+
+    /**
+     * Queues the import of events for a user, with an action run by the worker if the job is done.
+     *
+     * @param userId    the id of the user
+     * @param userToken the token of the user
+     * @param source    opens the stream of events to import, called by the worker
+     * @param onDone    called by the worker once all the events have been read and the valid ones inserted
+     * @return OK with the queued job | UNAUTHORIZED if invalid credentials
+     * @throws RejectedExecutionException if too many jobs are queued
+     */
+    public RepositoryResponse<ImportJobDTO> submit(
+        UUID userId,
+        UUID userToken,
+        Callable<Stream<EventDTO>> source,
+        Runnable onDone
+    ) {
+        requireNonNull(source);
+        requireNonNull(onDone);
+        return enqueue(userId, userToken, job -> run(job, source, onDone));
+    }
+
+    /**
+     * Queues an import of events for a user, writing the events itself.
+     *
+     * @param userId    the id of the user
+     * @param userToken the token of the user
+     * @param task      imports the events, called by the worker
+     * @return OK with the queued job | UNAUTHORIZED if invalid credentials
+     * @throws RejectedExecutionException if too many jobs are queued
+     */
+    public RepositoryResponse<ImportJobDTO> submitTask(UUID userId, UUID userToken, Task task) {
+        requireNonNull(task);
+        return enqueue(userId, userToken, job -> run(job, task));
+    }
+
+    private RepositoryResponse<ImportJobDTO> enqueue(UUID userId, UUID userToken, Consumer<ImportJob> work) {
+        requireNonNull(userId);
+        requireNonNull(userToken);
+        if (loginRepository.checkIdentity(userId, userToken).status() != RepositoryResponse.Status.OK) {
+            return RepositoryResponse.unauthorized();
+        }
+        purgeFinishedJobs();
+        var job = new ImportJob(userId);
+        jobs.put(job.id(), job);
+        try {
+            executor.execute(() -> work.accept(job));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.id());
+            throw e;
+        }
+        return RepositoryResponse.ok(job.toDTO());
+    }
+
+    /**
+     * Gets the progress of a job of a user.
+     *
+     * @param jobId     the id of the job
+     * @param userId    the id of the user
+     * @param userToken the token of the user
+     * @return OK with the progress of the job | UNAUTHORIZED if invalid credentials | NOT_FOUND if the job is unknown
+     */
+    public RepositoryResponse<ImportJobDTO> status(UUID jobId, UUID userId, UUID userToken) {
+        requireNonNull(jobId);
+        requireNonNull(userId);
+        requireNonNull(userToken);
+        if (loginRepository.checkIdentity(userId, userToken).status() != RepositoryResponse.Status.OK) {
+            return RepositoryResponse.unauthorized();
+        }
+        var job = jobs.get(jobId);
+        if (job == null || !job.userId().equals(userId)) return RepositoryResponse.notFound();
+        return RepositoryResponse.ok(job.toDTO());
+    }
+
+    /**
+     * Stops the workers, interrupting the running jobs.
+     */
+    @PreDestroy
+    public void stop() {
+        executor.shutdownNow();
+    }
+
+    private void run(ImportJob job, Callable<Stream<EventDTO>> source, Runnable onDone) {
+        job.start();
+        try (var events = source.call()) {
+            var batch = new ArrayList<EventDTO>(BATCH_SIZE);
+            var iterator = events.iterator();
+            while (iterator.hasNext()) {
+                batch.add(iterator.next());
+                job.parsed();
+                if (batch.size() == BATCH_SIZE) {
+                    if (!insert(job, batch)) return;
+                    batch.clear();
+                }
+            }
+            if (insert(job, batch)) {
+                job.finish();
+                onDone.run();
+            }
+        } catch (Exception e) { // the source is unreachable or malformed
+            logger.warn("Import job {} failed", job.id(), e);
+            job.fail(errorOf(e));
+        }
+        log(job);
+    }
+
+    private void run(ImportJob job, Task task) {
+        job.start();
+        try {
+            task.run(new Progress() {
+                @Override
+                public void parsed(int count) {
+                    job.parsed(count);
+                }
+
+                @Override
+                public void inserted(int count) {
+                    job.inserted(count);
+                }
+
+                @Override
+                public void failed(int count) {
+                    job.failed(count);
+                }
+            });
+            job.finish();
+        } catch (Exception e) { // the source is unreachable or malformed
+            if (e instanceof InterruptedException) Thread.currentThread().interrupt();
+            logger.warn("Import job {} failed", job.id(), e);
+            job.fail(errorOf(e));
+        }
+        log(job);
+    }
+
+    /**
+     * Gets the error reported to the user for a failure, the details being only logged.
+     */
+    private static String errorOf(Exception e) {
+        if (e instanceof InterruptedException) return "Import interrupted";
+        if (e instanceof IOException || e instanceof UncheckedIOException) return "Source unreachable";
+        if (e instanceof IllegalArgumentException) return "Malformed calendar";
+        return "Import failed";
+    }
+
+    private void log(ImportJob job) {
+        var result = job.toDTO();
+        logger.info("Import job {} {}: {} inserted, {} failed, {} events/s",
+            job.id(), result.status(), result.inserted(), result.failed(), Math.round(result.eventsPerSecond()));
+    }
+
+    /**
+     * @return false if the credentials are no longer valid, failing the job
+     */
+    private boolean insert(ImportJob job, List<EventDTO> batch) {
+        if (batch.isEmpty()) return true;
+        try {
+            var response = eventRepository.authenticatedEventListSave(batch);
+            if (response.status() != RepositoryResponse.Status.OK) {
+                job.fail("Unauthorized");
+                return false;
+            }
+            job.inserted(response.get());
+            job.duplicates(batch.size() - response.get());
+        } catch (NullPointerException | IllegalArgumentException e) { // an invalid event rolled the batch back
+            for (var event : batch) {
+                try {
+                    var response = eventRepository.authenticatedEventListSave(List.of(event));
+                    if (response.status() != RepositoryResponse.Status.OK) {
+                        job.fail("Unauthorized");
+                        return false;
+                    }
+                    job.inserted(response.get());
+                    job.duplicates(1 - response.get());
+                } catch (NullPointerException | IllegalArgumentException invalid) {
+                    job.failed();
+                }
+            }
+        }
+        return true;
+    }
+
+    private void purgeFinishedJobs() {
+        var limit = Instant.now().minus(JOB_RETENTION);
+        jobs.values().removeIf(job -> job.end() != null && job.end().isBefore(limit));
+    }
+}
@@ -0,0 +1,63 @@
+package com.kalia.friday.event;
+
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Singleton service advancing periodically the stored next occurrences of the events, after computing the missing
+ * fingerprints.
+ */
+@Singleton
+public class NextOccurrenceService {
+
+    private static final long SWEEP_DELAY = 900_000; // 15min
+    private final Logger logger = LoggerFactory.getLogger(NextOccurrenceService.class);
+
+    @Inject
+    private EventRepository repository;
+
+    /**
+     * Starts the service, computes the missing fingerprints and occurrences and then periodically advances the passed
+     * occurrences.
+     */
+    public void start() {
+        var executor = Executors.newSingleThreadScheduledExecutor((r) -> new Thread(r, "Next Occurrence Sweeper"));
+        executor.execute(this::computeMissingFingerprints);
+        executor.execute(this::computeMissingOccurrences);
+        executor.scheduleWithFixedDelay(this::advanceOccurrences, SWEEP_DELAY, SWEEP_DELAY, TimeUnit.MILLISECONDS);
+        logger.info("Service started");
+    }
+
+    private void computeMissingFingerprints() {
+        try {
+            var count = repository.computeMissingFingerprints();
+            logger.info("Computed {} missing fingerprints", count);
+        } catch (RuntimeException e) { // keeps the executor alive
+            logger.error("Failed to compute missing fingerprints", e);
+        }
+    }
+
+    private void computeMissingOccurrences() {
+        try {
+            var count = repository.computeMissingNextOccurrences(LocalDateTime.now());
+            logger.info("Computed {} missing next occurrences", count);
+        } catch (RuntimeException e) { // keeps the executor alive
+            logger.error("Failed to compute missing next occurrences", e);
+        }
+    }
+
+    private void advanceOccurrences() {
+        try {
+            var count = repository.advanceNextOccurrences(LocalDateTime.now());
+            logger.info("Advanced {} next occurrences", count);
+        } catch (RuntimeException e) { // keeps the scheduled task alive
+            logger.error("Failed to advance next occurrences", e);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.kalia.friday.event;
+
+import com.kalia.friday.util.BoundedCache;
+import io.micronaut.context.annotation.Value;
+import io.micronaut.core.convert.format.ReadableBytes;
+import io.micronaut.transaction.support.TransactionSynchronization;
+import io.micronaut.transaction.support.TransactionSynchronizationManager;
+import jakarta.inject.Singleton;
+
+import javax.validation.constraints.NotNull;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Singleton cache of the occurrences of the events of the users, keyed by user and range of time.
+ * <p>
+ * Calendar views ask again and again for the same few ranges, whose recurrences are expanded once. The cache is bounded
+ * by the estimated memory size of the occurrences. Every write to the events of a user must invalidate the ranges it
+ * changes: they are removed at once, and again once the transaction completes. A range loaded while any range is
+ * invalidated is returned but not stored, so that a range read from the rows before the write committed is not kept.
+ */
+@Singleton
+public class OccurrenceCache {
+    private static final long ENTRY_BYTES = 160; // key, map node, list
+    private static final long EVENT_BYTES = 200; // DTO, id, dates, coordinates, list of starts
+    private static final long START_BYTES = 80; // LocalDateTime, with its date and time, and its reference
+    private static final long STRING_BYTES = 48; // header and array, excluding the characters
+    private final BoundedCache<Range, List<EventOccurrencesDTO>> cache;
+
+    /**
+     * Creates a cache by injection with Micronaut.
+     *
+     * @param maxSize the maximum estimated memory size of the occurrences, in bytes
+     */
+    public OccurrenceCache(@Value("${friday.occurrences.max-size:32MB}") @ReadableBytes long maxSize) {
+        cache = new BoundedCache<>(maxSize, OccurrenceCache::sizeOf);
+    }
+
+    /**
+     * Gets the occurrences of the events of a user in a range of time, loading and storing them if absent.
+     *
+     * @param userId the id of the user
+     * @param from   the inclusive beginning of the range
+     * @param to     the exclusive end of the range
+     * @param loader the function reading the events and computing their occurrences
+     * @return the occurrences of the events of the user in the range
+     */
+    public List<EventOccurrencesDTO> get(
+        @NotNull UUID userId,
+        @NotNull LocalDateTime from,
+        @NotNull LocalDateTime to,
+        @NotNull Supplier<List<EventOccurrencesDTO>> loader
+    ) {
+        requireNonNull(loader);
+        return cache.get(new Range(userId, from, to), range -> List.copyOf(loader.get()));
+    }
+
+    /**
+     * Invalidates the ranges of a user in which an event may occur, before and after a write.
+     *
+     * @param userId the id of the owner of the event
+     * @param event  the event, in its state before or after the write
+     */
+    public void invalidate(@NotNull UUID userId, @NotNull Event event) {
+        requireNonNull(userId);
+        requireNonNull(event);
+        var start = event.startDate();
+        var end = event.endDate();
+        var recurring = event.recurRuleParts() != null;
+        // same condition as EventRepository.authenticatedFindOccurrencesInRange
+        invalidateIf(range -> range.userId().equals(userId) && start.isBefore(range.to()) &&
+            (recurring || !start.isBefore(range.from()) || (end != null && end.isAfter(range.from()))));
+    }
+
+    /**
+     * Invalidates all the ranges of a user.
+     *
+     * @param userId the id of the user
+     */
+    public void invalidateUser(@NotNull UUID userId) {
+        requireNonNull(userId);
+        invalidateIf(range -> range.userId().equals(userId));
+    }
+
+    /**
+     * Gets the statistics of the cache, weighed in bytes.
+     *
+     * @return a snapshot of the statistics
+     */
+    public BoundedCache.Stats stats() {
+        return cache.stats();
+    }
+
+    private void invalidateIf(Predicate<Range> filter) {
+        cache.invalidateIf(filter);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(Status status) {
+                    cache.invalidateIf(filter);
+                }
+            });
+        }
+    }
+
+    /**
+     * Estimates the memory size of the occurrences of a range.
+     */
+    private static long sizeOf(List<EventOccurrencesDTO> occurrences) {
+        var size = ENTRY_BYTES;
+        for (var occurrence : occurrences) {
+            var event = occurrence.event();
+            size += EVENT_BYTES + START_BYTES * occurrence.starts().size()
+                + sizeOf(event.title()) + sizeOf(event.description()) + sizeOf(event.place()) + sizeOf(event.rrule());
+        }
+        return size;
+    }
+
+    private static long sizeOf(String text) {
+        return text == null ? 0 : STRING_BYTES + text.length();
+    }
+
+    private record Range(UUID userId, LocalDateTime from, LocalDateTime to) {
+        private Range {
+            requireNonNull(userId);
+            requireNonNull(from);
+            requireNonNull(to);
+        }
+    }
+}
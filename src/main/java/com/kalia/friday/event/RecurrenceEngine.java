@@ -0,0 +1,292 @@
+package com.kalia.friday.event;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.TimeZone;
+import java.util.TreeSet;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Computes the occurrences of a recurring event.
+ * <p>
+ * A rule is split in periods (a day for {@code FREQ=DAILY}, a week for {@code FREQ=WEEKLY}, ...). Instead of stepping
+ * from the start of the event, the engine jumps directly to the period containing the requested date and only expands
+ * the few periods following it. Rules that cannot be computed that way (see {@link CompiledRecurrence#closedForm()})
+ * are delegated to the Biweekly iterator.
+ * <p>
+ * As with the Biweekly iterator, the start of a recurring event is one of its occurrences only if it matches the rule.
+ */
+public final class RecurrenceEngine {
+    private static final int MAX_PERIODS = 10_000; // guards against rules that never produce any occurrence
+    private static final int MAX_OCCURRENCES = 10_000; // guards against expanding a SECONDLY rule over a month
+
+    private RecurrenceEngine() {
+        throw new AssertionError("Cannot instantiate.");
+    }
+
+    /**
+     * Gets the first occurrence of an event starting at or after a given time.
+     * <p>
+     * The start of a recurring event is only an occurrence if it matches the rule, and then counts towards its
+     * {@code COUNT}.
+     *
+     * @param start the start of the event
+     * @param rule  the recurrence rule of the event, null if the event does not recur
+     * @param time  the time from which to look for an occurrence
+     * @return the start of the next occurrence, empty if there is none
+     */
+    public static Optional<LocalDateTime> nextOccurrence(LocalDateTime start, CompiledRecurrence rule, LocalDateTime time) {
+        requireNonNull(start);
+        requireNonNull(time);
+        if (rule == null) return start.isBefore(time) ? Optional.empty() : Optional.of(start);
+        if (rule.until() != null && rule.until().isBefore(time)) return Optional.empty();
+        if (!rule.closedForm()) return iterate(start, rule, time);
+
+        var period = alignedPeriod(start, rule, time);
+        var index = rule.count() == null ? 0 : occurrencesBefore(start, rule, period);
+        for (var i = 0; i < MAX_PERIODS; i++, period += rule.interval()) {
+            for (var candidate : candidates(start, rule, period)) {
+                if (candidate.isBefore(start)) continue;
+                if (rule.until() != null && candidate.isAfter(rule.until())) return Optional.empty();
+                if (rule.count() != null && index >= rule.count()) return Optional.empty();
+                index++;
+                if (!candidate.isBefore(time)) return Optional.of(candidate);
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Gets the occurrences of an event starting in {@code [from, to)}, in chronological order.
+     * <p>
+     * The start of a recurring event is only an occurrence if it matches the rule, and then counts towards its
+     * {@code COUNT}. At most 10 000 occurrences are returned.
+     *
+     * @param start the start of the event
+     * @param rule  the recurrence rule of the event, null if the event does not recur
+     * @param from  the inclusive beginning of the range
+     * @param to    the exclusive end of the range
+     * @return the starts of the occurrences
+     */
+    public static List<LocalDateTime> occurrences(LocalDateTime start, CompiledRecurrence rule, LocalDateTime from, LocalDateTime to) {
+        requireNonNull(start);
+        requireNonNull(from);
+        requireNonNull(to);
+        var result = new ArrayList<LocalDateTime>();
+        if (!start.isBefore(to)) return result;
+        if (rule == null) {
+            if (!start.isBefore(from)) result.add(start);
+            return result;
+        }
+        if (rule.until() != null && rule.until().isBefore(from)) return result;
+        if (!rule.closedForm()) return iterate(start, rule, from, to, result);
+
+        var period = alignedPeriod(start, rule, from);
+        var index = rule.count() == null ? 0 : occurrencesBefore(start, rule, period);
+        for (var empty = 0; empty < MAX_PERIODS && result.size() < MAX_OCCURRENCES; period += rule.interval()) {
+            var candidates = candidates(start, rule, period);
+            empty = candidates.isEmpty() ? empty + 1 : 0;
+            for (var candidate : candidates) {
+                if (candidate.isBefore(start)) continue;
+                if (rule.until() != null && candidate.isAfter(rule.until())) return result;
+                if (rule.count() != null && index >= rule.count()) return result;
+                if (!candidate.isBefore(to)) return result;
+                index++;
+                if (!candidate.isBefore(from)) result.add(candidate);
+            }
+        }
+        return result;
+    }
+
+    private static Optional<LocalDateTime> iterate(LocalDateTime start, CompiledRecurrence rule, LocalDateTime time) {
+        var zone = ZoneId.systemDefault();
+        var iterator = rule.source().getDateIterator(Date.from(start.atZone(zone).toInstant()), TimeZone.getTimeZone(zone));
+        iterator.advanceTo(Date.from(time.atZone(zone).toInstant()));
+        if (!iterator.hasNext()) return Optional.empty();
+        return Optional.of(iterator.next().toInstant().atZone(zone).toLocalDateTime());
+    }
+
+    private static List<LocalDateTime> iterate(
+        LocalDateTime start,
+        CompiledRecurrence rule,
+        LocalDateTime from,
+        LocalDateTime to,
+        List<LocalDateTime> result
+    ) {
+        var zone = ZoneId.systemDefault();
+        var iterator = rule.source().getDateIterator(Date.from(start.atZone(zone).toInstant()), TimeZone.getTimeZone(zone));
+        iterator.advanceTo(Date.from(from.atZone(zone).toInstant()));
+        while (iterator.hasNext() && result.size() < MAX_OCCURRENCES) {
+            var next = iterator.next().toInstant().atZone(zone).toLocalDateTime();
+            if (!next.isBefore(to)) break;
+            result.add(next);
+        }
+        return result;
+    }
+
+    /**
+     * Gets the offset (in frequency units) of the period containing {@code time}, rounded down to the interval.
+     */
+    private static long alignedPeriod(LocalDateTime start, CompiledRecurrence rule, LocalDateTime time) {
+        var units = switch (rule.frequency()) {
+            case SECONDLY -> ChronoUnit.SECONDS.between(start, time);
+            case MINUTELY -> ChronoUnit.MINUTES.between(start.truncatedTo(ChronoUnit.MINUTES), time);
+            case HOURLY -> ChronoUnit.HOURS.between(start.truncatedTo(ChronoUnit.HOURS), time);
+            case DAILY -> ChronoUnit.DAYS.between(start.toLocalDate(), time.toLocalDate());
+            case WEEKLY -> ChronoUnit.WEEKS.between(weekOf(start.toLocalDate()), weekOf(time.toLocalDate()));
+            case MONTHLY -> ChronoUnit.MONTHS.between(YearMonth.from(start), YearMonth.from(time));
+            case YEARLY -> (long) time.getYear() - start.getYear();
+        };
+        var period = Math.max(0, units);
+        return period - period % rule.interval();
+    }
+
+    /**
+     * Counts the occurrences of the periods preceding {@code period}.
+     * <p>
+     * This is a multiplication when every period has the same number of occurrences (see {@link #regularPeriodSize}).
+     * Otherwise ({@code FREQ=MONTHLY}, {@code FREQ=YEARLY}, {@code BYMONTHDAY}, or {@code BYDAY} on a daily or
+     * shorter frequency), the periods are expanded one by one, which is linear in the number of periods elapsed since
+     * the start but stops as soon as {@code COUNT} is reached.
+     */
+    private static long occurrencesBefore(LocalDateTime start, CompiledRecurrence rule, long period) {
+        if (period == 0) return 0;
+        var first = countFrom(start, candidates(start, rule, 0));
+        var perPeriod = regularPeriodSize(rule);
+        if (perPeriod > 0) {
+            return first + (period / rule.interval() - 1) * perPeriod;
+        }
+        var count = first;
+        for (var p = (long) rule.interval(); p < period && count < rule.count(); p += rule.interval()) {
+            count += candidates(start, rule, p).size();
+        }
+        return count;
+    }
+
+    /**
+     * Gets the number of occurrences of every period of a rule, or 0 if it varies from one period to another.
+     */
+    private static int regularPeriodSize(CompiledRecurrence rule) {
+        if (!rule.byMonthDay().isEmpty()) return 0;
+        return switch (rule.frequency()) {
+            case SECONDLY, MINUTELY, HOURLY, DAILY -> rule.byDay().isEmpty() ? 1 : 0;
+            case WEEKLY -> rule.byDay().isEmpty() ? 1 : weekdays(rule).size();
+            default -> 0;
+        };
+    }
+
+    private static long countFrom(LocalDateTime start, List<LocalDateTime> candidates) {
+        return candidates.stream().filter(c -> !c.isBefore(start)).count();
+    }
+
+    /**
+     * Gets the sorted candidate occurrences of the period located {@code period} frequency units after the start.
+     */
+    private static List<LocalDateTime> candidates(LocalDateTime start, CompiledRecurrence rule, long period) {
+        return switch (rule.frequency()) {
+            case SECONDLY -> filtered(start.plusSeconds(period), rule);
+            case MINUTELY -> filtered(start.plusMinutes(period), rule);
+            case HOURLY -> filtered(start.plusHours(period), rule);
+            case DAILY -> filtered(start.plusDays(period), rule);
+            case WEEKLY -> atStartTime(start, weekDays(start.toLocalDate(), rule, weekOf(start.toLocalDate()).plusWeeks(period)));
+            case MONTHLY -> atStartTime(start, monthDays(start.toLocalDate(), rule, YearMonth.from(start).plusMonths(period)));
+            case YEARLY -> atStartTime(start, yearDays(start.toLocalDate(), start.getYear() + period));
+        };
+    }
+
+    private static List<LocalDateTime> filtered(LocalDateTime candidate, CompiledRecurrence rule) {
+        var date = candidate.toLocalDate();
+        var matches = (rule.byDay().isEmpty() || weekdays(rule).contains(date.getDayOfWeek())) &&
+            matchesMonthDay(date, rule);
+        return matches ? List.of(candidate) : List.of();
+    }
+
+    private static List<LocalDate> weekDays(LocalDate start, CompiledRecurrence rule, LocalDate monday) {
+        var days = rule.byDay().isEmpty() ? EnumSet.of(start.getDayOfWeek()) : weekdays(rule);
+        var result = new ArrayList<LocalDate>(days.size());
+        for (var day : days) { // EnumSet iterates from MONDAY to SUNDAY
+            var date = monday.plusDays(day.ordinal());
+            if (matchesMonthDay(date, rule)) {
+                result.add(date);
+            }
+        }
+        return result;
+    }
+
+    private static List<LocalDate> monthDays(LocalDate start, CompiledRecurrence rule, YearMonth month) {
+        if (rule.byDay().isEmpty() && rule.byMonthDay().isEmpty()) {
+            return start.getDayOfMonth() <= month.lengthOfMonth() ? List.of(month.atDay(start.getDayOfMonth())) : List.of();
+        }
+        var days = new TreeSet<LocalDate>();
+        if (rule.byDay().isEmpty()) {
+            for (var monthDay : rule.byMonthDay()) {
+                var day = monthDay < 0 ? month.lengthOfMonth() + 1 + monthDay : monthDay;
+                if (day >= 1 && day <= month.lengthOfMonth()) {
+                    days.add(month.atDay(day));
+                }
+            }
+            return List.copyOf(days);
+        }
+        for (var weekday : rule.byDay()) {
+            addWeekdays(days, weekday, month);
+        }
+        days.removeIf(d -> !matchesMonthDay(d, rule));
+        return List.copyOf(days);
+    }
+
+    private static void addWeekdays(TreeSet<LocalDate> days, CompiledRecurrence.Weekday weekday, YearMonth month) {
+        var first = month.atDay(1).with(TemporalAdjusters.firstInMonth(weekday.day()));
+        var last = month.atEndOfMonth().with(TemporalAdjusters.lastInMonth(weekday.day()));
+        if (weekday.ordinal() == 0) {
+            for (var date = first; !date.isAfter(last); date = date.plusWeeks(1)) {
+                days.add(date);
+            }
+            return;
+        }
+        var date = weekday.ordinal() > 0
+            ? first.plusWeeks(weekday.ordinal() - 1)
+            : last.minusWeeks(-weekday.ordinal() - 1);
+        if (YearMonth.from(date).equals(month)) {
+            days.add(date);
+        }
+    }
+
+    private static List<LocalDate> yearDays(LocalDate start, long year) {
+        if (year > LocalDate.MAX.getYear()) return List.of();
+        var date = start.withYear((int) year);
+        return date.getDayOfMonth() == start.getDayOfMonth() ? List.of(date) : List.of(); // skips February 29th
+    }
+
+    private static List<LocalDateTime> atStartTime(LocalDateTime start, List<LocalDate> dates) {
+        var time = start.toLocalTime();
+        return dates.stream().map(d -> d.atTime(time)).toList();
+    }
+
+    private static boolean matchesMonthDay(LocalDate date, CompiledRecurrence rule) {
+        if (rule.byMonthDay().isEmpty()) return true;
+        var day = date.getDayOfMonth();
+        var fromEnd = day - date.lengthOfMonth() - 1;
+        return rule.byMonthDay().contains(day) || rule.byMonthDay().contains(fromEnd);
+    }
+
+    private static EnumSet<DayOfWeek> weekdays(CompiledRecurrence rule) {
+        var days = EnumSet.noneOf(DayOfWeek.class);
+        rule.byDay().forEach(d -> days.add(d.day()));
+        return days;
+    }
+
+    private static LocalDate weekOf(LocalDate date) {
+        return date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+    }
+}
@@ -0,0 +1,42 @@
+package com.kalia.friday.event;
+
+import com.kalia.friday.util.BiweeklyUtils;
+import com.kalia.friday.util.BoundedCache;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Cache of the compiled recurrence rules, keyed by their {@code rrule} text.
+ * <p>
+ * Many events share the same few rules ({@code FREQ=WEEKLY}, ...): each distinct text is parsed once instead of once
+ * per event and per request.
+ */
+public final class RecurrenceRuleCache {
+    private static final int MAX_RULES = 1024;
+    private static final BoundedCache<String, CompiledRecurrence> CACHE = new BoundedCache<>(MAX_RULES);
+
+    private RecurrenceRuleCache() {
+        throw new AssertionError("Cannot instantiate.");
+    }
+
+    /**
+     * Gets the compiled form of a recurrence rule.
+     *
+     * @param recurRuleParts the rule to compile
+     * @return the compiled rule
+     * @throws IllegalArgumentException if the rule is invalid
+     */
+    public static CompiledRecurrence compile(String recurRuleParts) {
+        requireNonNull(recurRuleParts);
+        return CACHE.get(recurRuleParts, r -> CompiledRecurrence.of(BiweeklyUtils.recurrenceRuleFromString(r).getValue()));
+    }
+
+    /**
+     * Gets the statistics of the cache.
+     *
+     * @return a snapshot of the statistics
+     */
+    public static BoundedCache.Stats stats() {
+        return CACHE.stats();
+    }
+}
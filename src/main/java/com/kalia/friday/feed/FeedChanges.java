@@ -0,0 +1,138 @@
+package com.kalia.friday.feed;
+
+import com.kalia.friday.event.Event;
+import com.kalia.friday.event.EventDTO;
+import com.kalia.friday.util.BiweeklyUtils;
+
+import javax.validation.constraints.NotNull;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Changes read from the source of a subscription during one synchronization, written to its events in batches of one
+ * transaction each.
+ * <p>
+ * The events read are matched with the stored ones by key: only the added, changed and removed events are written,
+ * and the invalid or duplicated ones are skipped, keeping their old version. Not thread-safe.
+ */
+public final class FeedChanges {
+    private static final int BATCH_SIZE = 100;
+    private final FeedSubscriptionRepository repository;
+    private final UUID id;
+    private final Map<String, FeedSubscriptionRepository.EventVersion> known;
+    private final Set<String> seen = new HashSet<>();
+    private final List<FeedEvent> inserts = new ArrayList<>();
+    private final Map<UUID, FeedEvent> updates = new HashMap<>();
+    private final List<UUID> deletes = new ArrayList<>();
+    private int inserted, updated, deleted, unchanged, skipped;
+
+    /**
+     * Starts the changes of a subscription, reading the versions of its stored events.
+     *
+     * @param repository the repository writing the changes
+     * @param id         the id of the subscription
+     */
+    public FeedChanges(@NotNull FeedSubscriptionRepository repository, @NotNull UUID id) {
+        this.repository = requireNonNull(repository);
+        this.id = requireNonNull(id);
+        this.known = repository.eventVersions(id);
+    }
+
+    /**
+     * Adds an event read from the source, inserted if new, updated if its revision changed.
+     *
+     * @param feedEvent the event read
+     */
+    public void put(@NotNull FeedEvent feedEvent) {
+        requireNonNull(feedEvent);
+        if (!seen.add(feedEvent.uid()) || !isValid(feedEvent.event())) { // an invalid event keeps its old version
+            skipped++;
+            return;
+        }
+        var version = known.get(feedEvent.uid());
+        if (version == null) {
+            inserts.add(feedEvent);
+            inserted++;
+        } else if (!version.revision().equals(feedEvent.revision())) {
+            updates.put(version.eventId(), feedEvent);
+            updated++;
+        } else {
+            unchanged++;
+        }
+        applyIfFull();
+    }
+
+    /**
+     * Counts an event of the source that could not be read.
+     */
+    public void skip() {
+        skipped++;
+    }
+
+    /**
+     * Removes an event deleted from the source, if stored.
+     *
+     * @param uid the key of the event in the source
+     */
+    public void remove(@NotNull String uid) {
+        requireNonNull(uid);
+        seen.add(uid);
+        var version = known.remove(uid);
+        if (version == null) return;
+        deletes.add(version.eventId());
+        deleted++;
+        applyIfFull();
+    }
+
+    /**
+     * Removes the stored events not read from the source, once it has been read entirely.
+     */
+    public void removeUnseen() {
+        for (var entry : known.entrySet()) {
+            if (seen.contains(entry.getKey())) continue;
+            deletes.add(entry.getValue().eventId());
+            deleted++;
+            applyIfFull();
+        }
+    }
+
+    /**
+     * Writes the remaining changes.
+     *
+     * @return the result of the synchronization
+     */
+    public FeedSyncDTO finish() {
+        apply();
+        return new FeedSyncDTO(false, inserted, updated, deleted, unchanged, skipped, null);
+    }
+
+    private void applyIfFull() {
+        if (inserts.size() + updates.size() + deletes.size() >= BATCH_SIZE) apply();
+    }
+
+    private void apply() {
+        if (inserts.isEmpty() && updates.isEmpty() && deletes.isEmpty()) return;
+        repository.applyChanges(id, inserts, updates, deletes);
+        inserts.clear();
+        updates.clear();
+        deletes.clear();
+    }
+
+    private static boolean isValid(EventDTO event) {
+        if (event.title() == null || event.start() == null) return false;
+        try {
+            BiweeklyUtils.requireValidRecurRule(event.rrule());
+            Event.requireEndAfterStart(event.start(), event.end());
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+}
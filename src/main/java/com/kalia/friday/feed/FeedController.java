@@ -0,0 +1,140 @@
+package com.kalia.friday.feed;
+
+import com.kalia.friday.event.FeedFetcher;
+import com.kalia.friday.login.LoginSessionDTO;
+import com.kalia.friday.util.RepositoryResponse;
+import io.micronaut.http.HttpResponse;
+import io.micronaut.http.HttpStatus;
+import io.micronaut.http.annotation.Body;
+import io.micronaut.http.annotation.Controller;
+import io.micronaut.http.annotation.Delete;
+import io.micronaut.http.annotation.Post;
+import io.micronaut.scheduling.TaskExecutors;
+import io.micronaut.scheduling.annotation.ExecuteOn;
+import jakarta.inject.Inject;
+
+import javax.validation.Valid;
+import java.net.URI;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * API endpoint for managing the ics feeds subscribed by the users.
+ */
+@ExecuteOn(value = TaskExecutors.IO)
+@Controller("/api/feed")
+public class FeedController {
+    private static final String DEFAULT_ROUTE = "/api/feed/";
+
+    @Inject
+    private FeedSubscriptionRepository repository;
+
+    private final FeedSyncService syncService;
+
+    /**
+     * Creates a controller by injection with Micronaut.
+     *
+     * @param syncService the feed synchronization service to launch
+     */
+    public FeedController(FeedSyncService syncService) {
+        this.syncService = syncService;
+        syncService.start();
+    }
+
+    /**
+     * Subscribes a user to an ics feed, and queues its first synchronization.
+     *
+     * @param url             the URL of the feed
+     * @param loginSessionDTO {
+     *                        "userId": "",
+     *                        "token": "",
+     *                        }
+     * @return CREATED with the subscription | BAD_REQUEST if invalid url | UNAUTHORIZED if invalid credentials
+     * | CONFLICT if already subscribed
+     */
+    @Post("/subscribe")
+    public HttpResponse<FeedSubscriptionDTO> subscribe(String url, @Body @Valid LoginSessionDTO loginSessionDTO) {
+        RepositoryResponse<FeedSubscription> response;
+        try {
+            FeedFetcher.feedURI(url);
+            response = repository.authenticatedSubscribe(loginSessionDTO.userId(), loginSessionDTO.token(), url);
+        } catch (NullPointerException | IllegalArgumentException e) { // if invalid url
+            return HttpResponse.badRequest();
+        }
+        return switch (response.status()) {
+            case OK -> {
+                var subscription = response.get();
+                syncService.syncLater(subscription.id());
+                yield HttpResponse
+                    .created(subscription.toDTO())
+                    .headers(h -> h.location(URI.create(DEFAULT_ROUTE + subscription.id())));
+            }
+            case CONFLICT -> HttpResponse.status(HttpStatus.CONFLICT);
+            default -> HttpResponse.unauthorized();
+        };
+    }
+
+    /**
+     * Retrieves all the subscriptions of a user.
+     *
+     * @param loginSessionDTO {
+     *                        "userId": "",
+     *                        "token": "",
+     *                        }
+     * @return OK with the subscriptions | UNAUTHORIZED if invalid credentials
+     */
+    @Post("/all")
+    public HttpResponse<List<FeedSubscriptionDTO>> all(@Body @Valid LoginSessionDTO loginSessionDTO) {
+        var response = repository.authenticatedFindByUserId(loginSessionDTO.userId(), loginSessionDTO.token());
+        if (response.status() != RepositoryResponse.Status.OK) {
+            return HttpResponse.unauthorized();
+        }
+        return HttpResponse.ok(response.get().stream().map(FeedSubscription::toDTO).toList());
+    }
+
+    /**
+     * Synchronizes a subscription now.
+     *
+     * @param id              the id of the subscription
+     * @param loginSessionDTO {
+     *                        "userId": "",
+     *                        "token": "",
+     *                        }
+     * @return {
+     * "notModified": false,
+     * "inserted": 0,
+     * "updated": 0,
+     * "deleted": 0,
+     * "unchanged": 0,
+     * "skipped": 0,
+     * "error": ""
+     * } | NOT_FOUND if the subscription is unknown | UNAUTHORIZED if invalid credentials
+     * | CONFLICT if the subscription is already being synchronized
+     */
+    @Post("/sync/{id}")
+    public HttpResponse<FeedSyncDTO> sync(UUID id, @Body @Valid LoginSessionDTO loginSessionDTO) {
+        var response = syncService.authenticatedSync(id, loginSessionDTO.userId(), loginSessionDTO.token());
+        if (response.status() != RepositoryResponse.Status.OK) {
+            return HttpResponse.status(RepositoryResponse.toEmptyHttpResponse(response.status()).getStatus());
+        }
+        return HttpResponse.ok(response.get());
+    }
+
+    /**
+     * Unsubscribes a user from a feed, deleting the events synchronized from it.
+     *
+     * @param id              the id of the subscription
+     * @param loginSessionDTO {
+     *                        "userId": "",
+     *                        "token": "",
+     *                        }
+     * @return OK if deleted | NOT_FOUND if the subscription is unknown | UNAUTHORIZED if invalid credentials
+     */
+    @Delete("/delete/{id}")
+    public HttpResponse<Void> delete(UUID id, @Body @Valid LoginSessionDTO loginSessionDTO) {
+        var response = repository.authenticatedUnsubscribe(id, loginSessionDTO.userId(), loginSessionDTO.token());
+        return RepositoryResponse
+            .toEmptyHttpResponse(response.status())
+            .headers(h -> h.location(URI.create(DEFAULT_ROUTE + "delete/" + id)));
+    }
+}
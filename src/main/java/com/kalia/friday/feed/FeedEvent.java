@@ -0,0 +1,51 @@
+package com.kalia.friday.feed;
+
+import com.kalia.friday.event.Event;
+import com.kalia.friday.event.EventDTO;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.Objects;
+
+import static com.kalia.friday.util.StringUtils.contentHash;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * An event read from a feed, with what identifies it and its version across the synchronizations of the feed.
+ *
+ * @param uid      the key of the event in the feed: its {@code UID}, with its {@code RECURRENCE-ID} if any, or a hash of
+ *                 its content if it has no {@code UID}
+ * @param revision the version of the event: its {@code SEQUENCE} and {@code LAST-MODIFIED}, or a hash of its content
+ *                 if it has neither
+ * @param event    the content of the event, without user
+ */
+public record FeedEvent(String uid, String revision, EventDTO event) {
+
+    /**
+     * Creates an event read from a feed.
+     *
+     * @param uid          the {@code UID} of the event, null if absent
+     * @param recurrenceId the {@code RECURRENCE-ID} of the event, null if absent
+     * @param sequence     the {@code SEQUENCE} of the event, null if absent
+     * @param lastModified the {@code LAST-MODIFIED} of the event, null if absent
+     * @param event        the content of the event
+     * @return the created event
+     */
+    public static FeedEvent of(
+        String uid,
+        LocalDateTime recurrenceId,
+        Integer sequence,
+        Instant lastModified,
+        EventDTO event
+    ) {
+        requireNonNull(event);
+        var key = uid == null || uid.isBlank()
+            ? "hash:" + Event.fingerprint(event.title(), event.start(), event.end(), event.rrule())
+            : uid + (recurrenceId == null ? "" : "/" + recurrenceId);
+        var revision = sequence == null && lastModified == null
+            ? "hash:" + contentHash(event.title(), event.description(), event.place(), event.rrule(), event.start(),
+            event.end(), event.latitude(), event.longitude())
+            : Objects.requireNonNullElse(sequence, 0) + "/" + (lastModified == null ? "" : lastModified.toEpochMilli());
+        return new FeedEvent(key, revision, event);
+    }
+}
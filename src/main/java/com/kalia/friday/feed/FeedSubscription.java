@@ -0,0 +1,226 @@
+package com.kalia.friday.feed;
+
+import com.kalia.friday.user.User;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.FetchType;
+import javax.persistence.GeneratedValue;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.ManyToOne;
+import javax.persistence.Table;
+import javax.validation.constraints.NotBlank;
+import javax.validation.constraints.NotNull;
+import java.io.Serial;
+import java.io.Serializable;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import static com.kalia.friday.util.StringUtils.requireNotNullOrBlank;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Represents the {@code FeedSubscription} table in the database.
+ * <p>
+ * A subscription keeps the events of a user in sync with an ics feed, along with the validators of the last
+ * synchronized version of the feed, or with a Google calendar, along with the sync token of its last synchronization.
+ */
+@Entity
+@Table(name = "feed_subscription", indexes = {
+    @Index(name = "feed_subscription_user_url_idx", columnList = "user_id, url", unique = true),
+    @Index(name = "feed_subscription_last_sync_idx", columnList = "last_sync")
+})
+public class FeedSubscription implements Serializable {
+
+    @Serial
+    private static final long serialVersionUID = 734582146L;
+    static final int MAX_URL_LENGTH = 2048;
+
+    /**
+     * Source of the events of a subscription.
+     */
+    public enum Kind {
+        ICS, GOOGLE
+    }
+
+    /**
+     * Necessary empty constructor for Micronaut and JPA.
+     */
+    public FeedSubscription() {
+    }
+
+    /**
+     * Creates a {@code feedSubscription} row.
+     *
+     * @param user the user subscribing to the feed
+     * @param url  the URL of the feed
+     */
+    public FeedSubscription(@NotNull User user, @NotBlank String url) {
+        this(user, Kind.ICS, url);
+    }
+
+    /**
+     * Creates a {@code feedSubscription} row.
+     *
+     * @param user the user subscribing to the feed
+     * @param kind the source of the events
+     * @param url  the URL of the feed, or the key of the Google calendar
+     */
+    public FeedSubscription(@NotNull User user, @NotNull Kind kind, @NotBlank String url) {
+        this.user = requireNonNull(user);
+        this.kind = requireNonNull(kind);
+        this.url = requireNotNullOrBlank(url);
+    }
+
+    @Id
+    @GeneratedValue
+    private UUID id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    private User user;
+
+    @NotNull
+    @Enumerated(EnumType.STRING)
+    @Column(name = "kind", nullable = false, length = 16)
+    private Kind kind;
+
+    @NotBlank
+    @Column(name = "url", nullable = false, length = MAX_URL_LENGTH)
+    private String url;
+
+    @Column(name = "last_sync")
+    private LocalDateTime lastSync;
+
+    @Column(name = "etag")
+    private String etag;
+
+    @Column(name = "last_modified")
+    private String lastModified;
+
+    @Column(name = "sync_token", length = 1024)
+    private String syncToken;
+
+    @Column(name = "last_error")
+    private String lastError;
+
+    /**
+     * Gets the id of the subscription.
+     *
+     * @return the id of the subscription
+     */
+    public UUID id() {
+        return id;
+    }
+
+    /**
+     * Gets the user owning the subscription.
+     *
+     * @return the user owning the subscription
+     */
+    public User user() {
+        return user;
+    }
+
+    /**
+     * Gets the source of the events.
+     *
+     * @return the source of the events
+     */
+    public Kind kind() {
+        return kind;
+    }
+
+    /**
+     * Gets the URL of the feed.
+     *
+     * @return the URL of the feed
+     */
+    public String url() {
+        return url;
+    }
+
+    /**
+     * Gets the time of the last synchronization, successful or not.
+     *
+     * @return the time of the last synchronization, null if never synchronized
+     */
+    public LocalDateTime lastSync() {
+        return lastSync;
+    }
+
+    /**
+     * Gets the {@code ETag} of the last synchronized version of the feed.
+     *
+     * @return the {@code ETag} of the feed, null if unknown
+     */
+    public String etag() {
+        return etag;
+    }
+
+    /**
+     * Gets the {@code Last-Modified} date of the last synchronized version of the feed.
+     *
+     * @return the {@code Last-Modified} date of the feed, null if unknown
+     */
+    public String lastModified() {
+        return lastModified;
+    }
+
+    /**
+     * Gets the sync token of the last synchronization of the Google calendar.
+     *
+     * @return the sync token, null if the next synchronization must read the whole calendar
+     */
+    public String syncToken() {
+        return syncToken;
+    }
+
+    /**
+     * Gets the reason of the failure of the last synchronization.
+     *
+     * @return the reason of the failure, null if the last synchronization succeeded
+     */
+    public String lastError() {
+        return lastError;
+    }
+
+    /**
+     * Records a synchronization of the feed.
+     *
+     * @param time         the time of the synchronization
+     * @param etag         the {@code ETag} of the synchronized feed, null if unknown
+     * @param lastModified the {@code Last-Modified} date of the synchronized feed, null if unknown
+     * @param error        the reason of the failure of the synchronization, null if it succeeded
+     */
+    public void setSynced(@NotNull LocalDateTime time, String etag, String lastModified, String error) {
+        this.lastSync = requireNonNull(time);
+        this.etag = etag;
+        this.lastModified = lastModified;
+        this.lastError = error;
+    }
+
+    /**
+     * Records a synchronization of the Google calendar.
+     *
+     * @param time      the time of the synchronization
+     * @param syncToken the sync token returned by the synchronization, null if unknown
+     * @param error     the reason of the failure of the synchronization, null if it succeeded
+     */
+    public void setTokenSynced(@NotNull LocalDateTime time, String syncToken, String error) {
+        this.lastSync = requireNonNull(time);
+        this.syncToken = syncToken;
+        this.lastError = error;
+    }
+
+    /**
+     * Converts a subscription to a feedSubscriptionDTO.
+     *
+     * @return the created feedSubscriptionDTO
+     */
+    public FeedSubscriptionDTO toDTO() {
+        return new FeedSubscriptionDTO(id, kind, url, lastSync, lastError);
+    }
+}
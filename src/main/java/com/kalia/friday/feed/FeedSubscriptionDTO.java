@@ -0,0 +1,25 @@
+package com.kalia.friday.feed;
+
+import io.micronaut.core.annotation.Introspected;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Represents a feed subscription sent from the server to the client.
+ *
+ * @param id        the id of the subscription
+ * @param kind      the source of the events
+ * @param url       the URL of the feed, or the key of the Google calendar
+ * @param lastSync  the time of the last synchronization, null if never synchronized
+ * @param lastError the reason of the failure of the last synchronization, null if it succeeded
+ */
+@Introspected
+public record FeedSubscriptionDTO(
+    UUID id,
+    FeedSubscription.Kind kind,
+    String url,
+    LocalDateTime lastSync,
+    String lastError
+) {
+}
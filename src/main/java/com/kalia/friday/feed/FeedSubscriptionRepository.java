@@ -0,0 +1,168 @@
+package com.kalia.friday.feed;
+
+import com.kalia.friday.util.RepositoryResponse;
+import io.micronaut.transaction.annotation.ReadOnly;
+
+import javax.transaction.Transactional;
+import javax.validation.constraints.NotBlank;
+import javax.validation.constraints.NotNull;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Interface used by Micronaut to inject a FeedSubscriptionRepository when requested.
+ * <p>
+ * Serves to manage the {@code feedSubscription} table, and the events synchronized from the feeds.
+ *
+ * @see FeedSubscription
+ */
+public interface FeedSubscriptionRepository {
+
+    /**
+     * Version of an event synchronized from a feed.
+     *
+     * @param eventId  the id of the event
+     * @param revision the version of the event in the feed
+     */
+    record EventVersion(UUID eventId, String revision) {
+    }
+
+    /**
+     * Subscribes a user to a feed.
+     *
+     * @param userId    the id of the user
+     * @param userToken the token of the user
+     * @param url       the URL of the feed
+     * @return OK with the created subscription | UNAUTHORIZED if invalid credentials | CONFLICT if already subscribed
+     */
+    @Transactional
+    RepositoryResponse<FeedSubscription> authenticatedSubscribe(
+        @NotNull UUID userId,
+        @NotNull UUID userToken,
+        @NotBlank String url
+    );
+
+    /**
+     * Finds a subscription of a user, creating it if missing, without authentication.
+     *
+     * @param userId the id of the user
+     * @param kind   the source of the events
+     * @param url    the URL of the feed, or the key of the Google calendar
+     * @return the found or created subscription
+     */
+    @Transactional
+    FeedSubscription findOrSubscribe(@NotNull UUID userId, @NotNull FeedSubscription.Kind kind, @NotBlank String url);
+
+    /**
+     * Finds all the subscriptions of a user.
+     *
+     * @param userId    the id of the user
+     * @param userToken the token of the user
+     * @return OK with the subscriptions | UNAUTHORIZED if invalid credentials
+     */
+    @ReadOnly
+    RepositoryResponse<List<FeedSubscription>> authenticatedFindByUserId(@NotNull UUID userId, @NotNull UUID userToken);
+
+    /**
+     * Finds a subscription of a user.
+     *
+     * @param id        the id of the subscription
+     * @param userId    the id of the user
+     * @param userToken the token of the user
+     * @return OK with the subscription | UNAUTHORIZED if invalid credentials | NOT_FOUND if the user has no such
+     * subscription
+     */
+    @ReadOnly
+    RepositoryResponse<FeedSubscription> authenticatedFindById(
+        @NotNull UUID id,
+        @NotNull UUID userId,
+        @NotNull UUID userToken
+    );
+
+    /**
+     * Unsubscribes a user from a feed, deleting the events synchronized from it.
+     *
+     * @param id        the id of the subscription
+     * @param userId    the id of the user
+     * @param userToken the token of the user
+     * @return OK with the deleted subscription | UNAUTHORIZED if invalid credentials | NOT_FOUND if the user has no
+     * such subscription
+     */
+    @Transactional
+    RepositoryResponse<FeedSubscription> authenticatedUnsubscribe(
+        @NotNull UUID id,
+        @NotNull UUID userId,
+        @NotNull UUID userToken
+    );
+
+    /**
+     * Finds a subscription by its id, without authentication.
+     *
+     * @param id the id of the subscription
+     * @return the subscription, empty if unknown
+     */
+    @ReadOnly
+    Optional<FeedSubscription> findById(@NotNull UUID id);
+
+    /**
+     * Finds the ics subscriptions never synchronized or last synchronized before a limit.
+     *
+     * @param limit the time before which a subscription must be synchronized again
+     * @return the ids of the subscriptions, least recently synchronized first
+     */
+    @ReadOnly
+    List<UUID> findIdsSyncedBefore(@NotNull LocalDateTime limit);
+
+    /**
+     * Gets the versions of the events synchronized from a feed.
+     *
+     * @param id the id of the subscription
+     * @return the versions of the events, by key in the feed
+     */
+    @ReadOnly
+    Map<String, EventVersion> eventVersions(@NotNull UUID id);
+
+    /**
+     * Applies changes of a feed to its events, in one transaction.
+     *
+     * @param id      the id of the subscription
+     * @param inserts the events added to the feed
+     * @param updates the events changed in the feed, by id of the event to update
+     * @param deletes the ids of the events removed from the feed
+     * @throws IllegalArgumentException if an event is invalid, nothing being applied
+     */
+    @Transactional
+    void applyChanges(
+        @NotNull UUID id,
+        @NotNull Collection<FeedEvent> inserts,
+        @NotNull Map<UUID, FeedEvent> updates,
+        @NotNull Collection<UUID> deletes
+    );
+
+    /**
+     * Records a synchronization of a feed.
+     *
+     * @param id           the id of the subscription
+     * @param time         the time of the synchronization
+     * @param etag         the {@code ETag} of the synchronized feed, null if unknown
+     * @param lastModified the {@code Last-Modified} date of the synchronized feed, null if unknown
+     * @param error        the reason of the failure of the synchronization, null if it succeeded
+     */
+    @Transactional
+    void markSynced(@NotNull UUID id, @NotNull LocalDateTime time, String etag, String lastModified, String error);
+
+    /**
+     * Records a synchronization of a Google calendar.
+     *
+     * @param id        the id of the subscription
+     * @param time      the time of the synchronization
+     * @param syncToken the sync token returned by the synchronization, null if unknown
+     * @param error     the reason of the failure of the synchronization, null if it succeeded
+     */
+    @Transactional
+    void markTokenSynced(@NotNull UUID id, @NotNull LocalDateTime time, String syncToken, String error);
+}
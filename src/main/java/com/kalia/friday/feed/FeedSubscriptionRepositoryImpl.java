@@ -0,0 +1,267 @@
+package com.kalia.friday.feed;
+
+import com.kalia.friday.event.Event;
+import com.kalia.friday.event.OccurrenceCache;
+import com.kalia.friday.login.LoginRepository;
+import com.kalia.friday.user.User;
+import com.kalia.friday.util.RepositoryResponse;
+import io.micronaut.transaction.annotation.ReadOnly;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+
+import javax.persistence.EntityManager;
+import javax.transaction.Transactional;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+import static com.kalia.friday.event.Event.requireEndAfterStart;
+import static com.kalia.friday.util.BiweeklyUtils.requireValidRecurRule;
+import static com.kalia.friday.util.StringUtils.requireNotNullOrBlank;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Implementation of {@code FeedSubscriptionRepository} used by Micronaut for dependency injection.
+ */
+@Singleton
+public class FeedSubscriptionRepositoryImpl implements FeedSubscriptionRepository {
+
+    @Inject
+    private EntityManager manager;
+
+    @Inject
+    private LoginRepository loginRepository;
+
+    @Inject
+    private OccurrenceCache occurrenceCache;
+
+    @Override
+    @Transactional
+    public RepositoryResponse<FeedSubscription> authenticatedSubscribe(UUID userId, UUID userToken, String url) {
+        requireNonNull(userId);
+        requireNonNull(userToken);
+        requireNotNullOrBlank(url);
+        if (url.length() > FeedSubscription.MAX_URL_LENGTH) {
+            throw new IllegalArgumentException("url is too long.");
+        }
+        var login = loginRepository.checkIdentity(userId, userToken);
+        if (login.status() != RepositoryResponse.Status.OK) {
+            return RepositoryResponse.unauthorized();
+        }
+        var existing = manager.createQuery(
+                "SELECT COUNT(s) FROM FeedSubscription s WHERE s.user.id = :userId AND s.url = :url", Long.class)
+            .setParameter("userId", userId)
+            .setParameter("url", url)
+            .getSingleResult();
+        if (existing > 0) {
+            return RepositoryResponse.conflict();
+        }
+        var subscription = new FeedSubscription(manager.getReference(User.class, userId), url);
+        manager.persist(subscription);
+        manager.flush();
+        manager.detach(subscription);
+        return RepositoryResponse.ok(subscription);
+    }
+
+    @Override
+    @Transactional
+    public FeedSubscription findOrSubscribe(UUID userId, FeedSubscription.Kind kind, String url) {
+        requireNonNull(userId);
+        requireNonNull(kind);
+        requireNotNullOrBlank(url);
+        if (url.length() > FeedSubscription.MAX_URL_LENGTH) {
+            throw new IllegalArgumentException("url is too long.");
+        }
+        var subscription = manager.createQuery(
+                "SELECT s FROM FeedSubscription s WHERE s.user.id = :userId AND s.url = :url", FeedSubscription.class)
+            .setParameter("userId", userId)
+            .setParameter("url", url)
+            .getResultStream()
+            .findFirst()
+            .orElse(null);
+        if (subscription == null) {
+            subscription = new FeedSubscription(manager.getReference(User.class, userId), kind, url);
+            manager.persist(subscription);
+            manager.flush();
+        }
+        manager.detach(subscription);
+        return subscription;
+    }
+
+    @Override
+    @ReadOnly
+    public RepositoryResponse<List<FeedSubscription>> authenticatedFindByUserId(UUID userId, UUID userToken) {
+        requireNonNull(userId);
+        requireNonNull(userToken);
+        if (loginRepository.checkIdentity(userId, userToken).status() != RepositoryResponse.Status.OK) {
+            return RepositoryResponse.unauthorized();
+        }
+        var result = manager.createQuery(
+                "SELECT s FROM FeedSubscription s WHERE s.user.id = :userId ORDER BY s.url", FeedSubscription.class)
+            .setParameter("userId", userId)
+            .getResultList();
+        result.forEach(it -> manager.detach(it)); // detach before return
+        return RepositoryResponse.ok(result);
+    }
+
+    @Override
+    @ReadOnly
+    public RepositoryResponse<FeedSubscription> authenticatedFindById(UUID id, UUID userId, UUID userToken) {
+        requireNonNull(id);
+        requireNonNull(userId);
+        requireNonNull(userToken);
+        var subscription = getIfAuthenticated(id, userId, userToken);
+        if (subscription.status() == RepositoryResponse.Status.OK) {
+            manager.detach(subscription.get());
+        }
+        return subscription;
+    }
+
+    @Override
+    @Transactional
+    public RepositoryResponse<FeedSubscription> authenticatedUnsubscribe(UUID id, UUID userId, UUID userToken) {
+        requireNonNull(id);
+        requireNonNull(userId);
+        requireNonNull(userToken);
+        var subscription = getIfAuthenticated(id, userId, userToken);
+        if (subscription.status() != RepositoryResponse.Status.OK) {
+            return subscription;
+        }
+        manager.createQuery("DELETE FROM Event e WHERE e.feed.id = :id")
+            .setParameter("id", id)
+            .executeUpdate();
+        manager.remove(subscription.get());
+        occurrenceCache.invalidateUser(userId);
+        return subscription;
+    }
+
+    @Override
+    @ReadOnly
+    public Optional<FeedSubscription> findById(UUID id) {
+        requireNonNull(id);
+        var subscription = manager.find(FeedSubscription.class, id);
+        if (subscription != null) manager.detach(subscription);
+        return Optional.ofNullable(subscription);
+    }
+
+    @Override
+    @ReadOnly
+    public List<UUID> findIdsSyncedBefore(LocalDateTime limit) {
+        requireNonNull(limit);
+        return manager.createQuery("""
+                SELECT s.id FROM FeedSubscription s
+                WHERE s.kind = :kind AND (s.lastSync IS NULL OR s.lastSync < :limit)
+                ORDER BY s.lastSync NULLS FIRST""", UUID.class)
+            .setParameter("kind", FeedSubscription.Kind.ICS)
+            .setParameter("limit", limit)
+            .getResultList();
+    }
+
+    @Override
+    @ReadOnly
+    public Map<String, EventVersion> eventVersions(UUID id) {
+        requireNonNull(id);
+        var versions = new HashMap<String, EventVersion>();
+        manager.createQuery("SELECT e.feedUid, e.id, e.feedRevision FROM Event e WHERE e.feed.id = :id", Object[].class)
+            .setParameter("id", id)
+            .getResultStream()
+            .forEach(row -> versions.put((String) row[0], new EventVersion((UUID) row[1], (String) row[2])));
+        return versions;
+    }
+
+    @Override
+    @Transactional
+    public void applyChanges(
+        UUID id,
+        Collection<FeedEvent> inserts,
+        Map<UUID, FeedEvent> updates,
+        Collection<UUID> deletes
+    ) {
+        requireNonNull(id);
+        requireNonNull(inserts);
+        requireNonNull(updates);
+        requireNonNull(deletes);
+        var subscription = manager.find(FeedSubscription.class, id);
+        if (subscription == null) return; // unsubscribed during the synchronization
+        occurrenceCache.invalidateUser(subscription.user().id());
+        if (!deletes.isEmpty()) {
+            manager.createQuery("DELETE FROM Event e WHERE e.feed.id = :id AND e.id IN :ids")
+                .setParameter("id", id)
+                .setParameter("ids", deletes)
+                .executeUpdate();
+        }
+        var now = LocalDateTime.now();
+        updates.forEach((eventId, feedEvent) -> {
+            var event = manager.find(Event.class, eventId);
+            if (event == null || event.feed() != subscription) return; // deleted since read
+            var e = feedEvent.event();
+            requireValidRecurRule(e.rrule());
+            event.setTitle(e.title());
+            event.setDescription(e.description());
+            event.setPlace(e.place());
+            event.setRecurRuleParts(e.rrule());
+            event.setEndDate(null); // the new end may be before the old start
+            event.setStartDate(e.start());
+            event.setEndDate(e.end());
+            event.setLatitude(e.latitude());
+            event.setLongitude(e.longitude());
+            event.setFeedRevision(feedEvent.revision());
+            event.refreshNextOccurrence(now);
+        });
+        for (var feedEvent : inserts) {
+            var e = feedEvent.event();
+            requireValidRecurRule(e.rrule());
+            requireEndAfterStart(e.start(), e.end());
+            var event = Event.createEvent(
+                subscription.user(),
+                e.title(),
+                e.description(),
+                e.place(),
+                e.rrule(),
+                e.start(),
+                e.end(),
+                e.latitude(),
+                e.longitude()
+            );
+            event.setFeed(subscription, feedEvent.uid(), feedEvent.revision());
+            manager.persist(event);
+        }
+        manager.flush();
+        manager.clear();
+    }
+
+    @Override
+    @Transactional
+    public void markSynced(UUID id, LocalDateTime time, String etag, String lastModified, String error) {
+        requireNonNull(id);
+        requireNonNull(time);
+        var subscription = manager.find(FeedSubscription.class, id);
+        if (subscription == null) return; // unsubscribed during the synchronization
+        subscription.setSynced(time, etag, lastModified, error);
+    }
+
+    @Override
+    @Transactional
+    public void markTokenSynced(UUID id, LocalDateTime time, String syncToken, String error) {
+        requireNonNull(id);
+        requireNonNull(time);
+        var subscription = manager.find(FeedSubscription.class, id);
+        if (subscription == null) return; // unsubscribed during the synchronization
+        subscription.setTokenSynced(time, syncToken, error);
+    }
+
+    private RepositoryResponse<FeedSubscription> getIfAuthenticated(UUID id, UUID userId, UUID userToken) {
+        if (loginRepository.checkIdentity(userId, userToken).status() != RepositoryResponse.Status.OK) {
+            return RepositoryResponse.unauthorized();
+        }
+        var subscription = manager.find(FeedSubscription.class, id);
+        if (subscription == null || !subscription.user().id().equals(userId)) {
+            return RepositoryResponse.notFound();
+        }
+        return RepositoryResponse.ok(subscription);
+    }
+}
@@ -0,0 +1,26 @@
+package com.kalia.friday.feed;
+
+import io.micronaut.core.annotation.Introspected;
+
+/**
+ * Represents the result of the synchronization of a feed sent from the server to the client.
+ *
+ * @param notModified true if the feed did not change since the last synchronization
+ * @param inserted    the number of events added to the feed
+ * @param updated     the number of events changed in the feed
+ * @param deleted     the number of events removed from the feed
+ * @param unchanged   the number of events left as they were
+ * @param skipped     the number of invalid or duplicated events ignored
+ * @param error       the reason of the failure of the synchronization, if failed
+ */
+@Introspected
+public record FeedSyncDTO(
+    boolean notModified,
+    int inserted,
+    int updated,
+    int deleted,
+    int unchanged,
+    int skipped,
+    String error
+) {
+}
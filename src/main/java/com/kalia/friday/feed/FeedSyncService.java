@@ -0,0 +1,158 @@
+package com.kalia.friday.feed;
+
+import com.kalia.friday.event.FeedFetcher;
+import com.kalia.friday.util.BiweeklyUtils;
+import com.kalia.friday.util.RepositoryResponse;
+import io.micronaut.context.annotation.Value;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Singleton service synchronizing the events of the subscriptions with their feeds periodically.
+ * <p>
+ * A feed is downloaded with the validators of its last synchronized version, so an unchanged feed costs a
+ * {@code 304 Not Modified}. Otherwise, its events are matched with the stored ones by {@link FeedChanges}. A
+ * synchronization stopped halfway is completed by the next one. The Google calendars are synchronized by their import
+ * instead.
+ */
+@Singleton
+public class FeedSyncService {
+    private static final long CHECK_DELAY = 60_000; // 1min
+    private final Logger logger = LoggerFactory.getLogger(FeedSyncService.class);
+    private final Set<UUID> syncing = ConcurrentHashMap.newKeySet();
+
+    @Inject
+    private FeedSubscriptionRepository repository;
+
+    @Inject
+    private FeedFetcher fetcher;
+
+    @Value("${friday.feeds.sync-interval:1h}")
+    private Duration syncInterval;
+
+    private ScheduledExecutorService executor;
+
+    /**
+     * Starts the service, periodically synchronizing the feeds not synchronized for the sync interval.
+     */
+    public synchronized void start() {
+        if (executor != null) return;
+        executor = Executors.newSingleThreadScheduledExecutor((r) -> new Thread(r, "Feed Sync"));
+        executor.scheduleWithFixedDelay(this::syncDueFeeds, CHECK_DELAY, CHECK_DELAY, TimeUnit.MILLISECONDS);
+        logger.info("Service started");
+    }
+
+    /**
+     * Stops the service, interrupting the running synchronization.
+     */
+    @PreDestroy
+    public synchronized void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    /**
+     * Queues the synchronization of a feed, if the service is started.
+     *
+     * @param id the id of the subscription
+     */
+    public synchronized void syncLater(UUID id) {
+        requireNonNull(id);
+        if (executor != null) executor.execute(() -> syncQuietly(id));
+    }
+
+    /**
+     * Synchronizes a feed of a user.
+     *
+     * @param id        the id of the subscription
+     * @param userId    the id of the user
+     * @param userToken the token of the user
+     * @return OK with the result | UNAUTHORIZED if invalid credentials | NOT_FOUND if the user has no such ics
+     * subscription | CONFLICT if the feed is already being synchronized
+     */
+    public RepositoryResponse<FeedSyncDTO> authenticatedSync(UUID id, UUID userId, UUID userToken) {
+        var subscription = repository.authenticatedFindById(id, userId, userToken);
+        return switch (subscription.status()) {
+            case OK -> subscription.get().kind() != FeedSubscription.Kind.ICS
+                ? RepositoryResponse.notFound()
+                : sync(subscription.get()).map(RepositoryResponse::ok).orElseGet(RepositoryResponse::conflict);
+            case UNAUTHORIZED -> RepositoryResponse.unauthorized();
+            default -> RepositoryResponse.notFound();
+        };
+    }
+
+    private void syncDueFeeds() {
+        try {
+            for (var id : repository.findIdsSyncedBefore(LocalDateTime.now().minus(syncInterval))) {
+                if (Thread.currentThread().isInterrupted()) return;
+                syncQuietly(id);
+            }
+        } catch (RuntimeException e) { // keeps the scheduled task alive
+            logger.error("Failed to synchronize feeds", e);
+        }
+    }
+
+    private void syncQuietly(UUID id) {
+        repository.findById(id).ifPresent(this::sync);
+    }
+
+    /**
+     * Synchronizes a feed, recording the result in the subscription.
+     *
+     * @return the result | empty if the feed is already being synchronized
+     */
+    Optional<FeedSyncDTO> sync(FeedSubscription subscription) {
+        var id = subscription.id();
+        if (!syncing.add(id)) return Optional.empty();
+        try {
+            var start = System.nanoTime();
+            var result = doSync(subscription);
+            var duration = Duration.ofNanos(System.nanoTime() - start);
+            logger.info("Synchronized feed {} in {} ms: {}", id, duration.toMillis(), result);
+            return Optional.of(result);
+        } catch (Exception e) { // the feed is unreachable or malformed
+            if (e instanceof InterruptedException) Thread.currentThread().interrupt();
+            logger.warn("Failed to synchronize feed " + id, e);
+            var error = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+            repository.markSynced(id, LocalDateTime.now(), null, null, error); // the next synchronization downloads it all
+            return Optional.of(new FeedSyncDTO(false, 0, 0, 0, 0, 0, error));
+        } finally {
+            syncing.remove(id);
+        }
+    }
+
+    private FeedSyncDTO doSync(FeedSubscription subscription) throws Exception {
+        var id = subscription.id();
+        var fetched = fetcher.fetch(FeedFetcher.feedURI(subscription.url()), subscription.etag(), subscription.lastModified());
+        if (fetched.isEmpty()) {
+            repository.markSynced(id, LocalDateTime.now(), subscription.etag(), subscription.lastModified(), null);
+            return new FeedSyncDTO(true, 0, 0, 0, 0, 0, null);
+        }
+        var feed = fetched.get();
+        var changes = new FeedChanges(repository, id);
+        try (var events = BiweeklyUtils.feedEventStream(feed.reader())) {
+            events.forEach(changes::put);
+        }
+        changes.removeUnseen();
+        var result = changes.finish();
+        repository.markSynced(id, LocalDateTime.now(), feed.etag(), feed.lastModified(), null);
+        return result;
+    }
+}
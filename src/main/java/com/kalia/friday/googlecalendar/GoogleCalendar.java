@@ -1,6 +1,7 @@
 package com.kalia.friday.googlecalendar;
 
 import com.google.api.client.auth.oauth2.Credential;
+import com.google.api.client.auth.oauth2.TokenResponseException;
 import com.google.api.client.googleapis.auth.oauth2.GoogleAuthorizationCodeFlow;
 import com.google.api.client.googleapis.auth.oauth2.GoogleClientSecrets;
 import com.google.api.client.googleapis.javanet.GoogleNetHttpTransport;
@@ -10,50 +11,114 @@ import com.google.api.client.json.gson.GsonFactory;
 import com.google.api.client.util.store.FileDataStoreFactory;
 import com.google.api.services.calendar.Calendar;
 import com.google.api.services.calendar.CalendarScopes;
-import com.google.api.services.calendar.model.Event;
+import io.micronaut.context.annotation.Value;
 import jakarta.inject.Singleton;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import javax.annotation.PreDestroy;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.security.GeneralSecurityException;
+import java.time.Duration;
 import java.util.Collections;
 import java.util.List;
-import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import static java.util.Objects.requireNonNull;
 
 /**
  * Class that send requests to Google using Google calendar API.
+ * <p>
+ * The HTTP transport and the authorization flow are created once, when the service starts, then shared by all the
+ * requests. The credentials read from the token store are kept in memory, and the access tokens about to expire are
+ * refreshed in the background, so an import never waits for the token server.
  */
 @Singleton
 public class GoogleCalendar {
     private static final String APPLICATION_NAME = "Friday";
     private static final String TOKENS_DIRECTORY_PATH = "tokens";
+    private static final long REFRESH_CHECK_DELAY = 60_000; // 1min
+    private final Logger logger = LoggerFactory.getLogger(GoogleCalendar.class);
+    private final ConcurrentHashMap<String, Credential> credentials = new ConcurrentHashMap<>();
 
     private final JsonFactory jsonFactory = GsonFactory.getDefaultInstance();
     private final List<String> scopes = Collections.singletonList(CalendarScopes.CALENDAR_READONLY);
     private final Path credentialDirectoryPath = Path.of("resources", "credentials.json");
+    private GoogleAuthorizationCodeFlow flow;
+    private ScheduledExecutorService executor;
+
+    @Value("${friday.google.refresh-margin:5m}")
+    private Duration refreshMargin = Duration.ofMinutes(5);
+
+    /**
+     * Starts the service, creating the authorization flow and periodically refreshing the access tokens about to
+     * expire. If the client secrets cannot be read, the flow is created by the first request instead.
+     */
+    public synchronized void start() {
+        if (executor != null) return;
+        try {
+            flow();
+        } catch (IOException | GeneralSecurityException e) {
+            logger.warn("Google authorization flow not created: {}", e.toString());
+        }
+        executor = Executors.newSingleThreadScheduledExecutor((r) -> new Thread(r, "Google Credentials"));
+        executor.scheduleWithFixedDelay(
+            this::refreshExpiringCredentials,
+            REFRESH_CHECK_DELAY, REFRESH_CHECK_DELAY, TimeUnit.MILLISECONDS
+        );
+        logger.info("Service started");
+    }
+
+    /**
+     * Stops the service.
+     */
+    @PreDestroy
+    public synchronized void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    /**
+     * Gets the url of the authentication page if the Google user has no usable credential, without requesting events.
+     *
+     * @param userId the Google user id (e.g. foo.example@gmail.com)
+     * @return the url of the authentication page, empty if the user is authenticated
+     */
+    public Optional<String> authenticationURL(String userId) throws IOException, GeneralSecurityException {
+        requireNonNull(userId);
+        var flow = flow();
+        return getCredentials(flow, userId) == null ? Optional.of(createAuthURI(flow)) : Optional.empty();
+    }
 
     /**
-     * Tries to get a list of Google Calendar events. If an authentication is required, return the url to the
-     * authentication page instead.
+     * Gets a client of the Google Calendar API authorized by a Google user.
      *
      * @param userId the Google user id (e.g. foo.example@gmail.com)
-     * @return the {@link GoogleCalendarRequestResponse} corresponding to the request.
+     * @return the client, empty if an authentication is required
      */
-    public GoogleCalendarRequestResponse getCalendar(String userId) throws IOException, GeneralSecurityException {
+    public Optional<Calendar> service(String userId) throws IOException, GeneralSecurityException {
         requireNonNull(userId);
-        var httpTransport = GoogleNetHttpTransport.newTrustedTransport();
-        var flow = createFlow(httpTransport);
+        var flow = flow();
         var credential = getCredentials(flow, userId);
-        if (credential != null) {
-            var data = getCalendarData(credential, httpTransport);
-            return new GoogleCalendarRequestResponse(data);
-        }
-        return new GoogleCalendarRequestResponse(createAuthURI(flow));
+        if (credential == null) return Optional.empty();
+        return Optional.of(new Calendar.Builder(flow.getTransport(), jsonFactory, credential)
+            .setApplicationName(APPLICATION_NAME)
+            .build());
+    }
+
+    private synchronized GoogleAuthorizationCodeFlow flow() throws IOException, GeneralSecurityException {
+        if (flow == null) flow = createFlow(GoogleNetHttpTransport.newTrustedTransport());
+        return flow;
     }
 
     private GoogleAuthorizationCodeFlow createFlow(NetHttpTransport httpTransport) throws IOException {
@@ -69,87 +134,57 @@ public class GoogleCalendar {
     }
 
     private Credential getCredentials(GoogleAuthorizationCodeFlow flow, String userId) throws IOException {
-        var credential = flow.loadCredential(userId);
-        if (credential != null
-            && (credential.getRefreshToken() != null
+        var credential = credentials.get(userId);
+        if (credential == null) {
+            credential = flow.loadCredential(userId); // refreshed tokens are written back by the flow
+            if (credential == null) return null;
+            var cached = credentials.putIfAbsent(userId, credential);
+            if (cached != null) credential = cached;
+        }
+        if (credential.getRefreshToken() != null
             || credential.getExpiresInSeconds() == null
-            || credential.getExpiresInSeconds() > 60)) {
+            || credential.getExpiresInSeconds() > 60) {
             return credential;
         }
+        credentials.remove(userId, credential); // read again once authenticated again
         return null;
     }
 
-    private String createAuthURI(GoogleAuthorizationCodeFlow flow) {
-        return flow.newAuthorizationUrl()
-            .setRedirectUri("http://localhost:8080")
-            .build();
-    }
-
-    private List<Event> getCalendarData(Credential credential, NetHttpTransport httpTransport) throws IOException {
-        var service = new Calendar.Builder(httpTransport, jsonFactory, credential)
-            .setApplicationName(APPLICATION_NAME)
-            .build();
-        return service.events()
-            .list("primary")
-            .execute()
-            .getItems();
+    /**
+     * Keeps a credential in memory, as if read from the token store.
+     */
+    void cacheCredential(String userId, Credential credential) {
+        credentials.put(requireNonNull(userId), requireNonNull(credential));
     }
 
     /**
-     * Represents a Google calendar request response, containing either the list of events associated to the request or
-     * a redirection to an authentication page.
+     * Refreshes the access tokens of the credentials in memory expiring within the refresh margin, forgetting the
+     * revoked ones.
      */
-    public static final class GoogleCalendarRequestResponse {
-        private final Status status;
-        private final String url;
-        private final List<Event> events;
-
-        private GoogleCalendarRequestResponse(String url) {
-            this.status = Status.AUTH_REQUIRED;
-            this.url = url;
-            this.events = null;
-        }
-
-        private GoogleCalendarRequestResponse(List<Event> events) {
-            this.status = Status.OK;
-            this.events = List.copyOf(events);
-            this.url = null;
-        }
-
-        /**
-         * Gets the status of the response.
-         *
-         * @return OK if contains events | AUTH_REQUIRED if contains redirection
-         */
-        public Status status() {
-            return status;
-        }
-
-        /**
-         * Gets the redirection url.
-         *
-         * @return the redirection url
-         */
-        public String url() {
-            if (url == null) throw new NoSuchElementException("No url.");
-            return url;
-        }
-
-        /**
-         * Get the event list.
-         *
-         * @return the event list.
-         */
-        public List<Event> events() {
-            if (events == null) throw new NoSuchElementException("No events.");
-            return events;
+    void refreshExpiringCredentials() {
+        try {
+            credentials.forEach((userId, credential) -> {
+                var expiresIn = credential.getExpiresInSeconds();
+                if (credential.getRefreshToken() == null || (expiresIn != null && expiresIn > refreshMargin.toSeconds())) {
+                    return;
+                }
+                try {
+                    credential.refreshToken();
+                } catch (TokenResponseException e) { // the refresh token was revoked
+                    logger.info("Credential of {} revoked: {}", userId, e.getStatusCode());
+                    credentials.remove(userId, credential);
+                } catch (IOException e) { // refreshed on use instead
+                    logger.warn("Failed to refresh the credential of " + userId, e);
+                }
+            });
+        } catch (RuntimeException e) { // keeps the scheduled task alive
+            logger.error("Failed to refresh credentials", e);
         }
+    }
 
-        /**
-         * Status of a {@link GoogleCalendarRequestResponse} response.
-         */
-        public enum Status {
-            AUTH_REQUIRED, OK
-        }
+    private String createAuthURI(GoogleAuthorizationCodeFlow flow) {
+        return flow.newAuthorizationUrl()
+            .setRedirectUri("http://localhost:8080")
+            .build();
     }
 }
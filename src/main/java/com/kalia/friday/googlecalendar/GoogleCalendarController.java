@@ -1,7 +1,9 @@
 package com.kalia.friday.googlecalendar;
 
-import com.kalia.friday.event.EventRepository;
+import com.kalia.friday.event.ImportJobService;
+import com.kalia.friday.util.RepositoryResponse;
 import io.micronaut.http.HttpResponse;
+import io.micronaut.http.HttpStatus;
 import io.micronaut.http.annotation.Body;
 import io.micronaut.http.annotation.Controller;
 import io.micronaut.http.annotation.Post;
@@ -13,6 +15,7 @@ import javax.validation.Valid;
 import java.io.IOException;
 import java.net.URI;
 import java.security.GeneralSecurityException;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * API endpoint for communicating with the Google API side of the database.
@@ -21,36 +24,55 @@ import java.security.GeneralSecurityException;
 @Controller("/api/googlecalendar")
 public class GoogleCalendarController {
     @Inject
-    private EventRepository eventRepository;
+    private ImportJobService importJobService;
 
     @Inject
-    private GoogleCalendar googleCalendar;
+    private GoogleSyncService googleSyncService;
+
+    private final GoogleCalendar googleCalendar;
+
+    /**
+     * Creates a controller by injection with Micronaut.
+     *
+     * @param googleCalendar the Google calendar client to start
+     */
+    public GoogleCalendarController(GoogleCalendar googleCalendar) {
+        this.googleCalendar = googleCalendar;
+        googleCalendar.start();
+    }
 
     /**
-     * Imports a Google calendar into a user calendar.
+     * Queues the synchronization of the Google calendars of a Google user into a user calendar. Only the events changed
+     * since the previous import are read again.
      *
      * @param gCalImportDTO {
      *                      "userId": "",
      *                      "token": "",
      *                      "googleId": ""
      *                      }
-     * @return Unauthorized if credentials are invalid ; ServerError if exception is thrown ; empty Ok if events have
-     * been correctly imported | redirection if Authentication is required
+     * @return Unauthorized if credentials are invalid ; ServerError if exception is thrown ; Accepted with the queued
+     * import job | redirection if Authentication is required | ServiceUnavailable if too many imports are queued
      */
     @Post
-    public HttpResponse<String> importCalendar(@Body @Valid GCalImportDTO gCalImportDTO) {
+    public HttpResponse<?> importCalendar(@Body @Valid GCalImportDTO gCalImportDTO) {
         try {
-            // get events
-            var response = googleCalendar.getCalendar(gCalImportDTO.googleId());
-            if (response.status() == GoogleCalendar.GoogleCalendarRequestResponse.Status.AUTH_REQUIRED) { // redirect to auth if not authorized
-                return HttpResponse.ok(response.url());
+            var authenticationURL = googleCalendar.authenticationURL(gCalImportDTO.googleId());
+            if (authenticationURL.isPresent()) { // redirect to auth if not authorized
+                return HttpResponse.ok(authenticationURL.get());
             }
-
-            var fridayEvents = GoogleCalendars.toFridayEventList(response.events(), gCalImportDTO.userId(), gCalImportDTO.token());
-            eventRepository.authenticatedEventListSave(fridayEvents);
-            return HttpResponse.ok(null);
+            var response = importJobService.submitTask(gCalImportDTO.userId(), gCalImportDTO.token(), progress -> {
+                var service = googleCalendar.service(gCalImportDTO.googleId())
+                    .orElseThrow(() -> new IllegalStateException("Google authentication required"));
+                googleSyncService.sync(service, gCalImportDTO.userId(), gCalImportDTO.googleId(), progress);
+            });
+            if (response.status() != RepositoryResponse.Status.OK) {
+                return HttpResponse.unauthorized();
+            }
+            return HttpResponse.accepted().body(response.get());
         } catch (IOException | GeneralSecurityException e) {
             return HttpResponse.serverError();
+        } catch (RejectedExecutionException e) {
+            return HttpResponse.status(HttpStatus.SERVICE_UNAVAILABLE);
         }
     }
 }
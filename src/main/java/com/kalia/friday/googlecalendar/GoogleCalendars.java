@@ -2,12 +2,12 @@ package com.kalia.friday.googlecalendar;
 
 import com.google.api.services.calendar.model.EventDateTime;
 import com.kalia.friday.event.EventDTO;
+import com.kalia.friday.feed.FeedEvent;
 
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.util.List;
-import java.util.UUID;
 
 import static com.kalia.friday.util.StringUtils.notBlankElse;
 import static com.kalia.friday.util.StringUtils.notNullOrBlankElse;
@@ -22,25 +22,27 @@ public final class GoogleCalendars {
     }
 
     /**
-     * Converts a list of Google calendar events to a list of Friday events.
+     * Converts a Google calendar event to an event synchronized from its calendar.
      *
-     * @param events list of Google calendar events
-     * @param owner  the owner of the events
-     * @return the list of converted Friday events
+     * @param event the Google calendar event
+     * @return the converted event, keyed by its Google id and versioned by its sequence and update time
      */
-    public static List<EventDTO> toFridayEventList(List<com.google.api.services.calendar.model.Event> events, UUID userId, UUID token) {
-        requireNonNull(events);
-        requireNonNull(userId);
-        requireNonNull(token);
-        return events.stream()
-            .map(e -> toEventDTO(requireNonNull(e), userId, token))
-            .toList();
+    public static FeedEvent toFeedEvent(com.google.api.services.calendar.model.Event event) {
+        requireNonNull(event);
+        var updated = event.getUpdated();
+        return FeedEvent.of(
+            event.getId(),
+            null,
+            event.getSequence(),
+            updated == null ? null : Instant.ofEpochMilli(updated.getValue()),
+            toEventDTO(event)
+        );
     }
 
-    private static EventDTO toEventDTO(com.google.api.services.calendar.model.Event event, UUID userId, UUID token) {
+    private static EventDTO toEventDTO(com.google.api.services.calendar.model.Event event) {
         return new EventDTO(
-            userId,
-            token,
+            null,
+            null,
             notNullOrBlankElse(event.getSummary(), "Untitled"),
             notBlankElse(event.getDescription(), null),
             event.getLocation(),
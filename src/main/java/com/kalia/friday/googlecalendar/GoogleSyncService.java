@@ -0,0 +1,228 @@
+package com.kalia.friday.googlecalendar;
+
+import com.google.api.client.http.HttpResponseException;
+import com.google.api.services.calendar.Calendar;
+import com.google.api.services.calendar.model.Events;
+import com.kalia.friday.event.ImportJobService;
+import com.kalia.friday.feed.FeedChanges;
+import com.kalia.friday.feed.FeedEvent;
+import com.kalia.friday.feed.FeedSubscription;
+import com.kalia.friday.feed.FeedSubscriptionRepository;
+import com.kalia.friday.feed.FeedSyncDTO;
+import io.micronaut.context.annotation.Value;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.PreDestroy;
+import javax.validation.constraints.NotBlank;
+import javax.validation.constraints.NotNull;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.kalia.friday.util.StringUtils.requireNotNullOrBlank;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Singleton service synchronizing the Google calendars of a Google user with the events of a user.
+ * <p>
+ * Each calendar is stored as a subscription of the user, and the calendars are synchronized in parallel on a bounded
+ * pool of workers. The first synchronization of a calendar reads all its events page by page, and keeps the sync token
+ * returned with the last page, so the next ones only read the events changed since. A sync token expired by Google
+ * starts a full synchronization again.
+ */
+@Singleton
+public class GoogleSyncService {
+    static final String KEY_PREFIX = "google:";
+    private static final int PAGE_SIZE = 2500; // maximum allowed by Google
+    private static final int GONE = 410;
+    private final Logger logger = LoggerFactory.getLogger(GoogleSyncService.class);
+    private final Set<UUID> syncing = ConcurrentHashMap.newKeySet();
+    private final ThreadPoolExecutor executor;
+
+    @Inject
+    private FeedSubscriptionRepository repository;
+
+    /**
+     * Creates a service by injection with Micronaut.
+     *
+     * @param threads       the maximum number of calendars read at the same time
+     * @param queueCapacity the maximum number of queued calendars, beyond which the import reads them itself
+     */
+    public GoogleSyncService(
+        @Value("${friday.google.threads:4}") int threads,
+        @Value("${friday.google.queue-size:64}") int queueCapacity
+    ) {
+        if (threads < 1) throw new IllegalArgumentException("threads must be positive.");
+        if (queueCapacity < 1) throw new IllegalArgumentException("queueCapacity must be positive.");
+        var counter = new AtomicInteger();
+        executor = new ThreadPoolExecutor(
+            threads, threads,
+            0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(queueCapacity),
+            (r) -> new Thread(r, "Google Sync " + counter.incrementAndGet()),
+            new ThreadPoolExecutor.CallerRunsPolicy()
+        );
+    }
+
+    /**
+     * Stops the workers, interrupting the running synchronizations.
+     */
+    @PreDestroy
+    public void stop() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Synchronizes all the calendars of a Google user with the events of a user.
+     *
+     * @param service  the client of the Google Calendar API, authorized by the Google user
+     * @param userId   the id of the user
+     * @param googleId the Google user id (e.g. foo.example@gmail.com)
+     * @param progress the progress of the import, updated once per calendar
+     * @return the result of each synchronization, by calendar id
+     * @throws IOException          if the calendars cannot be listed, or if some of them failed to be synchronized,
+     *                              the others being synchronized
+     * @throws InterruptedException if interrupted while synchronizing
+     */
+    public Map<String, FeedSyncDTO> sync(
+        @NotNull Calendar service,
+        @NotNull UUID userId,
+        @NotBlank String googleId,
+        @NotNull ImportJobService.Progress progress
+    ) throws IOException, InterruptedException {
+        requireNonNull(service);
+        requireNonNull(userId);
+        requireNotNullOrBlank(googleId);
+        requireNonNull(progress);
+        var futures = new LinkedHashMap<String, Future<FeedSyncDTO>>();
+        try {
+            for (var calendarId : calendarIds(service)) {
+                var subscription = repository.findOrSubscribe(userId, FeedSubscription.Kind.GOOGLE,
+                    KEY_PREFIX + googleId + "/" + calendarId);
+                futures.put(calendarId, executor.submit(() -> {
+                    var result = syncCalendar(service, calendarId, subscription);
+                    progress.parsed(result.inserted() + result.updated() + result.unchanged() + result.skipped());
+                    progress.inserted(result.inserted() + result.updated());
+                    progress.failed(result.skipped());
+                    return result;
+                }));
+            }
+            var results = new LinkedHashMap<String, FeedSyncDTO>();
+            var errors = new ArrayList<String>();
+            for (var entry : futures.entrySet()) {
+                var result = entry.getValue().get();
+                results.put(entry.getKey(), result);
+                if (result.error() != null) errors.add(entry.getKey() + ": " + result.error());
+            }
+            if (!errors.isEmpty()) {
+                throw new IOException("Failed to synchronize " + String.join(", ", errors));
+            }
+            return results;
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        } finally {
+            futures.values().forEach(future -> future.cancel(true)); // if interrupted or failed
+        }
+    }
+
+    private List<String> calendarIds(Calendar service) throws IOException {
+        var ids = new ArrayList<String>();
+        String pageToken = null;
+        do {
+            var page = service.calendarList()
+                .list()
+                .setPageToken(pageToken)
+                .execute();
+            if (page.getItems() != null) page.getItems().forEach(calendar -> ids.add(calendar.getId()));
+            pageToken = page.getNextPageToken();
+        } while (pageToken != null);
+        return ids;
+    }
+
+    /**
+     * Synchronizes a calendar, recording the result in the subscription.
+     */
+    private FeedSyncDTO syncCalendar(Calendar service, String calendarId, FeedSubscription subscription) {
+        var id = subscription.id();
+        if (!syncing.add(id)) return new FeedSyncDTO(false, 0, 0, 0, 0, 0, "Already being synchronized");
+        try {
+            var start = System.nanoTime();
+            FeedSyncDTO result;
+            try {
+                result = readCalendar(service, calendarId, id, subscription.syncToken());
+            } catch (HttpResponseException e) {
+                if (e.getStatusCode() != GONE || subscription.syncToken() == null) throw e;
+                logger.info("Sync token of Google calendar {} expired, reading it entirely", id);
+                result = readCalendar(service, calendarId, id, null);
+            }
+            var duration = Duration.ofNanos(System.nanoTime() - start);
+            logger.info("Synchronized Google calendar {} in {} ms: {}", id, duration.toMillis(), result);
+            return result;
+        } catch (Exception e) { // the calendar is unreachable or the access was revoked
+            if (e instanceof InterruptedException) Thread.currentThread().interrupt();
+            logger.warn("Failed to synchronize Google calendar " + id, e);
+            var error = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+            // the changes read are written again by the next synchronization, with the same sync token
+            repository.markTokenSynced(id, LocalDateTime.now(), subscription.syncToken(), error);
+            return new FeedSyncDTO(false, 0, 0, 0, 0, 0, error);
+        } finally {
+            syncing.remove(id);
+        }
+    }
+
+    /**
+     * Reads the events of a calendar changed since a sync token, or all of them if none.
+     */
+    private FeedSyncDTO readCalendar(Calendar service, String calendarId, UUID id, String syncToken)
+        throws IOException, InterruptedException {
+        var changes = new FeedChanges(repository, id);
+        String pageToken = null;
+        Events page;
+        do {
+            if (Thread.currentThread().isInterrupted()) throw new InterruptedException();
+            var request = service.events()
+                .list(calendarId)
+                .setMaxResults(PAGE_SIZE)
+                .setPageToken(pageToken);
+            if (syncToken != null) request.setSyncToken(syncToken);
+            page = request.execute();
+            if (page.getItems() != null) {
+                for (var event : page.getItems()) {
+                    if ("cancelled".equals(event.getStatus())) {
+                        changes.remove(event.getId());
+                        continue;
+                    }
+                    FeedEvent feedEvent;
+                    try {
+                        feedEvent = GoogleCalendars.toFeedEvent(event);
+                    } catch (RuntimeException e) { // no start date
+                        changes.skip();
+                        continue;
+                    }
+                    changes.put(feedEvent);
+                }
+            }
+            pageToken = page.getNextPageToken();
+        } while (pageToken != null);
+        if (syncToken == null) changes.removeUnseen(); // a full read lists all the events
+        var result = changes.finish();
+        repository.markTokenSynced(id, LocalDateTime.now(), page.getNextSyncToken(), null);
+        return result;
+    }
+}
@@ -9,6 +9,7 @@ import javax.persistence.FetchType;
 import javax.persistence.GeneratedValue;
 import javax.persistence.Id;
 import javax.persistence.IdClass;
+import javax.persistence.Index;
 import javax.persistence.ManyToOne;
 import javax.persistence.Table;
 import javax.validation.constraints.NotNull;
@@ -23,7 +24,7 @@ import static java.util.Objects.requireNonNull;
  * Represents the {@code Login} table in the database.
  */
 @Entity
-@Table(name = "login")
+@Table(name = "login", indexes = @Index(name = "login_token_idx", columnList = "token", unique = true))
 @IdClass(LoginId.class)
 public class Login implements Serializable {
 
@@ -47,6 +48,19 @@ public class Login implements Serializable {
         this.lastRefresh = requireNonNull(lastRefresh);
     }
 
+    /**
+     * Creates a view of an existing login, used when its session is cached.
+     *
+     * @param token       the token of the login
+     * @param user        the user (id) of the login
+     * @param lastRefresh the timestamp of the last token refresh
+     */
+    Login(UUID token, User user, LocalDateTime lastRefresh) {
+        this.token = requireNonNull(token);
+        this.user = requireNonNull(user);
+        this.lastRefresh = requireNonNull(lastRefresh);
+    }
+
     @Id
     @GeneratedValue
     private UUID token;
@@ -1,6 +1,7 @@
 package com.kalia.friday.login;
 
 import com.kalia.friday.user.UserCredsDTO;
+import com.kalia.friday.util.HashingExecutor;
 import io.micronaut.http.HttpResponse;
 import io.micronaut.http.MutableHttpResponse;
 import io.micronaut.http.annotation.Body;
@@ -12,6 +13,7 @@ import jakarta.inject.Inject;
 
 import javax.validation.Valid;
 import java.net.URI;
+import java.util.concurrent.CompletableFuture;
 
 import static com.kalia.friday.util.RepositoryResponse.Status.OK;
 
@@ -26,6 +28,9 @@ public class LoginController {
     @Inject
     private LoginRepository repository;
 
+    @Inject
+    private HashingExecutor hashingExecutor;
+
     /**
      * Creates a controller by injection with Micronaut.
      *
@@ -45,18 +50,20 @@ public class LoginController {
      * @return {
      * "userId": "",
      * "token": ""
-     * }
+     * } | SERVICE_UNAVAILABLE if too many passwords are being hashed
      */
     @Post("/login")
-    public HttpResponse<LoginSessionDTO> login(@Body @Valid UserCredsDTO userCredsDTO) {
-        var loginResponse = repository.login(userCredsDTO.username(), userCredsDTO.password());
-        MutableHttpResponse<LoginSessionDTO> httpResponse = loginResponse.status() == OK
-            ? HttpResponse.created(new LoginSessionDTO(
-            loginResponse.get().user().id(),
-            loginResponse.get().token()
-        ))
-            : HttpResponse.unauthorized();
-        return httpResponse.headers(h -> h.location(URI.create(DEFAULT_ROUTE + "login/" + userCredsDTO.username())));
+    public CompletableFuture<HttpResponse<LoginSessionDTO>> login(@Body @Valid UserCredsDTO userCredsDTO) {
+        return hashingExecutor.submit(() -> {
+            var loginResponse = repository.login(userCredsDTO.username(), userCredsDTO.password());
+            MutableHttpResponse<LoginSessionDTO> httpResponse = loginResponse.status() == OK
+                ? HttpResponse.created(new LoginSessionDTO(
+                loginResponse.get().user().id(),
+                loginResponse.get().token()
+            ))
+                : HttpResponse.unauthorized();
+            return httpResponse.headers(h -> h.location(URI.create(DEFAULT_ROUTE + "login/" + userCredsDTO.username())));
+        });
     }
 
     /**
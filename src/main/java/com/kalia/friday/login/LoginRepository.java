@@ -5,6 +5,8 @@ import io.micronaut.transaction.annotation.ReadOnly;
 
 import javax.transaction.Transactional;
 import javax.validation.constraints.NotNull;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 
@@ -27,12 +29,13 @@ public interface LoginRepository {
 
     /**
      * Checks the identity of a user by its id and token, and refreshes the token.
+     * <p>The refresh is written behind by the {@link SessionRefresher}: the check itself only reads.</p>
      *
      * @param userId the id of the user
      * @param token  the token to check
      * @return OK if the identity is valid | UNAUTHORIZED if the identity is invalid
      */
-    @Transactional
+    @ReadOnly
     RepositoryResponse<Login> checkIdentity(@NotNull UUID userId, @NotNull UUID token);
 
     /**
@@ -64,10 +67,22 @@ public interface LoginRepository {
     RepositoryResponse<Integer> logoutAll(@NotNull UUID userId);
 
     /**
-     * Purges all the logins that are too old.
+     * Sets the last refresh of several tokens at once.
+     *
+     * @param tokens      the tokens to refresh
+     * @param lastRefresh the timestamp of the refresh
+     * @return the number of refreshed logins
+     */
+    @Transactional
+    int refreshTokens(@NotNull Collection<UUID> tokens, @NotNull LocalDateTime lastRefresh);
+
+    /**
+     * Purges a batch of the logins that were last refreshed before a limit.
      *
-     * @param lifetime the limit in days at which a login can be kept alive
+     * @param limit     the timestamp before which a login is expired
+     * @param batchSize the maximum number of logins to delete
+     * @return the number of deleted logins
      */
     @Transactional
-    void purgeExpiredTokens(long lifetime);
+    int purgeExpiredTokens(@NotNull LocalDateTime limit, int batchSize);
 }
@@ -1,12 +1,14 @@
 package com.kalia.friday.login;
 
+import com.kalia.friday.user.User;
 import com.kalia.friday.user.UserRepository;
 import com.kalia.friday.util.RepositoryResponse;
-import com.kalia.friday.util.SHA512Hasher;
+import com.kalia.friday.util.PasswordHasher;
 import io.micronaut.transaction.annotation.ReadOnly;
 import jakarta.inject.Inject;
 import jakarta.inject.Singleton;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 import javax.persistence.EntityManager;
@@ -29,7 +31,13 @@ public class LoginRepositoryImpl implements LoginRepository {
     private UserRepository userRepository;
 
     @Inject
-    private SHA512Hasher hasher;
+    private PasswordHasher hasher;
+
+    @Inject
+    private SessionCache sessionCache;
+
+    @Inject
+    private SessionRefresher refresher;
 
     @Override
     @ReadOnly
@@ -42,21 +50,35 @@ public class LoginRepositoryImpl implements LoginRepository {
     }
 
     @Override
-    @Transactional
+    @ReadOnly
     public RepositoryResponse<Login> checkIdentity(@NotNull UUID userId, @NotNull UUID token) {
         requireNonNull(userId);
         requireNonNull(token);
-        var loginResponse = findLoginByToken(token);
-        if (loginResponse.status() != OK ||
-            !loginResponse.get().user().id().equals(userId)
-        ) {
-            return RepositoryResponse.unauthorized();
+        var now = LocalDateTime.now();
+        var generation = sessionCache.generation(); // before reading, so that a concurrent logout is not cached back
+        var cached = sessionCache.get(token, now);
+        User user;
+        LocalDateTime lastRefresh;
+        if (cached.isPresent()) {
+            if (!cached.get().userId().equals(userId)) return RepositoryResponse.unauthorized();
+            user = manager.getReference(User.class, userId);
+            lastRefresh = cached.get().persistedRefresh();
+        } else {
+            var loginResponse = findLoginByToken(token);
+            if (loginResponse.status() != OK || !loginResponse.get().user().id().equals(userId)) {
+                return RepositoryResponse.unauthorized();
+            }
+            var login = loginResponse.get();
+            manager.detach(login);
+            user = login.user();
+            lastRefresh = login.lastRefresh();
         }
-        var login = loginResponse.get();
-        login.setLastRefresh(LocalDateTime.now());
-        manager.flush(); // flush before detach
-        manager.detach(login);
-        return loginResponse;
+        if (refresher.isStale(lastRefresh, now)) { // written by the next flush of the session manager
+            refresher.touch(token, now);
+            lastRefresh = now;
+        }
+        sessionCache.put(token, new SessionCache.Session(userId, now, lastRefresh), generation);
+        return RepositoryResponse.ok(new Login(token, user, now));
     }
 
     @Override
@@ -65,14 +87,15 @@ public class LoginRepositoryImpl implements LoginRepository {
         requireNonNull(username);
         requireNonNull(password);
         var userResponse = userRepository.findByUsername(username);
-        if (userResponse.status() != OK ||
-            !hasher.hash(password).equals(userResponse.get().password())
-        ) {
+        if (userResponse.status() != OK || !hasher.verify(password, userResponse.get().password())) {
             return RepositoryResponse.unauthorized();
         }
-        var user = userResponse.get();
+        var user = manager.merge(userResponse.get());
+        if (hasher.needsRehash(user.password())) { // migrates legacy and cheaper hashes
+            user.setPassword(hasher.hash(password));
+        }
         var login = new Login(user, LocalDateTime.now());
-        manager.merge(user).logins().add(login);
+        user.logins().add(login);
         manager.flush(); // flush before detach
         manager.detach(login);// persists a login in the db
         return RepositoryResponse.ok(login);
@@ -82,6 +105,8 @@ public class LoginRepositoryImpl implements LoginRepository {
     @Transactional
     public RepositoryResponse<Login> logout(@NotNull UUID token) {
         requireNonNull(token);
+        sessionCache.invalidate(token);
+        refresher.forget(token);
         var login = findLoginByToken(token);
         if (login.status() == OK) manager.remove(login.get());
         return login;
@@ -93,6 +118,7 @@ public class LoginRepositoryImpl implements LoginRepository {
         requireNonNull(userId);
         var user = userRepository.findById(userId);
         if (user.status() != OK) return RepositoryResponse.unauthorized();
+        sessionCache.invalidateUser(userId);
         var n = manager.createQuery("DELETE FROM Login l WHERE l.user = :user")
             .setParameter("user", user.get())
             .executeUpdate();
@@ -101,14 +127,36 @@ public class LoginRepositoryImpl implements LoginRepository {
 
     @Override
     @Transactional
-    public void purgeExpiredTokens(long lifetime) {
-        var logins = allLogins().get();
-        var limit = LocalDateTime.now().minusDays(lifetime);
-        for (var login : logins) {
-            if (login.lastRefresh().isBefore(limit)) {
-                logout(login.token());
-            }
-        }
+    public int refreshTokens(@NotNull Collection<UUID> tokens, @NotNull LocalDateTime lastRefresh) {
+        requireNonNull(tokens);
+        requireNonNull(lastRefresh);
+        if (tokens.isEmpty()) return 0;
+        return manager.createQuery("UPDATE Login l SET l.lastRefresh = :lastRefresh WHERE l.token IN :tokens")
+            .setParameter("lastRefresh", lastRefresh)
+            .setParameter("tokens", tokens)
+            .executeUpdate();
+    }
+
+    @Override
+    @Transactional
+    public int purgeExpiredTokens(@NotNull LocalDateTime limit, int batchSize) {
+        requireNonNull(limit);
+        if (batchSize <= 0) throw new IllegalArgumentException("batchSize must be positive");
+        var tokens = manager
+            .createQuery("SELECT l.token FROM Login l WHERE l.lastRefresh < :limit", UUID.class)
+            .setParameter("limit", limit)
+            .setMaxResults(batchSize)
+            .getResultList();
+        if (tokens.isEmpty()) return 0;
+        tokens.forEach(token -> {
+            sessionCache.invalidate(token);
+            refresher.forget(token);
+        });
+        return manager // checks the limit again in case a token was refreshed since the select
+            .createQuery("DELETE FROM Login l WHERE l.token IN :tokens AND l.lastRefresh < :limit")
+            .setParameter("tokens", tokens)
+            .setParameter("limit", limit)
+            .executeUpdate();
     }
 
     private RepositoryResponse<Login> findLoginByToken(UUID token) {
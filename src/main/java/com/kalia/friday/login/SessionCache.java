@@ -0,0 +1,144 @@
+package com.kalia.friday.login;
+
+import io.micronaut.transaction.support.TransactionSynchronization;
+import io.micronaut.transaction.support.TransactionSynchronizationManager;
+import jakarta.inject.Singleton;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Cache of the valid session tokens, answering the identity checks without querying the {@code login} table.
+ * <p>
+ * An entry expires with the token lifetime of the {@link SessionManagerService}. The cache is local to the server, so
+ * the logins must only be deleted through the {@link LoginRepository}. A session is removed at once, and again once the
+ * transaction deleting its login completes. Each removal also moves the cache to a new generation: a check snapshots
+ * the generation before reading the login and only caches the session if no removal happened since, so that a login
+ * read before its deletion committed is never cached back.
+ */
+@Singleton
+public class SessionCache {
+
+    /**
+     * A cached session.
+     *
+     * @param userId           the id of the user owning the token
+     * @param lastRefresh      the timestamp of the last use of the token
+     * @param persistedRefresh the timestamp of the last refresh written to the database
+     */
+    public record Session(UUID userId, LocalDateTime lastRefresh, LocalDateTime persistedRefresh) {
+    }
+
+    private final ConcurrentHashMap<UUID, Session> sessions = new ConcurrentHashMap<>();
+    private final AtomicLong generation = new AtomicLong();
+
+    /**
+     * Gets the session of a token if it is cached and not expired.
+     *
+     * @param token the token of the session
+     * @param now   the current time
+     * @return the session, empty if unknown or expired
+     */
+    public Optional<Session> get(UUID token, LocalDateTime now) {
+        requireNonNull(token);
+        requireNonNull(now);
+        var session = sessions.get(token);
+        if (session == null) return Optional.empty();
+        if (session.lastRefresh().plusDays(SessionManagerService.TOKEN_LIFETIME_IN_DAYS).isBefore(now)) {
+            sessions.remove(token, session);
+            return Optional.empty();
+        }
+        return Optional.of(session);
+    }
+
+    /**
+     * Caches a session.
+     *
+     * @param token   the token of the session
+     * @param session the session
+     */
+    public void put(UUID token, Session session) {
+        requireNonNull(token);
+        requireNonNull(session);
+        sessions.put(token, session);
+    }
+
+    /**
+     * Caches a session read at a given generation, unless a session was removed since.
+     *
+     * @param token      the token of the session
+     * @param session    the session
+     * @param generation the generation of the cache before the session was read
+     * @see #generation()
+     */
+    public void put(UUID token, Session session, long generation) {
+        requireNonNull(token);
+        requireNonNull(session);
+        if (this.generation.get() != generation) return;
+        sessions.put(token, session);
+        if (this.generation.get() != generation) { // removed concurrently, possibly before the put
+            sessions.remove(token, session);
+        }
+    }
+
+    /**
+     * Gets the current generation of the cache, changed by each removal.
+     *
+     * @return the current generation
+     */
+    public long generation() {
+        return generation.get();
+    }
+
+    /**
+     * Removes the session of a token.
+     *
+     * @param token the token of the session
+     */
+    public void invalidate(UUID token) {
+        requireNonNull(token);
+        removeNowAndOnCompletion(() -> sessions.remove(token));
+    }
+
+    /**
+     * Removes all the sessions of a user.
+     *
+     * @param userId the id of the user
+     */
+    public void invalidateUser(UUID userId) {
+        requireNonNull(userId);
+        removeNowAndOnCompletion(() -> sessions.values().removeIf(s -> s.userId().equals(userId)));
+    }
+
+    /**
+     * Gets the number of cached sessions.
+     *
+     * @return the number of cached sessions
+     */
+    public int size() {
+        return sessions.size();
+    }
+
+    /**
+     * Runs an invalidation now, and again once the current transaction completes, if any, moving to a new generation
+     * before each run.
+     */
+    private void removeNowAndOnCompletion(Runnable invalidation) {
+        generation.incrementAndGet();
+        invalidation.run();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(Status status) {
+                    generation.incrementAndGet();
+                    invalidation.run();
+                }
+            });
+        }
+    }
+}
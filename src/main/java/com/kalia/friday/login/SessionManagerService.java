@@ -1,41 +1,121 @@
 package com.kalia.friday.login;
 
+import io.micronaut.context.annotation.Value;
 import jakarta.inject.Inject;
 import jakarta.inject.Singleton;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.LocalDateTime;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
 /**
- * Singleton manager to check tokens periodically.
+ * Singleton manager to check tokens periodically and write their refreshes.
  */
 @Singleton
 public class SessionManagerService {
 
     private static final long PURGE_DELAY = 10_800_000; // 3h
-    private static final long TOKEN_LIFETIME_IN_DAYS = 7;
+    static final long TOKEN_LIFETIME_IN_DAYS = 7;
     private final Logger logger = LoggerFactory.getLogger(SessionManagerService.class);
 
     @Inject
     private LoginRepository repository;
 
+    @Inject
+    private SessionRefresher refresher;
+
+    @Value("${friday.sessions.flush-interval:5s}")
+    private Duration flushInterval;
+
+    @Value("${friday.sessions.purge-batch-size:500}")
+    private int purgeBatchSize;
+
+    @Value("${friday.sessions.purge-pause:100ms}")
+    private Duration purgePause;
+
+    private ScheduledExecutorService executor;
+
     /**
-     * Starts the service and periodically checks for expired tokens.
+     * Starts the service, periodically checks for expired tokens and writes the token refreshes.
      */
-    public void start() {
-        Executors
-            .newSingleThreadScheduledExecutor((r) -> new Thread(r, "Session Manager"))
-            .scheduleAtFixedRate(
-                this::purgeExpiredTokens,
-                0, PURGE_DELAY, TimeUnit.MILLISECONDS
-            );
+    public synchronized void start() {
+        if (executor != null) return;
+        executor = Executors.newSingleThreadScheduledExecutor((r) -> new Thread(r, "Session Manager"));
+        executor.scheduleAtFixedRate(
+            this::purgeExpiredTokens,
+            0, PURGE_DELAY, TimeUnit.MILLISECONDS
+        );
+        executor.scheduleWithFixedDelay(
+            this::flushRefreshes,
+            flushInterval.toMillis(), flushInterval.toMillis(), TimeUnit.MILLISECONDS
+        );
         logger.info("Service started");
     }
 
+    /**
+     * Stops the service, after writing the pending token refreshes.
+     */
+    @PreDestroy
+    public synchronized void stop() {
+        if (executor != null) {
+            executor.shutdown();
+            executor = null;
+        }
+        flushRefreshes();
+    }
+
+    /**
+     * Writes the pending token refreshes to the database.
+     */
+    public void flushRefreshes() {
+        try {
+            refresher.drain().forEach((time, tokens) -> repository.refreshTokens(tokens, time));
+        } catch (RuntimeException e) { // keeps the scheduled task alive
+            logger.error("Failed to write token refreshes", e);
+        }
+    }
+
     private void purgeExpiredTokens() {
+        flushRefreshes(); // recently used tokens must not be purged
+        try {
+            purgeExpiredTokens(LocalDateTime.now().minusDays(TOKEN_LIFETIME_IN_DAYS));
+        } catch (RuntimeException e) { // keeps the scheduled task alive
+            logger.error("Failed to purge outdated tokens", e);
+        }
+    }
+
+    /**
+     * Deletes the logins last refreshed before a limit, one batch per transaction with a pause between the batches.
+     *
+     * @param limit the timestamp before which a login is expired
+     * @return the number of deleted logins
+     */
+    int purgeExpiredTokens(LocalDateTime limit) {
         logger.info("Purging outdated tokens");
-        repository.purgeExpiredTokens(TOKEN_LIFETIME_IN_DAYS);
+        var start = System.nanoTime();
+        var total = 0;
+        int deleted;
+        do {
+            deleted = repository.purgeExpiredTokens(limit, purgeBatchSize);
+            total += deleted;
+        } while (deleted == purgeBatchSize && pause());
+        var duration = Duration.ofNanos(System.nanoTime() - start);
+        logger.info("Purged {} outdated tokens in {} ms", total, duration.toMillis());
+        return total;
+    }
+
+    private boolean pause() {
+        try {
+            Thread.sleep(purgePause.toMillis());
+            return true;
+        } catch (InterruptedException e) { // the service is stopping
+            Thread.currentThread().interrupt();
+            return false;
+        }
     }
 }
@@ -0,0 +1,105 @@
+package com.kalia.friday.login;
+
+import io.micronaut.context.annotation.Value;
+import jakarta.inject.Singleton;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Write-behind buffer of the token refreshes.
+ * <p>
+ * The identity checks only record the latest use of each token; the {@link SessionManagerService} periodically writes
+ * them to the database, in one {@code UPDATE} per refresh time (rounded to the coarseness).
+ */
+@Singleton
+public class SessionRefresher {
+    private static final LocalDateTime EPOCH = LocalDateTime.of(1970, 1, 1, 0, 0);
+    private final ConcurrentHashMap<UUID, LocalDateTime> touches = new ConcurrentHashMap<>();
+    private final Duration coarseness;
+
+    /**
+     * Creates a refresher.
+     *
+     * @param coarseness the minimum delay between two refreshes of a token in the database
+     */
+    public SessionRefresher(@Value("${friday.sessions.refresh-coarseness:1m}") Duration coarseness) {
+        if (coarseness.isNegative()) {
+            throw new IllegalArgumentException("coarseness must not be negative.");
+        }
+        this.coarseness = coarseness;
+    }
+
+    /**
+     * Checks whether a token refreshed at a given time must be refreshed again.
+     *
+     * @param lastRefresh the last refresh written (or to be written) for the token
+     * @param now         the current time
+     * @return true if the last refresh is older than the coarseness
+     */
+    public boolean isStale(LocalDateTime lastRefresh, LocalDateTime now) {
+        return lastRefresh.plus(coarseness).isBefore(now);
+    }
+
+    /**
+     * Records a use of a token, to be written with the next flush.
+     *
+     * @param token the token used
+     * @param time  the time of the use
+     */
+    public void touch(UUID token, LocalDateTime time) {
+        requireNonNull(token);
+        requireNonNull(time);
+        touches.merge(token, time, (a, b) -> a.isAfter(b) ? a : b);
+    }
+
+    /**
+     * Forgets the pending refresh of a token.
+     *
+     * @param token the token
+     */
+    public void forget(UUID token) {
+        requireNonNull(token);
+        touches.remove(token);
+    }
+
+    /**
+     * Removes the pending refreshes and groups their tokens by refresh time, rounded down to the coarseness.
+     *
+     * @return the tokens to refresh, by refresh time
+     */
+    public Map<LocalDateTime, List<UUID>> drain() {
+        var buckets = new TreeMap<LocalDateTime, List<UUID>>();
+        for (var token : touches.keySet()) {
+            var time = touches.remove(token);
+            if (time != null) {
+                buckets.computeIfAbsent(roundDown(time), t -> new ArrayList<>()).add(token);
+            }
+        }
+        return buckets;
+    }
+
+    /**
+     * Gets the number of pending refreshes.
+     *
+     * @return the number of tokens waiting to be refreshed
+     */
+    public int pending() {
+        return touches.size();
+    }
+
+    private LocalDateTime roundDown(LocalDateTime time) {
+        var step = coarseness.toMillis();
+        if (step == 0) return time;
+        var epochMillis = Duration.between(EPOCH, time).toMillis();
+        return time.minus(Duration.ofMillis(Math.floorMod(epochMillis, step)));
+    }
+}
@@ -0,0 +1,67 @@
+package com.kalia.friday.stats;
+
+import io.micronaut.core.annotation.Introspected;
+import org.hibernate.stat.Statistics;
+
+import javax.validation.constraints.NotNull;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Statistics of the second-level and query caches of Hibernate sent from the server to the client.
+ *
+ * @param entities the lookups of the entities in the second-level cache
+ * @param queries  the lookups of the query results in the query cache
+ * @param regions  the lookups of each region, by region name
+ */
+@Introspected
+public record CacheStatsDTO(Region entities, Region queries, Map<String, Region> regions) {
+
+    /**
+     * Lookups of a cache or region.
+     *
+     * @param hits    the number of lookups that found a value
+     * @param misses  the number of lookups that found nothing
+     * @param puts    the number of values stored
+     * @param hitRate the ratio of lookups that found a value, between 0 and 1
+     */
+    @Introspected
+    public record Region(long hits, long misses, long puts, double hitRate) {
+
+        private static Region of(long hits, long misses, long puts) {
+            var total = hits + misses;
+            return new Region(hits, misses, puts, total == 0 ? 0 : (double) hits / total);
+        }
+    }
+
+    /**
+     * Reads the statistics of the caches.
+     *
+     * @param statistics the statistics of the session factory
+     * @return a snapshot of the statistics, empty if Hibernate does not collect them
+     */
+    public static CacheStatsDTO of(@NotNull Statistics statistics) {
+        requireNonNull(statistics);
+        var regions = new TreeMap<String, Region>();
+        for (var name : statistics.getSecondLevelCacheRegionNames()) {
+            var region = statistics.getCacheRegionStatistics(name);
+            if (region == null) continue;
+            regions.put(name, Region.of(region.getHitCount(), region.getMissCount(), region.getPutCount()));
+        }
+        return new CacheStatsDTO(
+            Region.of(
+                statistics.getSecondLevelCacheHitCount(),
+                statistics.getSecondLevelCacheMissCount(),
+                statistics.getSecondLevelCachePutCount()
+            ),
+            Region.of(
+                statistics.getQueryCacheHitCount(),
+                statistics.getQueryCacheMissCount(),
+                statistics.getQueryCachePutCount()
+            ),
+            regions
+        );
+    }
+}
@@ -0,0 +1,133 @@
+package com.kalia.friday.stats;
+
+import com.kalia.friday.event.OccurrenceCache;
+import com.kalia.friday.event.RecurrenceRuleCache;
+import com.kalia.friday.login.LoginRepository;
+import com.kalia.friday.login.LoginSessionDTO;
+import com.kalia.friday.util.BoundedCache;
+import com.kalia.friday.util.HashingExecutor;
+import com.kalia.friday.util.RepositoryResponse;
+import io.micronaut.http.HttpResponse;
+import io.micronaut.http.annotation.Body;
+import io.micronaut.http.annotation.Controller;
+import io.micronaut.http.annotation.Post;
+import jakarta.inject.Inject;
+import org.hibernate.SessionFactory;
+
+import javax.validation.Valid;
+import java.util.function.Supplier;
+
+/**
+ * API endpoint exposing runtime statistics of the server to the logged-in users.
+ */
+@Controller("/api/stats")
+public class StatsController {
+
+    @Inject
+    private LoginRepository loginRepository;
+
+    @Inject
+    private HashingExecutor hashingExecutor;
+
+    @Inject
+    private SessionFactory sessionFactory;
+
+    @Inject
+    private OccurrenceCache occurrenceCache;
+
+    /**
+     * Gets the statistics of the executor of the requests hashing passwords.
+     *
+     * @param loginSessionDTO {
+     *                        "userId": "",
+     *                        "token": "",
+     *                        }
+     * @return {
+     * "threads": 0,
+     * "active": 0,
+     * "queued": 0,
+     * "queueCapacity": 0,
+     * "completed": 0,
+     * "rejected": 0,
+     * "averageWaitMillis": 0.0,
+     * "averageRequestMillis": 0.0,
+     * "maxRequestMillis": 0
+     * } | UNAUTHORIZED if invalid credentials
+     */
+    @Post("/hashing")
+    public HttpResponse<HashingExecutor.Stats> hashing(@Body @Valid LoginSessionDTO loginSessionDTO) {
+        return ifAuthenticated(loginSessionDTO, hashingExecutor::stats);
+    }
+
+    /**
+     * Gets the statistics of the second-level and query caches of the database, only collected if
+     * {@code hibernate.generate_statistics} is enabled.
+     *
+     * @param loginSessionDTO {
+     *                        "userId": "",
+     *                        "token": "",
+     *                        }
+     * @return {
+     * "entities": {"hits": 0, "misses": 0, "puts": 0, "hitRate": 0.0},
+     * "queries": {"hits": 0, "misses": 0, "puts": 0, "hitRate": 0.0},
+     * "regions": {
+     * "com.kalia.friday.event.Event": {"hits": 0, "misses": 0, "puts": 0, "hitRate": 0.0},
+     * ...
+     * }
+     * } | UNAUTHORIZED if invalid credentials
+     */
+    @Post("/cache")
+    public HttpResponse<CacheStatsDTO> cache(@Body @Valid LoginSessionDTO loginSessionDTO) {
+        return ifAuthenticated(loginSessionDTO, () -> CacheStatsDTO.of(sessionFactory.getStatistics()));
+    }
+
+    /**
+     * Gets the statistics of the cache of the occurrences of the events, weighed by their estimated size in bytes.
+     *
+     * @param loginSessionDTO {
+     *                        "userId": "",
+     *                        "token": "",
+     *                        }
+     * @return {
+     * "hits": 0,
+     * "misses": 0,
+     * "evictions": 0,
+     * "size": 0,
+     * "weight": 0,
+     * "hitRate": 0.0
+     * } | UNAUTHORIZED if invalid credentials
+     */
+    @Post("/occurrences")
+    public HttpResponse<BoundedCache.Stats> occurrences(@Body @Valid LoginSessionDTO loginSessionDTO) {
+        return ifAuthenticated(loginSessionDTO, occurrenceCache::stats);
+    }
+
+    /**
+     * Gets the statistics of the cache of the compiled recurrence rules.
+     *
+     * @param loginSessionDTO {
+     *                        "userId": "",
+     *                        "token": "",
+     *                        }
+     * @return {
+     * "hits": 0,
+     * "misses": 0,
+     * "evictions": 0,
+     * "size": 0,
+     * "weight": 0,
+     * "hitRate": 0.0
+     * } | UNAUTHORIZED if invalid credentials
+     */
+    @Post("/rules")
+    public HttpResponse<BoundedCache.Stats> rules(@Body @Valid LoginSessionDTO loginSessionDTO) {
+        return ifAuthenticated(loginSessionDTO, RecurrenceRuleCache::stats);
+    }
+
+    private <T> HttpResponse<T> ifAuthenticated(LoginSessionDTO loginSessionDTO, Supplier<T> stats) {
+        var response = loginRepository.checkIdentity(loginSessionDTO.userId(), loginSessionDTO.token());
+        if (response.status() != RepositoryResponse.Status.OK) {
+            return HttpResponse.unauthorized();
+        }
+        return HttpResponse.ok(stats.get());
+    }
+}
@@ -2,7 +2,10 @@ package com.kalia.friday.user;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.kalia.friday.event.Event;
+import com.kalia.friday.feed.FeedSubscription;
 import com.kalia.friday.login.Login;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import javax.persistence.*;
 import javax.validation.constraints.NotBlank;
@@ -18,6 +21,8 @@ import static com.kalia.friday.util.StringUtils.requireNotNullOrBlank;
  * Represents the {@code User} table in the database.
  */
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 @Table(name = "user")
 public class User implements Serializable {
 
@@ -64,6 +69,10 @@ public class User implements Serializable {
     @OneToMany(mappedBy = "user", cascade = CascadeType.ALL)
     private final Set<Login> logins = new HashSet<>();
 
+    @JsonIgnore
+    @OneToMany(mappedBy = "user", cascade = CascadeType.ALL)
+    private final Set<FeedSubscription> subscriptions = new HashSet<>(); // removed after the events referencing them
+
     /**
      * Gets the id of the user row.
      *
@@ -109,6 +118,15 @@ public class User implements Serializable {
         return logins;
     }
 
+    /**
+     * Gets the feed subscriptions of the user row.
+     *
+     * @return the feed subscriptions of the user
+     */
+    public Set<FeedSubscription> subscriptions() {
+        return subscriptions;
+    }
+
     /**
      * Sets the password of the user row.
      *
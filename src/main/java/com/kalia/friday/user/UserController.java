@@ -1,5 +1,6 @@
 package com.kalia.friday.user;
 
+import com.kalia.friday.util.HashingExecutor;
 import com.kalia.friday.util.RepositoryResponse;
 import io.micronaut.http.HttpResponse;
 import io.micronaut.http.HttpStatus;
@@ -11,6 +12,7 @@ import jakarta.inject.Inject;
 import javax.validation.Valid;
 import java.net.URI;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * API endpoint for communicating with the user side of the database.
@@ -23,6 +25,9 @@ public class UserController {
     @Inject
     private UserRepository repository;
 
+    @Inject
+    private HashingExecutor hashingExecutor;
+
     /**
      * Creates and saves a user, provided a correct body.
      *
@@ -33,20 +38,22 @@ public class UserController {
      * @return {
      * "id": "",
      * "username": ""
-     * }
+     * } | SERVICE_UNAVAILABLE if too many passwords are being hashed
      */
     @Post("/save")
-    public HttpResponse<UserResponseDTO> save(@Body @Valid UserCredsDTO userCredsDTO) {
-        var saveResponse = repository.save(userCredsDTO.username(), userCredsDTO.password());
-        if (saveResponse.status() != RepositoryResponse.Status.OK) {
+    public CompletableFuture<HttpResponse<UserResponseDTO>> save(@Body @Valid UserCredsDTO userCredsDTO) {
+        return hashingExecutor.submit(() -> {
+            var saveResponse = repository.save(userCredsDTO.username(), userCredsDTO.password());
+            if (saveResponse.status() != RepositoryResponse.Status.OK) {
+                return HttpResponse
+                    .<UserResponseDTO>status(HttpStatus.CONFLICT)
+                    .headers(h -> h.location(URI.create(DEFAULT_ROUTE + "save")));
+            }
+            var user = saveResponse.get();
             return HttpResponse
-                .<UserResponseDTO>status(HttpStatus.CONFLICT)
-                .headers(h -> h.location(URI.create(DEFAULT_ROUTE + "save")));
-        }
-        var user = saveResponse.get();
-        return HttpResponse
-            .created(new UserResponseDTO(user.id(), user.username()))
-            .headers(h -> h.location(URI.create(DEFAULT_ROUTE + "save/" + user.id())));
+                .created(new UserResponseDTO(user.id(), user.username()))
+                .headers(h -> h.location(URI.create(DEFAULT_ROUTE + "save/" + user.id())));
+        });
     }
 
     /**
@@ -58,13 +65,16 @@ public class UserController {
      *                      "password": ""
      *                      }
      * @return OK if deleted | NOT_FOUND if the id is unknown | BAD_REQUEST if the password is incorrect
+     * | SERVICE_UNAVAILABLE if too many passwords are being hashed
      */
     @Delete("/delete/{id}")
-    public HttpResponse<Void> delete(UUID id, @Body @Valid UserDeleteDTO userDeleteDTO) {
-        var deleteUserResponse = repository.deleteById(id, userDeleteDTO.password());
-        return RepositoryResponse
-            .toEmptyHttpResponse(deleteUserResponse.status())
-            .headers(h -> h.location(URI.create(DEFAULT_ROUTE + "delete/" + id)));
+    public CompletableFuture<HttpResponse<Void>> delete(UUID id, @Body @Valid UserDeleteDTO userDeleteDTO) {
+        return hashingExecutor.submit(() -> {
+            var deleteUserResponse = repository.deleteById(id, userDeleteDTO.password());
+            return RepositoryResponse
+                .toEmptyHttpResponse(deleteUserResponse.status())
+                .headers(h -> h.location(URI.create(DEFAULT_ROUTE + "delete/" + id)));
+        });
     }
 
     /**
@@ -77,12 +87,15 @@ public class UserController {
      *               "newPassword": ""
      *               }
      * @return OK if updated | NOT_FOUND if the id is unknown | BAD_REQUEST if the old password is incorrect
+     * | SERVICE_UNAVAILABLE if too many passwords are being hashed
      */
     @Put("/update/{id}")
-    public HttpResponse<Void> updatePassword(UUID id, @Body @Valid UserPasswordUpdateDTO upuDTO) {
-        var updatePwdResponse = repository.updatePassword(id, upuDTO.oldPassword(), upuDTO.newPassword());
-        return RepositoryResponse
-            .toEmptyHttpResponse(updatePwdResponse.status())
-            .headers(h -> h.location(URI.create(DEFAULT_ROUTE + "update/" + id)));
+    public CompletableFuture<HttpResponse<Void>> updatePassword(UUID id, @Body @Valid UserPasswordUpdateDTO upuDTO) {
+        return hashingExecutor.submit(() -> {
+            var updatePwdResponse = repository.updatePassword(id, upuDTO.oldPassword(), upuDTO.newPassword());
+            return RepositoryResponse
+                .toEmptyHttpResponse(updatePwdResponse.status())
+                .headers(h -> h.location(URI.create(DEFAULT_ROUTE + "update/" + id)));
+        });
     }
 }
@@ -1,10 +1,13 @@
 package com.kalia.friday.user;
 
+import com.kalia.friday.event.OccurrenceCache;
+import com.kalia.friday.login.SessionCache;
 import com.kalia.friday.util.RepositoryResponse;
-import com.kalia.friday.util.SHA512Hasher;
+import com.kalia.friday.util.PasswordHasher;
 import io.micronaut.transaction.annotation.ReadOnly;
 import jakarta.inject.Inject;
 import jakarta.inject.Singleton;
+import org.hibernate.jpa.QueryHints;
 
 import javax.persistence.EntityManager;
 import javax.transaction.Transactional;
@@ -18,12 +21,22 @@ import static java.util.Objects.requireNonNull;
  */
 @Singleton
 public class UserRepositoryImpl implements UserRepository {
+    /**
+     * Query cache region of the users by name, invalidated by Hibernate on each write to the user table.
+     */
+    static final String BY_USERNAME_REGION = "user.by-username";
 
     @Inject
     private EntityManager manager;
 
     @Inject
-    private SHA512Hasher hasher;
+    private PasswordHasher hasher;
+
+    @Inject
+    private SessionCache sessionCache;
+
+    @Inject
+    private OccurrenceCache occurrenceCache;
 
     @Override
     @ReadOnly
@@ -42,6 +55,8 @@ public class UserRepositoryImpl implements UserRepository {
         var result = manager
             .createQuery("SELECT u FROM User u WHERE u.username = :username", User.class)
             .setParameter("username", username)
+            .setHint(QueryHints.HINT_CACHEABLE, true)
+            .setHint(QueryHints.HINT_CACHE_REGION, BY_USERNAME_REGION)
             .getResultList()
             .stream()
             .findFirst();
@@ -72,6 +87,8 @@ public class UserRepositoryImpl implements UserRepository {
         var getResponse = checkIdentity(id, password);
         if (getResponse.status() == RepositoryResponse.Status.OK) {
             manager.remove(getResponse.get());
+            sessionCache.invalidateUser(id);
+            occurrenceCache.invalidateUser(id);
         }
         return getResponse;
     }
@@ -107,8 +124,7 @@ public class UserRepositoryImpl implements UserRepository {
         if (user.status() == RepositoryResponse.Status.NOT_FOUND) {
             return user;
         }
-        var hashedPwd = hasher.hash(password);
-        return user.get().password().equals(hashedPwd)
+        return hasher.verify(password, user.get().password())
             ? RepositoryResponse.ok(manager.merge(user.get()))
             : RepositoryResponse.unauthorized();
     }
@@ -1,21 +1,35 @@
 package com.kalia.friday.util;
 
 import biweekly.Biweekly;
+import biweekly.ICalDataType;
+import biweekly.ICalVersion;
 import biweekly.ICalendar;
 import biweekly.component.VEvent;
+import biweekly.io.ParseContext;
+import biweekly.io.scribe.property.RecurrenceRuleScribe;
+import biweekly.parameter.ICalParameters;
 import biweekly.property.RecurrenceRule;
 import biweekly.property.ValuedProperty;
 import biweekly.util.ICalDate;
 import biweekly.util.Recurrence;
 import com.kalia.friday.event.EventDTO;
+import com.kalia.friday.feed.FeedEvent;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.UUID;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import static com.kalia.friday.util.StringUtils.notBlankElse;
 import static java.util.Objects.requireNonNull;
@@ -24,20 +38,7 @@ import static java.util.Objects.requireNonNull;
  * Class containing Biweekly utility methods.
  */
 public final class BiweeklyUtils {
-    private static final String START = """
-        BEGIN:VCALENDAR
-        VERSION:2.0
-        PRODID:-//Michael Angstadt//biweekly 0.6.6//EN
-        BEGIN:VEVENT
-        UID:74af3335-3084-43bb-83ae-0b766436d963
-        DTSTAMP:19970324T120000Z
-        RRULE:""";
-
-    private static final String END = """
-
-        END:VEVENT
-        END:VCALENDAR""";
-
+    private static final RecurrenceRuleScribe RULE_SCRIBE = new RecurrenceRuleScribe();
 
     private BiweeklyUtils() {
         throw new AssertionError("Cannot instantiate.");
@@ -53,14 +54,59 @@ public final class BiweeklyUtils {
      */
     public static List<EventDTO> eventDTOListFromString(String data, UUID userId, UUID token) {
         requireNonNull(data);
+        try (var events = eventDTOStream(new StringReader(data), userId, token)) {
+            return events.toList();
+        }
+    }
+
+    /**
+     * Creates a lazy stream of eventDTO from an ics formatted stream, reading one event at a time.
+     * <p>
+     * The stream must be closed to close the reader. Reading it throws {@code IllegalArgumentException} if the content
+     * is malformed, and {@code UncheckedIOException} if the reader fails.
+     *
+     * @param reader ics stream
+     * @param userId user id
+     * @param token  user login token
+     * @return the stream of events
+     */
+    public static Stream<EventDTO> eventDTOStream(Reader reader, UUID userId, UUID token) {
+        requireNonNull(reader);
         requireNonNull(userId);
         requireNonNull(token);
-        return Biweekly.parse(data)
-            .all()
-            .stream()
-            .flatMap(c -> c.getEvents().stream())
-            .map(e -> vEventToEventDTO(e, userId, token))
-            .toList();
+        return vEventStream(reader).map(e -> vEventToEventDTO(e, userId, token));
+    }
+
+    /**
+     * Creates a lazy stream of the events of an ics formatted stream with their identity, reading one event at a time.
+     * <p>
+     * The events have neither user id nor token. The stream must be closed to close the reader, and throws like
+     * {@link #eventDTOStream(Reader, UUID, UUID)}.
+     *
+     * @param reader ics stream
+     * @return the stream of events
+     */
+    public static Stream<FeedEvent> feedEventStream(Reader reader) {
+        requireNonNull(reader);
+        return vEventStream(reader).map(e -> FeedEvent.of(
+            getPropValue(e.getUid()),
+            fromICalDate(getPropValue(e.getRecurrenceId())),
+            getPropValue(e.getSequence()),
+            e.getLastModified() != null ? e.getLastModified().getValue().toInstant() : null,
+            vEventToEventDTO(e, null, null)
+        ));
+    }
+
+    private static Stream<VEvent> vEventStream(Reader reader) {
+        var events = new VEventReader(reader);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(events, Spliterator.ORDERED), false)
+            .onClose(() -> {
+                try {
+                    events.close();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
     }
 
     private static EventDTO vEventToEventDTO(VEvent vEvent, UUID userId, UUID token) {
@@ -92,14 +138,17 @@ public final class BiweeklyUtils {
     }
 
     /**
-     * Asserts that a recurrence rule is valid.
+     * Asserts that a recurrence rule is valid, as checked again by {@link #recurrenceRuleFromString(String)} each time
+     * the stored rule is read.
      *
      * @param recurRulePart the rule to test
      * @throws IllegalArgumentException if rule is invalid
      */
     public static void requireValidRecurRule(String recurRulePart) {
         if (recurRulePart == null) return;
-        getFromString(cleanRecurRule(recurRulePart));
+        if (!RecurRuleValidator.isValid(recurRulePart)) {
+            throw new IllegalArgumentException("Invalid recurrence rule: " + recurRulePart);
+        }
     }
 
     private static String cleanRecurRule(String recurRulePart) {
@@ -121,16 +170,12 @@ public final class BiweeklyUtils {
     }
 
     private static RecurrenceRule getFromString(String recurRulePart) {
-        var cal = Biweekly.parse(START + recurRulePart + END).first();
-        var opt = getRruleAsString(cal);
-        if (opt.isPresent() && opt.get().contains("FREQ=")) {
-            if (("RRULE:" + recurRulePart.trim()).length() != opt.get().trim().length()) {
-                throw new IllegalArgumentException("Invalid recurrence rule: " + recurRulePart);
-            }
-        } else {
+        if (!RecurRuleValidator.isValid(recurRulePart)) {
             throw new IllegalArgumentException("Invalid recurrence rule: " + recurRulePart);
         }
-        return cal.getEvents().get(0).getRecurrenceRule();
+        var context = new ParseContext();
+        context.setVersion(ICalVersion.V2_0);
+        return RULE_SCRIBE.parseText(recurRulePart, ICalDataType.RECUR, new ICalParameters(), context);
     }
 
     private static Optional<String> getRruleAsString(ICalendar cal) {
@@ -0,0 +1,253 @@
+package com.kalia.friday.util;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.micronaut.core.annotation.Creator;
+import io.micronaut.core.annotation.Introspected;
+
+import java.util.LinkedHashMap;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Thread-safe cache holding at most a fixed number of entries, or entries of a fixed total weight, evicting the least
+ * recently used ones first.
+ *
+ * @param <K> the type of the keys
+ * @param <V> the type of the values
+ */
+public final class BoundedCache<K, V> {
+
+    /**
+     * Snapshot of the statistics of a cache.
+     *
+     * @param hits      the number of lookups that found a value
+     * @param misses    the number of lookups that had to load a value
+     * @param evictions the number of entries removed to respect the size limit
+     * @param size      the current number of entries
+     * @param weight    the current total weight of the entries, their number if they are not weighed
+     */
+    @Introspected
+    public record Stats(
+        @JsonProperty("hits") long hits,
+        @JsonProperty("misses") long misses,
+        @JsonProperty("evictions") long evictions,
+        @JsonProperty("size") int size,
+        @JsonProperty("weight") long weight
+    ) {
+
+        @Creator
+        public Stats {
+        }
+
+        /**
+         * Creates the statistics of a cache whose entries are not weighed.
+         *
+         * @param hits      the number of lookups that found a value
+         * @param misses    the number of lookups that had to load a value
+         * @param evictions the number of entries removed to respect the size limit
+         * @param size      the current number of entries
+         */
+        public Stats(long hits, long misses, long evictions, int size) {
+            this(hits, misses, evictions, size, size);
+        }
+
+        /**
+         * Gets the ratio of lookups that found a value.
+         *
+         * @return the hit rate, between 0 and 1
+         */
+        @JsonProperty("hitRate")
+        public double hitRate() {
+            var total = hits + misses;
+            return total == 0 ? 0 : (double) hits / total;
+        }
+    }
+
+    private final LinkedHashMap<K, V> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final long maxWeight;
+    private final ToLongFunction<? super V> weigher;
+    private long weight;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long generation; // changed by each invalidation
+
+    /**
+     * Creates a cache.
+     *
+     * @param maxSize the maximum number of entries of the cache
+     */
+    public BoundedCache(int maxSize) {
+        this(requirePositiveSize(maxSize), value -> 1);
+    }
+
+    /**
+     * Creates a cache bounded by the total weight of its values, such as their estimated size in memory.
+     *
+     * @param maxWeight the maximum total weight of the values of the cache
+     * @param weigher   the function computing the weight of a value, always the same for a given value
+     */
+    public BoundedCache(long maxWeight, ToLongFunction<? super V> weigher) {
+        if (maxWeight <= 0) {
+            throw new IllegalArgumentException("maxWeight must be positive.");
+        }
+        this.maxWeight = maxWeight;
+        this.weigher = requireNonNull(weigher);
+    }
+
+    /**
+     * Gets the value associated to a key, loading and storing it if absent.
+     * <p>
+     * The loader is called outside the lock: concurrent misses on the same key may load it several times. If the
+     * loader throws, nothing is stored. If any entry is invalidated while the loader runs, the loaded value is returned
+     * but not stored, since it may have been read before the write that caused the invalidation.
+     *
+     * @param key    the key of the value
+     * @param loader the function computing the value of an absent key
+     * @return the value associated to the key
+     */
+    public V get(K key, Function<? super K, ? extends V> loader) {
+        requireNonNull(key);
+        requireNonNull(loader);
+        long loadGeneration;
+        synchronized (entries) {
+            var value = entries.get(key);
+            if (value != null) {
+                hits++;
+                return value;
+            }
+            misses++;
+            loadGeneration = generation;
+        }
+        var value = requireNonNull(loader.apply(key));
+        synchronized (entries) {
+            if (generation == loadGeneration) store(key, value);
+        }
+        return value;
+    }
+
+    /**
+     * Gets the value associated to a key, without loading it if absent.
+     *
+     * @param key the key of the value
+     * @return the value associated to the key, if any
+     */
+    public Optional<V> getIfPresent(K key) {
+        requireNonNull(key);
+        synchronized (entries) {
+            var value = entries.get(key);
+            if (value != null) hits++;
+            else misses++;
+            return Optional.ofNullable(value);
+        }
+    }
+
+    /**
+     * Checks whether a key has a value, neither counting a lookup nor marking the entry as recently used.
+     *
+     * @param key the key of the value
+     * @return true if the key has a value
+     */
+    public boolean contains(K key) {
+        requireNonNull(key);
+        synchronized (entries) {
+            return entries.containsKey(key);
+        }
+    }
+
+    /**
+     * Associates a value to a key, replacing the previous one.
+     *
+     * @param key   the key of the value
+     * @param value the value to store
+     */
+    public void put(K key, V value) {
+        requireNonNull(key);
+        requireNonNull(value);
+        synchronized (entries) {
+            store(key, value);
+        }
+    }
+
+    /**
+     * Removes the value associated to a key, if any.
+     *
+     * @param key the key to remove
+     */
+    public void invalidate(K key) {
+        requireNonNull(key);
+        synchronized (entries) {
+            generation++;
+            var value = entries.remove(key);
+            if (value != null) weight -= weigher.applyAsLong(value);
+        }
+    }
+
+    /**
+     * Removes the values whose key matches a filter.
+     *
+     * @param filter the filter of the keys to remove
+     */
+    public void invalidateIf(Predicate<? super K> filter) {
+        requireNonNull(filter);
+        synchronized (entries) {
+            generation++;
+            var iterator = entries.entrySet().iterator();
+            while (iterator.hasNext()) {
+                var entry = iterator.next();
+                if (filter.test(entry.getKey())) {
+                    weight -= weigher.applyAsLong(entry.getValue());
+                    iterator.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes all the values of the cache.
+     */
+    public void invalidateAll() {
+        synchronized (entries) {
+            generation++;
+            entries.clear();
+            weight = 0;
+        }
+    }
+
+    /**
+     * Gets the statistics of the cache.
+     *
+     * @return a snapshot of the statistics
+     */
+    public Stats stats() {
+        synchronized (entries) {
+            return new Stats(hits, misses, evictions, entries.size(), weight);
+        }
+    }
+
+    private static int requirePositiveSize(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize must be positive.");
+        }
+        return maxSize;
+    }
+
+    /**
+     * Stores a value, then evicts the least recently used entries beyond the maximum weight. Must hold the lock.
+     */
+    private void store(K key, V value) {
+        var previous = entries.put(key, value);
+        if (previous != null) weight -= weigher.applyAsLong(previous);
+        weight += weigher.applyAsLong(value);
+        var iterator = entries.values().iterator();
+        while (weight > maxWeight && iterator.hasNext()) { // from the least recently used
+            weight -= weigher.applyAsLong(iterator.next());
+            iterator.remove();
+            evictions++;
+        }
+    }
+}
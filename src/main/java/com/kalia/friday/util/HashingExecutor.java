@@ -0,0 +1,154 @@
+package com.kalia.friday.util;
+
+import io.micronaut.context.annotation.Value;
+import io.micronaut.core.annotation.Introspected;
+import io.micronaut.http.HttpResponse;
+import io.micronaut.http.HttpStatus;
+import jakarta.inject.Singleton;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Bounded executor running the requests that hash passwords, so that a burst of logins cannot starve the IO pool.
+ * <p>
+ * When all the threads are busy and the queue is full, a request is answered at once with
+ * {@code SERVICE_UNAVAILABLE} instead of waiting.
+ */
+@Singleton
+public class HashingExecutor {
+
+    /**
+     * Statistics of the hashing executor. The times are those of the whole requests, not of the hashing alone.
+     *
+     * @param threads              the number of threads
+     * @param active               the number of running requests
+     * @param queued               the number of waiting requests
+     * @param queueCapacity        the maximum number of waiting requests
+     * @param completed            the number of completed requests
+     * @param rejected             the number of rejected requests
+     * @param averageWaitMillis    the average time spent in the queue
+     * @param averageRequestMillis the average time spent running a whole request, database work included
+     * @param maxRequestMillis     the maximum time spent running a whole request, database work included
+     */
+    @Introspected
+    public record Stats(
+        int threads,
+        int active,
+        int queued,
+        int queueCapacity,
+        long completed,
+        long rejected,
+        double averageWaitMillis,
+        double averageRequestMillis,
+        long maxRequestMillis
+    ) {
+    }
+
+    private final Logger logger = LoggerFactory.getLogger(HashingExecutor.class);
+    private final ThreadPoolExecutor executor;
+    private final int queueCapacity;
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final LongAdder requestNanos = new LongAdder();
+    private final AtomicLong maxRequestNanos = new AtomicLong();
+
+    /**
+     * Creates an executor by injection with Micronaut.
+     *
+     * @param threads           the number of threads, or 0 for one per processor
+     * @param queueCapacity     the maximum number of waiting requests
+     */
+    public HashingExecutor(
+        @Value("${friday.hashing.threads:0}") int threads,
+        @Value("${friday.hashing.queue-size:64}") int queueCapacity
+    ) {
+        if (threads < 0) throw new IllegalArgumentException("threads must not be negative.");
+        if (queueCapacity < 1) throw new IllegalArgumentException("queueCapacity must be positive.");
+        var poolSize = threads == 0 ? Runtime.getRuntime().availableProcessors() : threads;
+        var counter = new AtomicInteger();
+        this.queueCapacity = queueCapacity;
+        executor = new ThreadPoolExecutor(
+            poolSize, poolSize,
+            0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(queueCapacity),
+            (r) -> {
+                var thread = new Thread(r, "Password Hashing " + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            },
+            new ThreadPoolExecutor.AbortPolicy()
+        );
+    }
+
+    /**
+     * Runs a request on the hashing threads.
+     *
+     * @param request the request to run
+     * @param <T>     the type of the response body
+     * @return the future response | SERVICE_UNAVAILABLE at once if the executor is saturated
+     */
+    public <T> CompletableFuture<HttpResponse<T>> submit(Supplier<? extends HttpResponse<T>> request) {
+        requireNonNull(request);
+        var submitted = System.nanoTime();
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                var start = System.nanoTime();
+                waitNanos.add(start - submitted);
+                try {
+                    return request.get();
+                } finally {
+                    var duration = System.nanoTime() - start;
+                    requestNanos.add(duration);
+                    maxRequestNanos.accumulateAndGet(duration, Math::max);
+                    completed.increment();
+                }
+            }, executor);
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            logger.warn("Hashing executor saturated, request rejected");
+            return CompletableFuture.completedFuture(HttpResponse.status(HttpStatus.SERVICE_UNAVAILABLE));
+        }
+    }
+
+    /**
+     * Gets the current statistics of the executor.
+     *
+     * @return the statistics
+     */
+    public Stats stats() {
+        var done = completed.sum();
+        return new Stats(
+            executor.getMaximumPoolSize(),
+            executor.getActiveCount(),
+            executor.getQueue().size(),
+            queueCapacity,
+            done,
+            rejected.sum(),
+            done == 0 ? 0 : waitNanos.sum() / 1e6 / done,
+            done == 0 ? 0 : requestNanos.sum() / 1e6 / done,
+            TimeUnit.NANOSECONDS.toMillis(maxRequestNanos.get())
+        );
+    }
+
+    /**
+     * Stops the executor, letting the running and waiting requests finish.
+     */
+    @PreDestroy
+    public void stop() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,31 @@
+package com.kalia.friday.util;
+
+import io.micronaut.context.annotation.Factory;
+import io.micronaut.context.annotation.Value;
+import jakarta.inject.Singleton;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+
+/**
+ * Factory of the {@link HttpClient} shared by the outgoing requests of the server, so that connections are reused
+ * between requests instead of opening a new pool for each one.
+ */
+@Factory
+public class HttpClientFactory {
+
+    /**
+     * Creates the shared client, preferring HTTP/2 and following redirects unless they downgrade to HTTP.
+     *
+     * @param connectTimeout the maximum time to establish a connection
+     * @return the shared client
+     */
+    @Singleton
+    public HttpClient httpClient(@Value("${friday.http.connect-timeout:10s}") Duration connectTimeout) {
+        return HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_2)
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .connectTimeout(connectTimeout)
+            .build();
+    }
+}
@@ -0,0 +1,149 @@
+package com.kalia.friday.util;
+
+import org.hibernate.boot.spi.SessionFactoryOptions;
+import org.hibernate.cache.cfg.spi.DomainDataRegionBuildingContext;
+import org.hibernate.cache.cfg.spi.DomainDataRegionConfig;
+import org.hibernate.cache.spi.access.AccessType;
+import org.hibernate.cache.spi.support.DomainDataStorageAccess;
+import org.hibernate.cache.spi.support.RegionFactoryTemplate;
+import org.hibernate.cache.spi.support.StorageAccess;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Hibernate second-level cache held in the memory of the server, used through
+ * {@code hibernate.cache.region.factory_class}.
+ * <p>
+ * The entity and query regions each hold at most the number of entries set by {@value #MAX_ENTRIES} (10 000 by
+ * default), evicting the least recently used ones first. The update timestamps are never evicted: they tell which
+ * cached query results are stale. The entities are cached read-write unless their mapping tells otherwise.
+ */
+public class LocalRegionFactory extends RegionFactoryTemplate {
+    /**
+     * Name of the property setting the maximum number of entries of each region.
+     */
+    public static final String MAX_ENTRIES = "hibernate.cache.local.max_entries";
+    private static final int DEFAULT_MAX_ENTRIES = 10_000;
+    private int maxEntries = DEFAULT_MAX_ENTRIES;
+
+    @Override
+    protected void prepareForUse(SessionFactoryOptions settings, @SuppressWarnings("rawtypes") Map configValues) {
+        var value = configValues.get(MAX_ENTRIES);
+        if (value == null) return;
+        maxEntries = Integer.parseInt(value.toString().trim());
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException(MAX_ENTRIES + " must be positive.");
+        }
+    }
+
+    @Override
+    protected void releaseFromUse() {
+        // the regions release their storage
+    }
+
+    @Override
+    public AccessType getDefaultAccessType() {
+        return AccessType.READ_WRITE;
+    }
+
+    @Override
+    protected DomainDataStorageAccess createDomainDataStorageAccess(
+        DomainDataRegionConfig regionConfig,
+        DomainDataRegionBuildingContext buildingContext
+    ) {
+        return new BoundedStorage(maxEntries);
+    }
+
+    @Override
+    protected StorageAccess createQueryResultsRegionStorageAccess(String regionName, SessionFactoryImplementor sessionFactory) {
+        return new BoundedStorage(maxEntries);
+    }
+
+    @Override
+    protected StorageAccess createTimestampsRegionStorageAccess(String regionName, SessionFactoryImplementor sessionFactory) {
+        return new TimestampsStorage();
+    }
+
+    /**
+     * Storage of a region evicting its least recently used entries.
+     */
+    private static final class BoundedStorage implements DomainDataStorageAccess {
+        private final BoundedCache<Object, Object> cache;
+
+        private BoundedStorage(int maxEntries) {
+            cache = new BoundedCache<>(maxEntries);
+        }
+
+        @Override
+        public Object getFromCache(Object key, SharedSessionContractImplementor session) {
+            return cache.getIfPresent(key).orElse(null);
+        }
+
+        @Override
+        public void putIntoCache(Object key, Object value, SharedSessionContractImplementor session) {
+            if (value == null) cache.invalidate(key);
+            else cache.put(key, value);
+        }
+
+        @Override
+        public boolean contains(Object key) {
+            return cache.contains(key);
+        }
+
+        @Override
+        public void evictData() {
+            cache.invalidateAll();
+        }
+
+        @Override
+        public void evictData(Object key) {
+            cache.invalidate(key);
+        }
+
+        @Override
+        public void release() {
+            cache.invalidateAll();
+        }
+    }
+
+    /**
+     * Storage of the last update timestamp of each table.
+     */
+    private static final class TimestampsStorage implements StorageAccess {
+        private final Map<Object, Object> timestamps = new ConcurrentHashMap<>();
+
+        @Override
+        public Object getFromCache(Object key, SharedSessionContractImplementor session) {
+            return timestamps.get(key);
+        }
+
+        @Override
+        public void putIntoCache(Object key, Object value, SharedSessionContractImplementor session) {
+            if (value == null) timestamps.remove(key);
+            else timestamps.put(key, value);
+        }
+
+        @Override
+        public boolean contains(Object key) {
+            return timestamps.containsKey(key);
+        }
+
+        @Override
+        public void evictData() {
+            timestamps.clear();
+        }
+
+        @Override
+        public void evictData(Object key) {
+            timestamps.remove(key);
+        }
+
+        @Override
+        public void release() {
+            timestamps.clear();
+        }
+    }
+}
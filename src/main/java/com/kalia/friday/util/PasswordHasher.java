@@ -0,0 +1,35 @@
+package com.kalia.friday.util;
+
+/**
+ * Hashes and verifies the passwords of the users.
+ * <p>
+ * The hashes are self-describing strings holding the algorithm, its cost and the salt of each password, so the cost
+ * can be raised without invalidating the hashes already stored.
+ */
+public interface PasswordHasher {
+
+    /**
+     * Hashes a password with a new random salt and the current cost.
+     *
+     * @param password the password to hash
+     * @return the encoded hash
+     */
+    String hash(String password);
+
+    /**
+     * Checks a password against an encoded hash.
+     *
+     * @param password the password to check
+     * @param encoded  the encoded hash, as returned by {@link #hash(String)} or by an older scheme
+     * @return true if the password matches
+     */
+    boolean verify(String password, String encoded);
+
+    /**
+     * Checks whether an encoded hash uses an older scheme or a lower cost than the current one.
+     *
+     * @param encoded the encoded hash
+     * @return true if the password should be hashed again on its next successful verification
+     */
+    boolean needsRehash(String encoded);
+}
@@ -0,0 +1,150 @@
+package com.kalia.friday.util;
+
+import io.micronaut.context.annotation.Value;
+import jakarta.inject.Singleton;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Base64;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Password hasher using PBKDF2 with HMAC-SHA-512 and a random salt per password.
+ * <p>
+ * The hashes are encoded as {@code $pbkdf2-sha512$<iterations>$<salt>$<hash>} (salt and hash in base 64). Hashes
+ * written by the legacy {@link SHA512Hasher} are still verified, and reported as needing a rehash.
+ * <p>
+ * When {@code friday.passwords.calibrate} is enabled, the number of iterations is measured at startup so that one hash
+ * takes about {@code friday.passwords.target-latency} on this machine.
+ */
+@Singleton
+public class Pbkdf2PasswordHasher implements PasswordHasher {
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA512";
+    private static final String PREFIX = "$pbkdf2-sha512$";
+    private static final int SALT_LENGTH = 16;
+    private static final int HASH_LENGTH = 64;
+    static final int MIN_ITERATIONS = 10_000;
+    private static final int CALIBRATION_ITERATIONS = 20_000;
+    private static final int CALIBRATION_ROUNDS = 5;
+
+    private final Logger logger = LoggerFactory.getLogger(Pbkdf2PasswordHasher.class);
+    private final SecureRandom random = new SecureRandom();
+    private final SHA512Hasher legacyHasher;
+    private final int iterations;
+
+    /**
+     * Creates a hasher by injection with Micronaut.
+     *
+     * @param legacyHasher  the hasher of the passwords stored before this one
+     * @param iterations    the number of iterations, used unless calibrating
+     * @param calibrate     true to measure the number of iterations at startup
+     * @param targetLatency the duration of one hash targeted by the calibration
+     */
+    public Pbkdf2PasswordHasher(
+        SHA512Hasher legacyHasher,
+        @Value("${friday.passwords.iterations:210000}") int iterations,
+        @Value("${friday.passwords.calibrate:false}") boolean calibrate,
+        @Value("${friday.passwords.target-latency:250ms}") Duration targetLatency
+    ) {
+        this.legacyHasher = requireNonNull(legacyHasher);
+        if (iterations < MIN_ITERATIONS) {
+            throw new IllegalArgumentException("iterations must be at least " + MIN_ITERATIONS + ".");
+        }
+        this.iterations = calibrate ? calibrate(targetLatency) : iterations;
+        logger.info("Password hasher initialized with {} iterations", this.iterations);
+    }
+
+    /**
+     * Gets the number of iterations of the new hashes.
+     *
+     * @return the number of iterations
+     */
+    public int iterations() {
+        return iterations;
+    }
+
+    @Override
+    public String hash(String password) {
+        requireNonNull(password);
+        var salt = new byte[SALT_LENGTH];
+        random.nextBytes(salt);
+        var encoder = Base64.getEncoder().withoutPadding();
+        return PREFIX + iterations + '$' + encoder.encodeToString(salt) + '$' +
+            encoder.encodeToString(pbkdf2(password, salt, iterations));
+    }
+
+    @Override
+    public boolean verify(String password, String encoded) {
+        requireNonNull(password);
+        requireNonNull(encoded);
+        if (!encoded.startsWith(PREFIX)) {
+            return MessageDigest.isEqual(
+                legacyHasher.hash(password).getBytes(StandardCharsets.UTF_8),
+                encoded.getBytes(StandardCharsets.UTF_8)
+            );
+        }
+        var parts = encoded.substring(PREFIX.length()).split("\\$");
+        if (parts.length != 3) return false;
+        try {
+            var cost = Integer.parseInt(parts[0]);
+            var decoder = Base64.getDecoder();
+            var salt = decoder.decode(parts[1]);
+            var expected = decoder.decode(parts[2]);
+            if (cost < 1 || expected.length == 0) return false;
+            return MessageDigest.isEqual(expected, pbkdf2(password, salt, cost, expected.length));
+        } catch (IllegalArgumentException e) { // malformed cost or base 64
+            return false;
+        }
+    }
+
+    @Override
+    public boolean needsRehash(String encoded) {
+        requireNonNull(encoded);
+        if (!encoded.startsWith(PREFIX)) return true;
+        var end = encoded.indexOf('$', PREFIX.length());
+        if (end < 0) return true;
+        try {
+            return Integer.parseInt(encoded.substring(PREFIX.length(), end)) < iterations;
+        } catch (NumberFormatException e) {
+            return true;
+        }
+    }
+
+    private int calibrate(Duration targetLatency) {
+        if (targetLatency.isNegative() || targetLatency.isZero()) {
+            throw new IllegalArgumentException("targetLatency must be positive.");
+        }
+        var salt = new byte[SALT_LENGTH];
+        var best = Long.MAX_VALUE;
+        for (var i = 0; i < CALIBRATION_ROUNDS; i++) { // the first rounds warm the JIT up
+            var start = System.nanoTime();
+            pbkdf2("calibration", salt, CALIBRATION_ITERATIONS);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        var calibrated = (long) CALIBRATION_ITERATIONS * targetLatency.toNanos() / Math.max(best, 1);
+        return (int) Math.max(MIN_ITERATIONS, Math.min(calibrated, Integer.MAX_VALUE));
+    }
+
+    private static byte[] pbkdf2(String password, byte[] salt, int iterations) {
+        return pbkdf2(password, salt, iterations, HASH_LENGTH);
+    }
+
+    private static byte[] pbkdf2(String password, byte[] salt, int iterations, int length) {
+        var spec = new PBEKeySpec(password.toCharArray(), salt, iterations, length * 8);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new AssertionError(ALGORITHM + " algorithm doesn't exist anymore");
+        } finally {
+            spec.clearPassword();
+        }
+    }
+}
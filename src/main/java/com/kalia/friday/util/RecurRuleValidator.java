@@ -0,0 +1,161 @@
+package com.kalia.friday.util;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Validates {@code rrule} strings without building any iCalendar object.
+ * <p>
+ * A rule is accepted if it is a {@code ;}-separated list of {@code NAME=VALUE} parts containing a {@code FREQ} part,
+ * where every known part appears once and is written in its canonical form (the form Biweekly writes back). Unknown
+ * parts are kept verbatim by Biweekly and are therefore accepted.
+ */
+public final class RecurRuleValidator {
+    private static final String[] FREQUENCIES = {
+        "SECONDLY", "MINUTELY", "HOURLY", "DAILY", "WEEKLY", "MONTHLY", "YEARLY"
+    };
+    private static final String[] DAYS = {"MO", "TU", "WE", "TH", "FR", "SA", "SU"};
+
+    private enum Part {
+        FREQ, UNTIL, COUNT, INTERVAL, BYSECOND, BYMINUTE, BYHOUR, BYDAY, BYMONTHDAY, BYYEARDAY, BYWEEKNO, BYMONTH,
+        BYSETPOS, WKST
+    }
+
+    private static final Part[] PARTS = Part.values();
+
+    private RecurRuleValidator() {
+        throw new AssertionError("Cannot instantiate.");
+    }
+
+    /**
+     * Checks that a recurrence rule is valid.
+     *
+     * @param rule the rule to check
+     * @return true if the rule is valid
+     */
+    public static boolean isValid(String rule) {
+        requireNonNull(rule);
+        var seen = 0;
+        var length = rule.length();
+        for (var start = 0; start <= length; ) {
+            var end = rule.indexOf(';', start);
+            if (end < 0) end = length;
+            var equals = indexOf(rule, '=', start, end);
+            if (equals <= start) return false; // empty part, no value or no name
+            var part = knownPart(rule, start, equals);
+            if (part == null) { // extension parts are kept as is, but repeated ones are merged
+                if (isRepeated(rule, start, equals)) return false;
+            } else {
+                var bit = 1 << part.ordinal();
+                if ((seen & bit) != 0 || !isValidValue(part, rule, equals + 1, end)) return false;
+                seen |= bit;
+            }
+            start = end + 1;
+        }
+        return (seen & (1 << Part.FREQ.ordinal())) != 0;
+    }
+
+    private static Part knownPart(String rule, int start, int end) {
+        for (var part : PARTS) {
+            if (regionEqualsIgnoreCase(rule, start, end, part.name())) return part;
+        }
+        return null;
+    }
+
+    private static boolean isRepeated(String rule, int partStart, int nameEnd) {
+        var nameLength = nameEnd - partStart;
+        for (var start = 0; start < partStart; ) {
+            var end = rule.indexOf(';', start);
+            var equals = indexOf(rule, '=', start, end);
+            if (equals - start == nameLength && rule.regionMatches(true, start, rule, partStart, nameLength)) {
+                return true;
+            }
+            start = end + 1;
+        }
+        return false;
+    }
+
+    private static boolean isValidValue(Part part, String rule, int start, int end) {
+        return switch (part) {
+            case FREQ -> indexOfIgnoreCase(FREQUENCIES, rule, start, end) >= 0;
+            case UNTIL -> isValidDate(rule, start, end);
+            case COUNT, INTERVAL -> isCanonicalInt(rule, start, end);
+            case WKST -> indexOfIgnoreCase(DAYS, rule, start, end) >= 0;
+            case BYDAY -> isValidList(rule, start, end, true);
+            default -> isValidList(rule, start, end, false);
+        };
+    }
+
+    private static boolean isValidList(String rule, int start, int end, boolean days) {
+        if (start == end) return false;
+        for (var itemStart = start; itemStart <= end; ) {
+            var itemEnd = indexOf(rule, ',', itemStart, end);
+            if (itemEnd < 0) itemEnd = end;
+            var valid = days ? isValidDay(rule, itemStart, itemEnd) : isCanonicalInt(rule, itemStart, itemEnd);
+            if (!valid) return false;
+            itemStart = itemEnd + 1;
+        }
+        return true;
+    }
+
+    private static boolean isValidDay(String rule, int start, int end) {
+        if (end - start < 2 || indexOfIgnoreCase(DAYS, rule, end - 2, end) < 0) return false;
+        return start == end - 2 || isCanonicalInt(rule, start, end - 2);
+    }
+
+    /**
+     * Accepts {@code yyyyMMdd} and {@code yyyyMMdd'T'HHmmss'Z'}.
+     */
+    private static boolean isValidDate(String rule, int start, int end) {
+        var length = end - start;
+        if (length != 8 && length != 16) return false;
+        for (var i = start; i < start + 8; i++) {
+            if (!isDigit(rule.charAt(i))) return false;
+        }
+        if (length == 8) return true;
+        if (rule.charAt(start + 8) != 'T' || Character.toUpperCase(rule.charAt(end - 1)) != 'Z') return false;
+        for (var i = start + 9; i < end - 1; i++) {
+            if (!isDigit(rule.charAt(i))) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Accepts integers without sign or leading zero (except for negative ones), fitting in an {@code int}.
+     */
+    private static boolean isCanonicalInt(String rule, int start, int end) {
+        var negative = start < end && rule.charAt(start) == '-';
+        var digitsStart = negative ? start + 1 : start;
+        var digits = end - digitsStart;
+        if (digits == 0 || digits > 10) return false;
+        if (rule.charAt(digitsStart) == '0' && (digits > 1 || negative)) return false;
+        var value = 0L;
+        for (var i = digitsStart; i < end; i++) {
+            var c = rule.charAt(i);
+            if (!isDigit(c)) return false;
+            value = value * 10 + (c - '0');
+        }
+        return value <= (negative ? -(long) Integer.MIN_VALUE : Integer.MAX_VALUE);
+    }
+
+    private static int indexOfIgnoreCase(String[] values, String rule, int start, int end) {
+        for (var i = 0; i < values.length; i++) {
+            if (regionEqualsIgnoreCase(rule, start, end, values[i])) return i;
+        }
+        return -1;
+    }
+
+    private static boolean regionEqualsIgnoreCase(String rule, int start, int end, String value) {
+        return end - start == value.length() && rule.regionMatches(true, start, value, 0, value.length());
+    }
+
+    private static int indexOf(String rule, char c, int start, int end) {
+        for (var i = start; i < end; i++) {
+            if (rule.charAt(i) == c) return i;
+        }
+        return -1;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
@@ -15,6 +15,10 @@ import static java.util.Objects.requireNonNull;
 
 /**
  * Utility class to inject a hasher to hash character strings with SHA-512
+ * <p>
+ * Only used to verify the passwords stored before {@link PasswordHasher}; see {@link Pbkdf2PasswordHasher}.
+ * <p>
+ * {@code MessageDigest} is not thread-safe, so each thread hashes with its own instance.
  */
 @Singleton
 public final class SHA512Hasher {
@@ -22,7 +26,7 @@ public final class SHA512Hasher {
     private final Path saltPath = Path.of("resources", "salt.txt");
     private final Logger logger = LoggerFactory.getLogger(SHA512Hasher.class);
 
-    private final MessageDigest md;
+    private final ThreadLocal<MessageDigest> digests = ThreadLocal.withInitial(SHA512Hasher::newDigest);
     private final byte[] salt;
 
     /**
@@ -30,8 +34,12 @@ public final class SHA512Hasher {
      */
     public SHA512Hasher() {
         salt = getSalt();
+        digests.get(); // fails fast if the algorithm is missing
+    }
+
+    private static MessageDigest newDigest() {
         try {
-            md = MessageDigest.getInstance("SHA-512");
+            return MessageDigest.getInstance("SHA-512");
         } catch (NoSuchAlgorithmException e) {
             throw new AssertionError("SHA-512 algorithm doesn't exist anymore");
         }
@@ -57,6 +65,7 @@ public final class SHA512Hasher {
      */
     public String hash(String word) {
         requireNonNull(word);
+        var md = digests.get();
         md.update(salt);
         var hashed = md.digest(word.getBytes(StandardCharsets.UTF_8));
         return new String(hashed);
@@ -1,5 +1,8 @@
 package com.kalia.friday.util;
 
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
 import static java.util.Objects.requireNonNull;
 
 /**
@@ -63,4 +66,18 @@ public final class StringUtils {
         }
         return s;
     }
+
+    /**
+     * Hashes fields into a name-based UUID, each field written as its string form followed by a NUL separator.
+     *
+     * @param fields the fields to hash, possibly null
+     * @return the hash of the fields
+     */
+    public static UUID contentHash(Object... fields) {
+        var content = new StringBuilder();
+        for (var field : fields) {
+            content.append(field).append('\0');
+        }
+        return UUID.nameUUIDFromBytes(content.toString().getBytes(StandardCharsets.UTF_8));
+    }
 }
@@ -0,0 +1,133 @@
+package com.kalia.friday.util;
+
+import biweekly.Biweekly;
+import biweekly.component.VEvent;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Reads the {@code VEVENT} components of an iCalendar stream one by one, without building the whole calendar.
+ * <p>
+ * Each event is parsed by Biweekly on its own, together with the {@code VERSION} and the {@code VTIMEZONE} components
+ * read before it in the same calendar, so the memory used only depends on the size of one event and of the time
+ * zones. Components and lines longer than {@link #MAX_COMPONENT_LENGTH} are rejected.
+ */
+final class VEventReader implements Iterator<VEvent>, Closeable {
+    static final int MAX_COMPONENT_LENGTH = 1 << 20; // 1M chars
+    private static final String DEFAULT_VERSION = "VERSION:2.0";
+
+    private final Reader reader;
+    private final StringBuilder line = new StringBuilder();
+    private final StringBuilder timezones = new StringBuilder();
+    private String version = DEFAULT_VERSION;
+    private VEvent next;
+    private boolean done;
+
+    /**
+     * Creates a reader of events.
+     *
+     * @param reader the iCalendar stream, closed with this reader
+     */
+    VEventReader(Reader reader) {
+        this.reader = requireNonNull(reader);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null && !done) {
+            try {
+                next = readEvent();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            done = next == null;
+        }
+        return next != null;
+    }
+
+    @Override
+    public VEvent next() {
+        if (!hasNext()) throw new NoSuchElementException();
+        var event = next;
+        next = null;
+        return event;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private VEvent readEvent() throws IOException {
+        String current;
+        while ((current = readLine()) != null) {
+            if (isLine(current, "BEGIN:VCALENDAR")) {
+                version = DEFAULT_VERSION;
+                timezones.setLength(0);
+            } else if (current.regionMatches(true, 0, "VERSION:", 0, 8)) {
+                version = current.trim();
+            } else if (isLine(current, "BEGIN:VTIMEZONE")) {
+                var timezone = readComponent(current, "END:VTIMEZONE");
+                if (timezones.length() + timezone.length() > MAX_COMPONENT_LENGTH) {
+                    throw new IllegalArgumentException("Too many time zones in calendar");
+                }
+                timezones.append(timezone);
+            } else if (isLine(current, "BEGIN:VEVENT")) {
+                var event = parse(readComponent(current, "END:VEVENT"));
+                if (event != null) return event;
+            }
+        }
+        return null;
+    }
+
+    private VEvent parse(String event) {
+        var calendar = Biweekly.parse(
+            "BEGIN:VCALENDAR\r\n" + version + "\r\n" + timezones + event + "END:VCALENDAR\r\n"
+        ).first();
+        if (calendar == null || calendar.getEvents().isEmpty()) return null;
+        return calendar.getEvents().get(0);
+    }
+
+    /**
+     * Reads the lines of a component until its end line (included), nested components included.
+     */
+    private String readComponent(String begin, String end) throws IOException {
+        var component = new StringBuilder(begin).append("\r\n");
+        String current;
+        while ((current = readLine()) != null) {
+            if (component.length() + current.length() > MAX_COMPONENT_LENGTH) {
+                throw new IllegalArgumentException("Component too long: " + begin);
+            }
+            component.append(current).append("\r\n");
+            if (isLine(current, end)) return component.toString();
+        }
+        throw new IllegalArgumentException("Unterminated component: " + begin);
+    }
+
+    /**
+     * Reads a line ended by {@code \n}, {@code \r\n} or the end of the stream, without its terminator.
+     */
+    private String readLine() throws IOException {
+        line.setLength(0);
+        int c;
+        while ((c = reader.read()) != -1 && c != '\n') {
+            if (line.length() == MAX_COMPONENT_LENGTH) throw new IllegalArgumentException("Line too long");
+            line.append((char) c);
+        }
+        if (c == -1 && line.isEmpty()) return null;
+        var length = line.length();
+        if (length > 0 && line.charAt(length - 1) == '\r') line.setLength(length - 1);
+        return line.toString();
+    }
+
+    private static boolean isLine(String line, String expected) {
+        return line.trim().equalsIgnoreCase(expected);
+    }
+}
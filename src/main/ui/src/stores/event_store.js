@@ -35,6 +35,25 @@ export function allByUser(onSuccess) {
     );
 }
 
+export function eventsInRange(from, to, onSuccess, onFail) {
+    sendHTTPRequest(
+        api + "range",
+        "POST",
+        {
+            userId: getCookie(COOKIE_USER_ID),
+            token: getCookie(COOKIE_USER_TOKEN),
+            from,
+            to
+        },
+        200,
+        res => res.json().then(data => onSuccess(data)),
+        e => {
+            console.log("events in range failed because of:\n" + e);
+            onFail(e);
+        }
+    );
+}
+
 export function updateEvent(event, onSuccess) {
     event.userId = getCookie(COOKIE_USER_ID);
     event.userToken = getCookie(COOKIE_USER_TOKEN);
@@ -71,25 +90,54 @@ export function importFromURL(url, onSuccess) {
             userId: getCookie(COOKIE_USER_ID),
             token: getCookie(COOKIE_USER_TOKEN)
         },
-        200,
-        onSuccess,
+        202,
+        res => res.json().then(job => waitForImport(job, onSuccess, _ => alert("Couldn't import events from URL"))),
         _ => alert("Couldn't import events from URL")
     );
 }
 
-export function importFromFile(fileContent, onSuccess) {
-    sendHTTPRequest(
-        api + "import/file",
+export function importFromFile(file, onSuccess) {
+    fetch(api + "import/stream", { // the file is sent as is and parsed by an import job
+        method: "POST",
+        headers: {
+            "Accept": "application/json",
+            "Content-Type": "text/calendar",
+            "X-User-Id": getCookie(COOKIE_USER_ID),
+            "X-User-Token": getCookie(COOKIE_USER_TOKEN)
+        },
+        body: file
+    }).then(response => {
+        if (response.status === 202) {
+            return response.json();
+        } else {
+            throw new Error("invalid response status (expected: 202 / actual:" + response.status + ")");
+        }
+    }).then(job => waitForImport(job, onSuccess, _ => alert("Couldn't import events from file")))
+        .catch(_ => alert("Couldn't import events from file"));
+}
+
+const IMPORT_POLL_DELAY = 1000;
+
+export function waitForImport(job, onDone, onFail) {
+    if (job.status === "DONE") {
+        onDone(job);
+        return;
+    }
+    if (job.status === "FAILED") {
+        onFail(job);
+        return;
+    }
+    setTimeout(() => sendHTTPRequest(
+        api + "import/status/" + job.id,
         "POST",
         {
-            fileContent,
             userId: getCookie(COOKIE_USER_ID),
             token: getCookie(COOKIE_USER_TOKEN)
         },
         200,
-        onSuccess,
-        _ => alert("Couldn't import events from file")
-    );
+        res => res.json().then(data => waitForImport(data, onDone, onFail)),
+        onFail
+    ), IMPORT_POLL_DELAY);
 }
 
 export function nextEvent(onSuccess) {
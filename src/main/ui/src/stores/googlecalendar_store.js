@@ -1,28 +1,31 @@
-import {sendHTTPRequest} from "../utils/http_requests";
+import {waitForImport} from "./event_store";
 import {COOKIE_USER_ID, COOKIE_USER_TOKEN, getCookie} from "../utils/cookies";
 
 const api = "/api/googlecalendar/";
 
 export function importFromGoogleCalendar(googleId, onSuccess) {
-    sendHTTPRequest(
-        api,
-        "POST",
-        {
+    const onFail = _ => alert("Failed to import from Google Calendar");
+    fetch(api, {
+        method: "POST",
+        headers: {
+            "Accept": "application/json",
+            "Content-Type": "application/json"
+        },
+        body: JSON.stringify({
             googleId: googleId,
             userId: getCookie(COOKIE_USER_ID),
             token: getCookie(COOKIE_USER_TOKEN)
-        },
-        200,
-        r => {
-            r.text().then(data => {
-                if (data) {
-                    const win = window.open(data, '_self');
-                    win.focus();
-                } else {
-                    onSuccess();
-                }
+        })
+    }).then(response => {
+        if (response.status === 200) { // authentication required
+            return response.text().then(url => {
+                const win = window.open(url, '_self');
+                win.focus();
             });
-        },
-        _ => alert("Failed to import from Google Calendar")
-    );
+        } else if (response.status === 202) {
+            return response.json().then(job => waitForImport(job, onSuccess, onFail));
+        } else {
+            throw new Error("invalid response status (expected: 200 or 202 / actual:" + response.status + ")");
+        }
+    }).catch(onFail);
 }
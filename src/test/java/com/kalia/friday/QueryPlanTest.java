@@ -0,0 +1,60 @@
+package com.kalia.friday;
+
+import io.micronaut.test.annotation.TransactionMode;
+import io.micronaut.test.extensions.junit5.annotation.MicronautTest;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that the hot queries on the {@code event} and {@code login} tables use the declared indexes, with H2 and with
+ * its PostgreSQL compatibility mode.
+ */
+@MicronautTest(transactionMode = TransactionMode.SINGLE_TRANSACTION)
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+@TestDbProperties
+public class QueryPlanTest {
+
+    @Inject
+    @PersistenceContext
+    private EntityManager manager;
+
+    @AfterEach
+    public void resetMode() {
+        manager.createNativeQuery("SET MODE REGULAR").executeUpdate();
+    }
+
+    private void assertUsesIndex(String index, String sql) {
+        var plan = manager.createNativeQuery("EXPLAIN " + sql).getSingleResult().toString();
+        assertTrue(plan.contains(index.toUpperCase()), plan);
+    }
+
+    private void assertPlans() {
+        assertUsesIndex("event_user_start_date_idx", """
+            SELECT * FROM event e WHERE e.user_id = RANDOM_UUID() AND e.start_date < CURRENT_TIMESTAMP
+            AND (e.recur_rule_parts IS NOT NULL OR e.start_date >= CURRENT_TIMESTAMP OR e.end_date > CURRENT_TIMESTAMP)""");
+        assertUsesIndex("event_user_end_date_idx", """
+            SELECT * FROM event e WHERE e.user_id = RANDOM_UUID() AND e.end_date > CURRENT_TIMESTAMP""");
+        assertUsesIndex("event_user_next_occurrence_idx", """
+            SELECT * FROM event e WHERE e.user_id = RANDOM_UUID() AND e.next_occurrence >= CURRENT_TIMESTAMP
+            ORDER BY e.next_occurrence LIMIT 1""");
+        assertUsesIndex("login_token_idx", "SELECT * FROM login l WHERE l.token = RANDOM_UUID()");
+    }
+
+    @Test
+    public void testPlans() {
+        assertPlans();
+    }
+
+    @Test
+    public void testPostgreSQLModePlans() {
+        manager.createNativeQuery("SET MODE PostgreSQL").executeUpdate();
+        assertPlans();
+    }
+}
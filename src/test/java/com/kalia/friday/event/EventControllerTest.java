@@ -4,7 +4,9 @@ import com.kalia.friday.TestDbProperties;
 import com.kalia.friday.login.Login;
 import com.kalia.friday.login.LoginSessionDTO;
 import com.kalia.friday.user.User;
-import com.kalia.friday.util.SHA512Hasher;
+import com.kalia.friday.util.PasswordHasher;
+import com.sun.net.httpserver.HttpServer;
+import io.micronaut.core.type.Argument;
 import io.micronaut.http.HttpRequest;
 import io.micronaut.http.HttpStatus;
 import io.micronaut.http.client.HttpClient;
@@ -19,8 +21,14 @@ import org.junit.jupiter.api.TestInstance;
 
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -39,7 +47,7 @@ public class EventControllerTest {
     private EntityManager manager;
 
     @Inject
-    private SHA512Hasher hasher;
+    private PasswordHasher hasher;
 
     private User user;
     private Login login;
@@ -318,4 +326,262 @@ public class EventControllerTest {
             .exchange(HttpRequest.PUT("/update/" + event.id(), updateDTO), EventResponseDTO.class)
         );
     }
+
+    @Test
+    public void testRange() {
+        var start = LocalDateTime.of(2021, 11, 1, 18, 30); // monday
+        var event = Event.createEvent(user, "title", null, null, "FREQ=WEEKLY;BYDAY=MO,FR", start, start.plusHours(1), null, null);
+        var old = Event.createEvent(user, "old", null, null, null, start.minusDays(1), start.minusDays(1), null, null);
+        manager.persist(event);
+        manager.persist(old);
+        manager.getTransaction().commit();
+        var rangeDTO = new EventRangeDTO(user.id(), login.token(), start.plusDays(4).plusMinutes(30), start.plusDays(8));
+        var response = client
+            .toBlocking()
+            .exchange(HttpRequest.POST("/range", rangeDTO), Argument.listOf(EventOccurrencesDTO.class));
+        assertEquals(HttpStatus.OK, response.getStatus());
+        var body = response.body();
+        assertNotNull(body);
+        assertEquals(1, body.size());
+        assertEquals(event.id(), body.get(0).event().id());
+        assertEquals(List.of(start.plusDays(4), start.plusDays(7)), body.get(0).starts());
+    }
+
+    @Test
+    public void testRangeWithEmptyRangeFails() {
+        var now = LocalDateTime.now();
+        var rangeDTO = new EventRangeDTO(user.id(), login.token(), now, now);
+        var exception = assertThrows(HttpClientResponseException.class, () -> client
+            .toBlocking()
+            .exchange(HttpRequest.POST("/range", rangeDTO), Argument.listOf(EventOccurrencesDTO.class))
+        );
+        assertEquals(HttpStatus.BAD_REQUEST, exception.getStatus());
+    }
+
+    @Test
+    public void testRangeWithWrongLoginTokenFails() {
+        var now = LocalDateTime.now();
+        var rangeDTO = new EventRangeDTO(user.id(), UUID.randomUUID(), now, now.plusDays(1));
+        var exception = assertThrows(HttpClientResponseException.class, () -> client
+            .toBlocking()
+            .exchange(HttpRequest.POST("/range", rangeDTO), Argument.listOf(EventOccurrencesDTO.class))
+        );
+        assertEquals(HttpStatus.UNAUTHORIZED, exception.getStatus());
+    }
+
+    @Test
+    public void testAllByUserPage() {
+        var now = LocalDateTime.now();
+        for (var i = 0; i < 3; i++) {
+            manager.persist(Event.createEvent(user, "title" + i, null, null, null, now.plusDays(i), null, null, null));
+        }
+        manager.getTransaction().commit();
+        var response = client
+            .toBlocking()
+            .exchange(HttpRequest.POST("/allbyuser/page", new EventPageDTO(user.id(), login.token(), null, null, 2)), EventPageResponseDTO.class);
+        assertEquals(HttpStatus.OK, response.getStatus());
+        var page = response.body();
+        assertNotNull(page);
+        assertEquals(List.of("title0", "title1"), page.events().stream().map(EventResponseDTO::title).toList());
+        var nextPageDTO = new EventPageDTO(user.id(), login.token(), page.nextStart(), page.nextId(), 2);
+        page = client
+            .toBlocking()
+            .retrieve(HttpRequest.POST("/allbyuser/page", nextPageDTO), EventPageResponseDTO.class);
+        assertEquals(List.of("title2"), page.events().stream().map(EventResponseDTO::title).toList());
+        assertNull(page.nextId());
+    }
+
+    @Test
+    public void testAllByUserStream() {
+        var now = LocalDateTime.now();
+        for (var i = 0; i < 3; i++) {
+            manager.persist(Event.createEvent(user, "title" + i, null, null, null, now.plusDays(i), null, null, null));
+        }
+        manager.getTransaction().commit();
+        var events = client
+            .toBlocking()
+            .retrieve(HttpRequest.POST("/allbyuser/stream", new LoginSessionDTO(user.id(), login.token())), Argument.listOf(EventResponseDTO.class));
+        assertEquals(List.of("title0", "title1", "title2"), events.stream().map(EventResponseDTO::title).toList());
+    }
+
+    @Test
+    public void testAllByUserStreamWithWrongLoginTokenFails() {
+        var exception = assertThrows(HttpClientResponseException.class, () -> client
+            .toBlocking()
+            .exchange(HttpRequest.POST("/allbyuser/stream", new LoginSessionDTO(user.id(), UUID.randomUUID())), Argument.listOf(EventResponseDTO.class))
+        );
+        assertEquals(HttpStatus.UNAUTHORIZED, exception.getStatus());
+    }
+
+    private static String calendar(int events) {
+        var ics = new StringBuilder("BEGIN:VCALENDAR\r\nVERSION:2.0\r\nPRODID:test\r\n");
+        for (var i = 0; i < events; i++) {
+            ics.append("BEGIN:VEVENT\r\nUID:").append(i).append("\r\nSUMMARY:title").append(i)
+                .append("\r\nDTSTART:20210601T100000Z\r\nDTEND:20210601T110000Z\r\nEND:VEVENT\r\n");
+        }
+        return ics.append("END:VCALENDAR\r\n").toString();
+    }
+
+    private ImportJobDTO awaitImport(ImportJobDTO job) throws InterruptedException {
+        var session = new LoginSessionDTO(user.id(), login.token());
+        for (var i = 0; i < 100 && (job.status() == ImportJob.Status.QUEUED || job.status() == ImportJob.Status.RUNNING); i++) {
+            Thread.sleep(100);
+            job = client.toBlocking().retrieve(HttpRequest.POST("/import/status/" + job.id(), session), ImportJobDTO.class);
+        }
+        return job;
+    }
+
+    @Test
+    public void testImportFromStream() throws InterruptedException {
+        var response = client
+            .toBlocking()
+            .exchange(HttpRequest.POST("/import/stream", calendar(150))
+                .contentType("text/calendar")
+                .header("X-User-Id", user.id().toString())
+                .header("X-User-Token", login.token().toString()), ImportJobDTO.class);
+        assertEquals(HttpStatus.ACCEPTED, response.getStatus());
+        var job = awaitImport(response.body());
+        assertEquals(ImportJob.Status.DONE, job.status());
+        assertEquals(150, job.parsed());
+        assertEquals(150, job.inserted());
+        assertEquals(0, job.failed());
+        var count = manager.createQuery("SELECT COUNT(e) FROM Event e WHERE e.user.id = :userId", Long.class)
+            .setParameter("userId", user.id())
+            .getSingleResult();
+        assertEquals(150, count);
+    }
+
+    @Test
+    public void testImportFromStreamWithWrongLoginTokenFails() {
+        var exception = assertThrows(HttpClientResponseException.class, () -> client
+            .toBlocking()
+            .exchange(HttpRequest.POST("/import/stream", calendar(1))
+                .contentType("text/calendar")
+                .header("X-User-Id", user.id().toString())
+                .header("X-User-Token", UUID.randomUUID().toString()))
+        );
+        assertEquals(HttpStatus.UNAUTHORIZED, exception.getStatus());
+    }
+
+    @Test
+    public void testImportFromStreamMalformedFails() throws InterruptedException {
+        var job = client
+            .toBlocking()
+            .retrieve(HttpRequest.POST("/import/stream", "BEGIN:VCALENDAR\r\nBEGIN:VEVENT\r\nSUMMARY:x\r\n")
+                .contentType("text/calendar")
+                .header("X-User-Id", user.id().toString())
+                .header("X-User-Token", login.token().toString()), ImportJobDTO.class);
+        job = awaitImport(job);
+        assertEquals(ImportJob.Status.FAILED, job.status());
+        assertEquals("Malformed calendar", job.error());
+    }
+
+    @Test
+    public void testImportFromFile() throws InterruptedException {
+        var job = client
+            .toBlocking()
+            .retrieve(HttpRequest.POST("/import/file", Map.of(
+                "fileContent", calendar(3),
+                "userId", user.id(),
+                "token", login.token()
+            )), ImportJobDTO.class);
+        job = awaitImport(job);
+        assertEquals(ImportJob.Status.DONE, job.status());
+        assertEquals(3, job.inserted());
+    }
+
+    @Test
+    public void testImportTwiceSkipsDuplicates() throws InterruptedException {
+        var request = Map.of("fileContent", calendar(3), "userId", user.id(), "token", login.token());
+        awaitImport(client.toBlocking().retrieve(HttpRequest.POST("/import/file", request), ImportJobDTO.class));
+        var job = awaitImport(client.toBlocking().retrieve(HttpRequest.POST("/import/file", request), ImportJobDTO.class));
+        assertEquals(ImportJob.Status.DONE, job.status());
+        assertEquals(0, job.inserted());
+        assertEquals(3, job.duplicates());
+        var count = manager.createQuery("SELECT COUNT(e) FROM Event e WHERE e.user.id = :userId", Long.class)
+            .setParameter("userId", user.id())
+            .getSingleResult();
+        assertEquals(3, count);
+    }
+
+    @Test
+    public void testImportStatusOfOtherUserIsNotFound() {
+        var job = client
+            .toBlocking()
+            .retrieve(HttpRequest.POST("/import/stream", calendar(1))
+                .contentType("text/calendar")
+                .header("X-User-Id", user.id().toString())
+                .header("X-User-Token", login.token().toString()), ImportJobDTO.class);
+        var otherUser = new User(UUID.randomUUID().toString(), hasher.hash("password"));
+        manager.persist(otherUser);
+        var otherLogin = new Login(otherUser, LocalDateTime.now());
+        manager.persist(otherLogin);
+        manager.getTransaction().commit();
+        manager.getTransaction().begin();
+        var exception = assertThrows(HttpClientResponseException.class, () -> client
+            .toBlocking()
+            .exchange(HttpRequest.POST("/import/status/" + job.id(), new LoginSessionDTO(otherUser.id(), otherLogin.token())))
+        );
+        assertEquals(HttpStatus.NOT_FOUND, exception.getStatus());
+    }
+
+    @Test
+    public void testImportSkipsInvalidEvents() throws InterruptedException {
+        var invalid = "BEGIN:VEVENT\r\nSUMMARY:invalid\r\nDTSTART:20210601T110000Z\r\nDTEND:20210601T100000Z\r\nEND:VEVENT\r\n";
+        var ics = calendar(120).replace("END:VCALENDAR", invalid + invalid + "END:VCALENDAR");
+        var job = client
+            .toBlocking()
+            .retrieve(HttpRequest.POST("/import/stream", ics)
+                .contentType("text/calendar")
+                .header("X-User-Id", user.id().toString())
+                .header("X-User-Token", login.token().toString()), ImportJobDTO.class);
+        job = awaitImport(job);
+        assertEquals(ImportJob.Status.DONE, job.status());
+        assertEquals(122, job.parsed());
+        assertEquals(120, job.inserted());
+        assertEquals(2, job.failed());
+    }
+
+    @Test
+    public void testImportFromUnchangedURLIsNotDownloadedAgain() throws IOException, InterruptedException {
+        var body = calendar(2).getBytes(StandardCharsets.UTF_8);
+        var downloads = new AtomicInteger();
+        var server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/feed.ics", exchange -> {
+            exchange.getResponseHeaders().add("ETag", "\"v1\"");
+            if ("\"v1\"".equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                exchange.sendResponseHeaders(304, -1);
+                exchange.close();
+                return;
+            }
+            downloads.incrementAndGet();
+            exchange.sendResponseHeaders(200, body.length);
+            try (var out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        try {
+            var url = "http://localhost:" + server.getAddress().getPort() + "/feed.ics";
+            var request = Map.of("url", url, "userId", user.id(), "token", login.token());
+            var job = awaitImport(client.toBlocking().retrieve(HttpRequest.POST("/import/url", request), ImportJobDTO.class));
+            assertEquals(ImportJob.Status.DONE, job.status());
+            assertEquals(2, job.inserted());
+            job = awaitImport(client.toBlocking().retrieve(HttpRequest.POST("/import/url", request), ImportJobDTO.class));
+            assertEquals(ImportJob.Status.DONE, job.status());
+            assertEquals(0, job.parsed());
+            assertEquals(1, downloads.get());
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void testImportFromInvalidURLFails() {
+        var exception = assertThrows(HttpClientResponseException.class, () -> client
+            .toBlocking()
+            .exchange(HttpRequest.POST("/import/url", Map.of("url", "file:///etc/passwd", "userId", user.id(), "token", login.token())))
+        );
+        assertEquals(HttpStatus.BAD_REQUEST, exception.getStatus());
+    }
 }
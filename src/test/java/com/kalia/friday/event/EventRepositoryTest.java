@@ -3,11 +3,14 @@ package com.kalia.friday.event;
 import com.kalia.friday.TestDbProperties;
 import com.kalia.friday.login.Login;
 import com.kalia.friday.user.User;
+import com.kalia.friday.util.PasswordHasher;
 import com.kalia.friday.util.RepositoryResponse;
-import com.kalia.friday.util.SHA512Hasher;
+import io.micronaut.context.annotation.Property;
 import io.micronaut.test.annotation.TransactionMode;
 import io.micronaut.test.extensions.junit5.annotation.MicronautTest;
 import jakarta.inject.Inject;
+import org.hibernate.SessionFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -15,17 +18,21 @@ import org.junit.jupiter.api.TestInstance;
 
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
+import java.lang.management.ManagementFactory;
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
 
 @MicronautTest(transactionMode = TransactionMode.SINGLE_TRANSACTION)
 @TestInstance(TestInstance.Lifecycle.PER_CLASS)
 @TestDbProperties
+@Property(name = "jpa.default.properties.hibernate.generate_statistics", value = "true")
 public class EventRepositoryTest {
 
     @Inject
@@ -36,10 +43,17 @@ public class EventRepositoryTest {
     private EntityManager manager;
 
     @Inject
-    private SHA512Hasher hasher;
+    private PasswordHasher hasher;
+
+    @Inject
+    private SessionFactory sessionFactory;
+
+    @Inject
+    private OccurrenceCache occurrenceCache;
 
     private User user;
     private Login login;
+    private LocalDateTime importStart;
 
     @BeforeEach
     public void setupUserAndLogin() {
@@ -50,6 +64,7 @@ public class EventRepositoryTest {
         manager.persist(login);
         manager.getTransaction().commit();
         manager.getTransaction().begin();
+        importStart = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS); // the same for every import of a test
     }
 
     @AfterEach
@@ -157,6 +172,233 @@ public class EventRepositoryTest {
         assertEquals(RepositoryResponse.Status.UNAUTHORIZED, response.status());
     }
 
+    @Test
+    public void testAuthenticatedFindResponsesByUserId() {
+        var events = insert10Events();
+        var response = repository.authenticatedFindResponsesByUserId(user.id(), login.token());
+        assertEquals(RepositoryResponse.Status.OK, response.status());
+        assertEquals(
+            events.stream().map(Event::toEventResponseDTO).map(EventResponseDTO::id).collect(Collectors.toSet()),
+            response.get().stream().map(EventResponseDTO::id).collect(Collectors.toSet())
+        );
+        response = repository.authenticatedFindResponsesByUserId(user.id(), UUID.randomUUID());
+        assertEquals(RepositoryResponse.Status.UNAUTHORIZED, response.status());
+    }
+
+    @Test
+    public void testFindResponsesByUserIdIsCachedUntilWrite() {
+        insert10Events();
+        manager.getTransaction().commit();
+        manager.getTransaction().begin();
+        // forgets the inserts, which could share the timestamp of the cached results and make them stale at once
+        sessionFactory.unwrap(SessionFactoryImplementor.class).getCache().getTimestampsCache().getRegion().clear();
+        var statistics = sessionFactory.getStatistics();
+        var puts = statistics.getQueryCachePutCount();
+        assertEquals(10, repository.authenticatedFindResponsesByUserId(user.id(), login.token()).get().size());
+        assertEquals(puts + 1, statistics.getQueryCachePutCount());
+        var hits = statistics.getQueryCacheHitCount();
+        assertEquals(10, repository.authenticatedFindResponsesByUserId(user.id(), login.token()).get().size());
+        assertEquals(hits + 1, statistics.getQueryCacheHitCount());
+        repository.authenticatedSave(user.id(), login.token(), "title", null, null, null, LocalDateTime.now(), null, null, null);
+        assertEquals(11, repository.authenticatedFindResponsesByUserId(user.id(), login.token()).get().size());
+        manager.getTransaction().commit();
+        manager.getTransaction().begin();
+        assertEquals(11, repository.authenticatedFindResponsesByUserId(user.id(), login.token()).get().size());
+        assertEquals(hits + 1, statistics.getQueryCacheHitCount());
+    }
+
+    @Test
+    public void testFindOccurrencesInRangeIsCachedUntilWrite() {
+        var start = LocalDateTime.of(2021, 11, 1, 18, 30); // monday
+        var november = LocalDateTime.of(2021, 11, 1, 0, 0);
+        var december = november.plusMonths(1);
+        var january = december.plusMonths(1);
+        var weekly = repository.authenticatedSave(
+            user.id(), login.token(), "weekly", null, null, "FREQ=WEEKLY", start, null, null, start.plusHours(1)
+        ).get();
+        var response = repository.authenticatedFindOccurrencesInRange(user.id(), login.token(), november, december);
+        assertEquals(RepositoryResponse.Status.OK, response.status());
+        assertEquals(5, response.get().get(0).starts().size());
+        repository.authenticatedFindOccurrencesInRange(user.id(), login.token(), december, january);
+        var hits = occurrenceCache.stats().hits();
+        assertSame(response.get(), repository.authenticatedFindOccurrencesInRange(user.id(), login.token(), november, december).get());
+        // an event in december leaves november cached
+        var party = repository.authenticatedSave(
+            user.id(), login.token(), "party", null, null, null, LocalDateTime.of(2021, 12, 24, 20, 0), null, null, null
+        ).get();
+        repository.authenticatedFindOccurrencesInRange(user.id(), login.token(), november, december);
+        assertEquals(2, repository.authenticatedFindOccurrencesInRange(user.id(), login.token(), december, january).get().size());
+        assertEquals(hits + 2, occurrenceCache.stats().hits());
+        // moving the weekly event to january invalidates the ranges where it was
+        repository.authenticatedUpdate(
+            weekly.id(), user.id(), login.token(), "weekly", null, null, "FREQ=WEEKLY", january, null, null, null
+        );
+        assertTrue(repository.authenticatedFindOccurrencesInRange(user.id(), login.token(), november, december).get().isEmpty());
+        manager.flush();
+        manager.clear(); // the user still holds the saved events
+        repository.authenticatedDeleteById(party.id(), user.id(), login.token());
+        assertTrue(repository.authenticatedFindOccurrencesInRange(user.id(), login.token(), december, january).get().isEmpty());
+        assertEquals(hits + 2, occurrenceCache.stats().hits());
+        response = repository.authenticatedFindOccurrencesInRange(user.id(), UUID.randomUUID(), november, december);
+        assertEquals(RepositoryResponse.Status.UNAUTHORIZED, response.status());
+    }
+
+    @Test
+    public void testProjectionAllocatesLessThanEntities() {
+        var start = LocalDateTime.now();
+        for (var i = 0; i < 10_000; i++) {
+            manager.persist(Event.createEvent(user, "title", "description", "place", null, start.plusHours(i), null, null, null));
+        }
+        manager.flush();
+        manager.getTransaction().commit();
+        manager.clear();
+        manager.getTransaction().begin();
+        var threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        var threadId = Thread.currentThread().getId();
+        Runnable entities = () -> repository.authenticatedFindByUserId(user.id(), login.token())
+            .get()
+            .stream()
+            .map(Event::toEventResponseDTO)
+            .toList();
+        Runnable projection = () -> repository.authenticatedFindResponsesByUserId(user.id(), login.token()).get();
+        entities.run(); // warm up
+        projection.run();
+        var before = threads.getThreadAllocatedBytes(threadId);
+        entities.run();
+        var entitiesBytes = threads.getThreadAllocatedBytes(threadId) - before;
+        before = threads.getThreadAllocatedBytes(threadId);
+        projection.run();
+        var projectionBytes = threads.getThreadAllocatedBytes(threadId) - before;
+        assertTrue(projectionBytes < entitiesBytes, projectionBytes + " bytes >= " + entitiesBytes + " bytes");
+    }
+
+    @Test
+    public void testAuthenticatedFindPageByUserId() {
+        var start = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+        var events = new ArrayList<Event>();
+        for (var i = 0; i < 10; i++) { // several events share the same start date
+            var event = Event.createEvent(user, "title", null, null, null, start.plusDays(i / 3), null, null, null);
+            events.add(event);
+            manager.persist(event);
+        }
+        manager.flush();
+        manager.getTransaction().commit();
+        manager.getTransaction().begin();
+        var ids = new ArrayList<UUID>();
+        LocalDateTime afterStart = null;
+        UUID afterId = null;
+        for (var i = 0; i < 4; i++) {
+            var response = repository.authenticatedFindPageByUserId(user.id(), login.token(), afterStart, afterId, 3);
+            assertEquals(RepositoryResponse.Status.OK, response.status());
+            var page = response.get();
+            assertEquals(i < 3 ? 3 : 1, page.size());
+            page.forEach(e -> ids.add(e.id()));
+            afterStart = page.get(page.size() - 1).start();
+            afterId = page.get(page.size() - 1).id();
+        }
+        assertEquals(events.size(), ids.size());
+        assertEquals(events.stream().map(Event::id).collect(Collectors.toSet()), Set.copyOf(ids));
+    }
+
+    @Test
+    public void testAuthenticatedFindPageByUserIdWrongToken() {
+        var response = repository.authenticatedFindPageByUserId(user.id(), UUID.randomUUID(), null, null, 3);
+        assertEquals(RepositoryResponse.Status.UNAUTHORIZED, response.status());
+    }
+
+    @Test
+    public void testAuthenticatedStreamByUserId() {
+        var events = insert10Events();
+        var response = repository.authenticatedStreamByUserId(user.id(), login.token());
+        assertEquals(RepositoryResponse.Status.OK, response.status());
+        try (var stream = response.get()) {
+            assertEquals(events.stream().map(Event::id).collect(Collectors.toSet()), stream.map(EventResponseDTO::id).collect(Collectors.toSet()));
+        }
+    }
+
+    @Test
+    public void testAuthenticatedFindNext() {
+        var time = LocalDateTime.now().plusMinutes(1).truncatedTo(ChronoUnit.SECONDS);
+        var past = Event.createEvent(user, "past", null, null, null, time.minusDays(1), null, null, null);
+        var later = Event.createEvent(user, "later", null, null, null, time.plusDays(3), null, null, null);
+        var weekly = Event.createEvent(user, "weekly", null, null, "FREQ=WEEKLY", time.minusDays(5), null, null, null);
+        manager.persist(past);
+        manager.persist(later);
+        manager.persist(weekly);
+        manager.flush();
+        manager.getTransaction().commit();
+        manager.getTransaction().begin();
+        var response = repository.authenticatedFindNext(user.id(), login.token(), time);
+        assertEquals(RepositoryResponse.Status.OK, response.status());
+        assertEquals(weekly.id(), response.get().id()); // next occurrence in 2 days
+        response = repository.authenticatedFindNext(user.id(), login.token(), time.plusDays(2).plusMinutes(1));
+        assertEquals(later.id(), response.get().id()); // weekly occurrence has passed
+        assertEquals(time.plusDays(9), manager.find(Event.class, weekly.id()).nextOccurrence());
+    }
+
+    @Test
+    public void testAuthenticatedFindNextNotFound() {
+        insertEvent();
+        var response = repository.authenticatedFindNext(user.id(), login.token(), LocalDateTime.now().plusDays(1));
+        assertEquals(RepositoryResponse.Status.NOT_FOUND, response.status());
+    }
+
+    @Test
+    public void testAuthenticatedFindNextWrongToken() {
+        var response = repository.authenticatedFindNext(user.id(), UUID.randomUUID(), LocalDateTime.now());
+        assertEquals(RepositoryResponse.Status.UNAUTHORIZED, response.status());
+    }
+
+    @Test
+    public void testAdvanceNextOccurrences() {
+        var start = LocalDateTime.now().plusMinutes(1).truncatedTo(ChronoUnit.SECONDS);
+        var event = Event.createEvent(user, "daily", null, null, "FREQ=DAILY", start, null, null, null);
+        manager.persist(event);
+        manager.flush();
+        manager.getTransaction().commit();
+        manager.getTransaction().begin();
+        assertEquals(1, repository.advanceNextOccurrences(start.plusHours(1)));
+        assertEquals(0, repository.advanceNextOccurrences(start.plusHours(2)));
+        assertEquals(start.plusDays(1), manager.find(Event.class, event.id()).nextOccurrence());
+    }
+
+    @Test
+    public void testAdvanceNextOccurrencesSkipsInvalidRules() {
+        var start = LocalDateTime.now().plusMinutes(1).truncatedTo(ChronoUnit.SECONDS);
+        var invalid = Event.createEvent(user, "invalid", null, null, "FREQ=DAILY", start, null, null, null);
+        var valid = Event.createEvent(user, "valid", null, null, "FREQ=DAILY", start, null, null, null);
+        manager.persist(invalid);
+        manager.persist(valid);
+        manager.flush();
+        manager.createQuery("UPDATE Event e SET e.recurRuleParts = 'FREQ=NEVER' WHERE e.id = :id")
+            .setParameter("id", invalid.id())
+            .executeUpdate();
+        manager.clear();
+        manager.getTransaction().commit();
+        manager.getTransaction().begin();
+        assertEquals(1, repository.advanceNextOccurrences(start.plusHours(1)));
+        manager.clear();
+        assertEquals(start, manager.find(Event.class, invalid.id()).nextOccurrence());
+        assertEquals(start.plusDays(1), manager.find(Event.class, valid.id()).nextOccurrence());
+    }
+
+    @Test
+    public void testComputeMissingNextOccurrencesInBatches() {
+        var now = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+        for (int i = 0; i < 250; i++) { // more than two batches, half of them never occurring again
+            var rule = i % 2 == 0 ? "FREQ=DAILY" : "FREQ=DAILY;COUNT=1";
+            manager.persist(Event.createEvent(user, "event " + i, null, null, rule, now.minusDays(2), null, null, null));
+        }
+        manager.flush();
+        manager.createQuery("UPDATE Event e SET e.nextOccurrence = NULL").executeUpdate();
+        assertEquals(250, repository.computeMissingNextOccurrences(now));
+        manager.flush();
+        manager.clear();
+        var computed = manager.createQuery("SELECT COUNT(e) FROM Event e WHERE e.nextOccurrence IS NOT NULL", Long.class)
+            .getSingleResult();
+        assertEquals(125, computed);
+    }
+
     @Test
     public void testAuthenticatedSave() {
         var response = repository.authenticatedSave(
@@ -180,6 +422,24 @@ public class EventRepositoryTest {
         assertEquals(event.startDate().truncatedTo(ChronoUnit.SECONDS), fetched.startDate().truncatedTo(ChronoUnit.SECONDS));
     }
 
+    @Test
+    public void testAuthenticatedSaveValidatesTheStoredRule() {
+        var start = LocalDateTime.of(2021, 11, 1, 18, 30);
+        for (var rule : List.of("FREQ=DAILY;COUNT=01", "FREQ=DAILY;X-A=1;X-A=2", "RRULE:FREQ=DAILY")) {
+            assertThrows(IllegalArgumentException.class, () -> repository.authenticatedSave(
+                user.id(), login.token(), "title", null, null, rule, start, null, null, null
+            ), rule);
+        }
+        var saved = repository.authenticatedSave(
+            user.id(), login.token(), "title", null, null, "FREQ=DAILY;COUNT=2;X-A=1", start, null, null, null
+        ).get();
+        manager.flush();
+        manager.clear();
+        var fetched = repository.authenticatedFindById(saved.id(), user.id(), login.token()).get();
+        assertEquals("FREQ=DAILY;COUNT=2;X-A=1", fetched.recurRuleParts());
+        assertEquals(List.of(start, start.plusDays(1)), fetched.occurrencesBetween(start, start.plusDays(7)));
+    }
+
     @Test
     public void testAuthenticatedSaveWrongUserId() {
         var response = repository.authenticatedSave(
@@ -322,4 +582,80 @@ public class EventRepositoryTest {
         );
         assertEquals(RepositoryResponse.Status.UNAUTHORIZED, response.status());
     }
+
+    private List<EventDTO> eventDTOs(int count, UUID token) {
+        var events = new ArrayList<EventDTO>();
+        for (int i = 0; i < count; i++) {
+            events.add(new EventDTO(
+                user.id(), token, "title " + i, null, null, i % 2 == 0 ? "FREQ=DAILY" : null,
+                importStart.plusHours(i), importStart.plusHours(i + 1), null, null
+            ));
+        }
+        return events;
+    }
+
+    @Test
+    public void testAuthenticatedEventListSave() {
+        var events = eventDTOs(250, login.token()); // more than two batches
+        assertEquals(RepositoryResponse.Status.OK, repository.authenticatedEventListSave(events).status());
+        var saved = manager.createQuery("SELECT e FROM Event e WHERE e.user.id = :userId", Event.class)
+            .setParameter("userId", user.id())
+            .getResultList();
+        assertEquals(250, saved.size());
+        assertEquals(125, saved.stream().filter(e -> e.recurRuleParts() != null).count());
+        assertTrue(saved.stream().allMatch(e -> e.nextOccurrence() != null));
+    }
+
+    @Test
+    public void testAuthenticatedEventListSaveSkipsDuplicates() {
+        var events = new ArrayList<>(eventDTOs(150, login.token()));
+        events.addAll(eventDTOs(3, login.token())); // duplicated in the same list
+        var response = repository.authenticatedEventListSave(events);
+        assertEquals(150, response.get());
+        assertEquals(0, repository.authenticatedEventListSave(eventDTOs(150, login.token())).get());
+        manager.flush();
+        manager.clear();
+        var count = manager.createQuery("SELECT COUNT(e) FROM Event e WHERE e.user.id = :userId", Long.class)
+            .setParameter("userId", user.id())
+            .getSingleResult();
+        assertEquals(150, count);
+    }
+
+    @Test
+    public void testAuthenticatedEventListSaveDuplicateCompletesDetails() {
+        var start = LocalDateTime.of(2021, 6, 1, 10, 0);
+        var event = new EventDTO(user.id(), login.token(), "title", null, null, null, start, null, null, null);
+        repository.authenticatedEventListSave(List.of(event));
+        var duplicate = new EventDTO(user.id(), login.token(), "title", "description", "place", null, start, null, 1.0, 2.0);
+        assertEquals(0, repository.authenticatedEventListSave(List.of(duplicate)).get());
+        manager.flush();
+        manager.clear();
+        var saved = manager.createQuery("SELECT e FROM Event e WHERE e.user.id = :userId", Event.class)
+            .setParameter("userId", user.id())
+            .getSingleResult();
+        assertEquals("description", saved.description());
+        assertEquals("place", saved.place());
+        assertEquals(1.0, saved.latitude());
+    }
+
+    @Test
+    public void testComputeMissingFingerprints() {
+        repository.authenticatedEventListSave(eventDTOs(150, login.token()));
+        manager.createQuery("UPDATE Event e SET e.fingerprint = NULL").executeUpdate();
+        assertEquals(150, repository.computeMissingFingerprints());
+        manager.flush();
+        manager.clear();
+        var missing = manager.createQuery("SELECT COUNT(e) FROM Event e WHERE e.fingerprint IS NULL", Long.class)
+            .getSingleResult();
+        assertEquals(0, missing);
+    }
+
+    @Test
+    public void testAuthenticatedEventListSaveWrongToken() {
+        var events = new ArrayList<>(eventDTOs(2, login.token()));
+        events.addAll(eventDTOs(1, UUID.randomUUID()));
+        assertEquals(RepositoryResponse.Status.UNAUTHORIZED, repository.authenticatedEventListSave(events).status());
+        var count = manager.createQuery("SELECT COUNT(e) FROM Event e", Long.class).getSingleResult();
+        assertEquals(0, count);
+    }
 }
@@ -0,0 +1,166 @@
+package com.kalia.friday.event;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class FeedFetcherTest {
+    private static final String CONTENT = "BEGIN:VCALENDAR\r\nEND:VCALENDAR\r\n";
+    private static final String ETAG = "\"v1\"";
+    private static final String LAST_MODIFIED = "Tue, 01 Jun 2021 10:00:00 GMT";
+
+    private final List<String> conditions = new ArrayList<>();
+    private final AtomicInteger notModified = new AtomicInteger();
+    private HttpServer server;
+    private FeedFetcher fetcher;
+
+    @BeforeEach
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/etag", exchange -> {
+            var condition = exchange.getRequestHeaders().getFirst("If-None-Match");
+            synchronized (conditions) {
+                conditions.add(condition);
+            }
+            exchange.getResponseHeaders().add("ETag", ETAG);
+            if (ETAG.equals(condition)) {
+                notModified.incrementAndGet();
+                exchange.sendResponseHeaders(304, -1);
+                exchange.close();
+                return;
+            }
+            var gzip = "gzip".equals(exchange.getRequestHeaders().getFirst("Accept-Encoding"));
+            var body = CONTENT.getBytes(StandardCharsets.UTF_8);
+            if (gzip) {
+                var compressed = new ByteArrayOutputStream();
+                try (var out = new GZIPOutputStream(compressed)) {
+                    out.write(body);
+                }
+                body = compressed.toByteArray();
+                exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+            }
+            exchange.sendResponseHeaders(200, body.length);
+            try (var out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.createContext("/modified", exchange -> {
+            var condition = exchange.getRequestHeaders().getFirst("If-Modified-Since");
+            synchronized (conditions) {
+                conditions.add(condition);
+            }
+            exchange.getResponseHeaders().add("Last-Modified", LAST_MODIFIED);
+            if (LAST_MODIFIED.equals(condition)) {
+                notModified.incrementAndGet();
+                exchange.sendResponseHeaders(304, -1);
+                exchange.close();
+                return;
+            }
+            var body = CONTENT.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (var out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.createContext("/missing", exchange -> {
+            exchange.sendResponseHeaders(404, -1);
+            exchange.close();
+        });
+        server.start();
+        fetcher = new FeedFetcher(HttpClient.newHttpClient(), Duration.ofSeconds(5));
+    }
+
+    @AfterEach
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://localhost:" + server.getAddress().getPort() + path);
+    }
+
+    private static String read(FeedFetcher.Feed feed) throws IOException {
+        try (var reader = new BufferedReader(feed.reader())) {
+            return reader.lines().collect(Collectors.joining("\r\n", "", "\r\n"));
+        }
+    }
+
+    @Test
+    public void testFetchDecompressesGzip() throws IOException, InterruptedException {
+        var feed = fetcher.fetch(UUID.randomUUID(), uri("/etag")).orElseThrow();
+        assertEquals(CONTENT, read(feed));
+    }
+
+    @Test
+    public void testUnchangedFeedIsNotModified() throws IOException, InterruptedException {
+        var userId = UUID.randomUUID();
+        var feed = fetcher.fetch(userId, uri("/etag")).orElseThrow();
+        read(feed);
+        feed.remember();
+        assertTrue(fetcher.fetch(userId, uri("/etag")).isEmpty());
+        assertEquals(1, notModified.get());
+        assertEquals(ETAG, conditions.get(1));
+    }
+
+    @Test
+    public void testUnchangedFeedIsNotModifiedByLastModified() throws IOException, InterruptedException {
+        var userId = UUID.randomUUID();
+        var feed = fetcher.fetch(userId, uri("/modified")).orElseThrow();
+        read(feed);
+        feed.remember();
+        assertTrue(fetcher.fetch(userId, uri("/modified")).isEmpty());
+        assertEquals(1, notModified.get());
+    }
+
+    @Test
+    public void testValidatorsAreOnlyKeptOnceImported() throws IOException, InterruptedException {
+        var userId = UUID.randomUUID();
+        read(fetcher.fetch(userId, uri("/etag")).orElseThrow()); // import failed, not remembered
+        assertEquals(CONTENT, read(fetcher.fetch(userId, uri("/etag")).orElseThrow()));
+        assertNull(conditions.get(1));
+        assertEquals(0, notModified.get());
+    }
+
+    @Test
+    public void testValidatorsArePerUser() throws IOException, InterruptedException {
+        var feed = fetcher.fetch(UUID.randomUUID(), uri("/etag")).orElseThrow();
+        read(feed);
+        feed.remember();
+        assertEquals(CONTENT, read(fetcher.fetch(UUID.randomUUID(), uri("/etag")).orElseThrow()));
+        assertEquals(0, notModified.get());
+    }
+
+    @Test
+    public void testErrorStatusThrows() {
+        assertThrows(IOException.class, () -> fetcher.fetch(UUID.randomUUID(), uri("/missing")));
+    }
+
+    @Test
+    public void testFeedURI() {
+        assertEquals(URI.create("https://example.com/a.ics"), FeedFetcher.feedURI("https://example.com/a.ics"));
+        assertThrows(NullPointerException.class, () -> FeedFetcher.feedURI(null));
+        assertThrows(IllegalArgumentException.class, () -> FeedFetcher.feedURI("file:///etc/passwd"));
+        assertThrows(IllegalArgumentException.class, () -> FeedFetcher.feedURI("not a url"));
+    }
+}
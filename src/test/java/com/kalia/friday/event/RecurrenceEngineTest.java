@@ -0,0 +1,216 @@
+package com.kalia.friday.event;
+
+import com.kalia.friday.util.BiweeklyUtils;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.TimeZone;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class RecurrenceEngineTest {
+
+    private static CompiledRecurrence compile(String rule) {
+        return CompiledRecurrence.of(BiweeklyUtils.recurrenceRuleFromString(rule).getValue());
+    }
+
+    private static Optional<LocalDateTime> next(LocalDateTime start, String rule, LocalDateTime time) {
+        return RecurrenceEngine.nextOccurrence(start, rule == null ? null : compile(rule), time);
+    }
+
+    @Test
+    public void testNotRecurringEvent() {
+        var start = LocalDateTime.of(2021, 5, 10, 9, 0);
+        assertEquals(Optional.of(start), next(start, null, start.minusDays(1)));
+        assertEquals(Optional.empty(), next(start, null, start.plusMinutes(1)));
+    }
+
+    @Test
+    public void testOldDailyEvent() {
+        var start = LocalDateTime.of(2010, 1, 1, 9, 0);
+        assertEquals(
+            Optional.of(LocalDateTime.of(2021, 6, 16, 9, 0)),
+            next(start, "FREQ=DAILY", LocalDateTime.of(2021, 6, 15, 10, 0))
+        );
+        assertEquals(
+            Optional.of(LocalDateTime.of(2021, 6, 15, 9, 0)),
+            next(start, "FREQ=DAILY", LocalDateTime.of(2021, 6, 15, 9, 0))
+        );
+    }
+
+    @Test
+    public void testDailyWithInterval() {
+        var start = LocalDateTime.of(2021, 1, 1, 9, 0);
+        assertEquals(
+            Optional.of(LocalDateTime.of(2021, 1, 7, 9, 0)),
+            next(start, "FREQ=DAILY;INTERVAL=3", LocalDateTime.of(2021, 1, 5, 0, 0))
+        );
+    }
+
+    @Test
+    public void testDailyWithIntervalAndByDay() {
+        var start = LocalDateTime.of(2019, 3, 31, 8, 15); // sunday
+        assertEquals(
+            Optional.of(LocalDateTime.of(2019, 4, 8, 8, 15)), // every 4 days, only on sundays and mondays
+            next(start, "FREQ=DAILY;INTERVAL=4;BYDAY=SU,MO", LocalDateTime.of(2019, 3, 31, 9, 0))
+        );
+    }
+
+    @Test
+    public void testWeeklyByDay() {
+        var start = LocalDateTime.of(2021, 11, 1, 18, 30); // monday
+        assertEquals(
+            Optional.of(LocalDateTime.of(2021, 11, 19, 18, 30)),
+            next(start, "FREQ=WEEKLY;BYDAY=MO,WE,FR", LocalDateTime.of(2021, 11, 17, 19, 0))
+        );
+    }
+
+    @Test
+    public void testMonthlySkipsShortMonths() {
+        var start = LocalDateTime.of(2021, 1, 31, 12, 0);
+        assertEquals(
+            Optional.of(LocalDateTime.of(2021, 3, 31, 12, 0)),
+            next(start, "FREQ=MONTHLY", LocalDateTime.of(2021, 2, 1, 0, 0))
+        );
+    }
+
+    @Test
+    public void testMonthlyLastFriday() {
+        var start = LocalDateTime.of(2021, 1, 29, 17, 0);
+        assertEquals(
+            Optional.of(LocalDateTime.of(2021, 4, 30, 17, 0)),
+            next(start, "FREQ=MONTHLY;BYDAY=-1FR", LocalDateTime.of(2021, 3, 27, 0, 0))
+        );
+    }
+
+    @Test
+    public void testUntil() {
+        var start = LocalDateTime.of(2021, 1, 1, 9, 0);
+        assertEquals(Optional.empty(), next(start, "FREQ=DAILY;UNTIL=20210109", LocalDateTime.of(2021, 1, 10, 0, 0)));
+        assertEquals(Optional.empty(), next(start, "FREQ=WEEKLY;UNTIL=20210110", LocalDateTime.of(2021, 1, 9, 0, 0)));
+        assertEquals(
+            Optional.of(LocalDateTime.of(2021, 1, 8, 9, 0)),
+            next(start, "FREQ=WEEKLY;UNTIL=20210110", LocalDateTime.of(2021, 1, 2, 0, 0))
+        );
+    }
+
+    @Test
+    public void testCount() {
+        var start = LocalDateTime.of(2021, 1, 1, 9, 0);
+        assertEquals(
+            Optional.of(LocalDateTime.of(2021, 1, 10, 9, 0)),
+            next(start, "FREQ=DAILY;COUNT=10", LocalDateTime.of(2021, 1, 9, 10, 0))
+        );
+        assertEquals(Optional.empty(), next(start, "FREQ=DAILY;COUNT=10", LocalDateTime.of(2021, 1, 10, 10, 0)));
+    }
+
+    @Test
+    public void testOccurrences() {
+        var start = LocalDateTime.of(2021, 11, 1, 18, 30); // monday
+        var rule = compile("FREQ=WEEKLY;BYDAY=MO,FR;COUNT=5");
+        assertEquals(
+            List.of(LocalDateTime.of(2021, 11, 12, 18, 30), LocalDateTime.of(2021, 11, 15, 18, 30)),
+            RecurrenceEngine.occurrences(start, rule, LocalDateTime.of(2021, 11, 9, 0, 0), LocalDateTime.of(2021, 12, 1, 0, 0))
+        );
+        assertEquals(List.of(start), RecurrenceEngine.occurrences(start, null, start, start.plusDays(1)));
+        assertEquals(List.of(), RecurrenceEngine.occurrences(start, null, start.plusDays(1), start.plusDays(2)));
+    }
+
+    @Test
+    public void testSameResultsAsBiweekly() {
+        var start = LocalDateTime.of(2019, 3, 31, 8, 15);
+        var rules = List.of(
+            "FREQ=DAILY",
+            "FREQ=DAILY;BYDAY=SU,MO",
+            "FREQ=WEEKLY;INTERVAL=2;BYDAY=SU,TU,TH",
+            "FREQ=WEEKLY;COUNT=25;BYDAY=SU,SA",
+            "FREQ=MONTHLY;BYMONTHDAY=-1,15",
+            "FREQ=MONTHLY;INTERVAL=5",
+            "FREQ=MONTHLY;COUNT=12;BYDAY=-1SU",
+            "FREQ=YEARLY;INTERVAL=2"
+        );
+        for (var rule : rules) {
+            var compiled = compile(rule);
+            for (var time = start.plusHours(1); time.isBefore(start.plusYears(3)); time = time.plusHours(37)) {
+                assertEquals(biweeklyNext(start, compiled, time), RecurrenceEngine.nextOccurrence(start, compiled, time), rule + " at " + time);
+                var to = time.plusDays(45);
+                assertEquals(biweeklyBetween(start, compiled, time, to), RecurrenceEngine.occurrences(start, compiled, time, to), rule + " from " + time);
+            }
+        }
+    }
+
+    @Test
+    public void testMonthlyCountSameResultsAsBiweekly() {
+        var start = LocalDateTime.of(2020, 1, 31, 7, 45);
+        var rules = List.of(
+            "FREQ=MONTHLY;COUNT=7",
+            "FREQ=MONTHLY;INTERVAL=2;COUNT=9;BYMONTHDAY=-1,15",
+            "FREQ=MONTHLY;COUNT=20;BYDAY=2TU,-1FR"
+        );
+        for (var rule : rules) {
+            assertSameResultsAsBiweekly(start, rule, start.plusYears(4));
+        }
+    }
+
+    @Test
+    public void testStartNotMatchingTheRule() {
+        var start = LocalDateTime.of(2021, 11, 1, 18, 30); // monday
+        var rule = compile("FREQ=WEEKLY;BYDAY=TU,TH;COUNT=4");
+        assertEquals(Optional.of(LocalDateTime.of(2021, 11, 2, 18, 30)), RecurrenceEngine.nextOccurrence(start, rule, start));
+        assertEquals(
+            List.of(
+                LocalDateTime.of(2021, 11, 2, 18, 30),
+                LocalDateTime.of(2021, 11, 4, 18, 30),
+                LocalDateTime.of(2021, 11, 9, 18, 30),
+                LocalDateTime.of(2021, 11, 11, 18, 30)
+            ),
+            RecurrenceEngine.occurrences(start, rule, start, start.plusMonths(1))
+        );
+        var rules = List.of(
+            "FREQ=DAILY;COUNT=5;BYDAY=TU,TH",
+            "FREQ=WEEKLY;COUNT=5;BYDAY=TU,TH",
+            "FREQ=MONTHLY;COUNT=5;BYDAY=-1FR",
+            "FREQ=MONTHLY;COUNT=5;BYMONTHDAY=15,-1"
+        );
+        for (var other : rules) {
+            assertSameResultsAsBiweekly(start, other, start.plusYears(1));
+        }
+    }
+
+    private static void assertSameResultsAsBiweekly(LocalDateTime start, String rule, LocalDateTime end) {
+        var compiled = compile(rule);
+        for (var time = start.minusDays(2); time.isBefore(end); time = time.plusHours(37)) {
+            assertEquals(biweeklyNext(start, compiled, time), RecurrenceEngine.nextOccurrence(start, compiled, time), rule + " at " + time);
+            var to = time.plusDays(45);
+            assertEquals(biweeklyBetween(start, compiled, time, to), RecurrenceEngine.occurrences(start, compiled, time, to), rule + " from " + time);
+        }
+        assertEquals(biweeklyBetween(start, compiled, start, end), RecurrenceEngine.occurrences(start, compiled, start, end), rule);
+    }
+
+    private static Optional<LocalDateTime> biweeklyNext(LocalDateTime start, CompiledRecurrence rule, LocalDateTime time) {
+        var zone = ZoneId.systemDefault();
+        var iterator = rule.source().getDateIterator(Date.from(start.atZone(zone).toInstant()), TimeZone.getTimeZone(zone));
+        while (iterator.hasNext()) {
+            var next = iterator.next().toInstant().atZone(zone).toLocalDateTime();
+            if (!next.isBefore(time)) return Optional.of(next);
+        }
+        return Optional.empty();
+    }
+
+    private static List<LocalDateTime> biweeklyBetween(LocalDateTime start, CompiledRecurrence rule, LocalDateTime from, LocalDateTime to) {
+        var zone = ZoneId.systemDefault();
+        var iterator = rule.source().getDateIterator(Date.from(start.atZone(zone).toInstant()), TimeZone.getTimeZone(zone));
+        var result = new ArrayList<LocalDateTime>();
+        while (iterator.hasNext()) {
+            var next = iterator.next().toInstant().atZone(zone).toLocalDateTime();
+            if (!next.isBefore(to)) break;
+            if (!next.isBefore(from)) result.add(next);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,191 @@
+package com.kalia.friday.feed;
+
+import com.kalia.friday.TestDbProperties;
+import com.kalia.friday.login.Login;
+import com.kalia.friday.login.LoginSessionDTO;
+import com.kalia.friday.user.User;
+import com.kalia.friday.util.PasswordHasher;
+import com.sun.net.httpserver.HttpServer;
+import io.micronaut.core.type.Argument;
+import io.micronaut.http.HttpRequest;
+import io.micronaut.http.HttpStatus;
+import io.micronaut.http.client.HttpClient;
+import io.micronaut.http.client.annotation.Client;
+import io.micronaut.http.client.exceptions.HttpClientResponseException;
+import io.micronaut.test.annotation.TransactionMode;
+import io.micronaut.test.extensions.junit5.annotation.MicronautTest;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@MicronautTest(transactionMode = TransactionMode.SINGLE_TRANSACTION)
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+@TestDbProperties
+public class FeedControllerTest {
+    private static final String CALENDAR = "BEGIN:VCALENDAR\r\nVERSION:2.0\r\nBEGIN:VEVENT\r\nUID:1\r\nSUMMARY:one\r\n" +
+        "DTSTART:20210601T100000Z\r\nEND:VEVENT\r\nEND:VCALENDAR\r\n";
+
+    @Client("/api/feed")
+    @Inject
+    private HttpClient client;
+
+    @Inject
+    @PersistenceContext
+    private EntityManager manager;
+
+    @Inject
+    private PasswordHasher hasher;
+
+    private HttpServer server;
+    private String url;
+    private User user;
+    private Login login;
+
+    @BeforeAll
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/feed.ics", exchange -> {
+            exchange.getResponseHeaders().add("ETag", "\"v1\"");
+            if ("\"v1\"".equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                exchange.sendResponseHeaders(304, -1);
+                exchange.close();
+                return;
+            }
+            var body = CALENDAR.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (var out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        url = "http://localhost:" + server.getAddress().getPort() + "/feed.ics";
+    }
+
+    @AfterAll
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    @BeforeEach
+    public void setupUserAndLogin() {
+        user = new User(UUID.randomUUID().toString(), hasher.hash("password"));
+        manager.persist(user);
+        login = new Login(user, LocalDateTime.now());
+        manager.persist(login);
+        manager.getTransaction().commit();
+        manager.getTransaction().begin();
+    }
+
+    @AfterEach
+    public void clear() {
+        manager.createQuery("DELETE FROM Event e").executeUpdate();
+        manager.createQuery("DELETE FROM FeedSubscription s").executeUpdate();
+        manager.createQuery("DELETE FROM Login l").executeUpdate();
+        manager.createQuery("DELETE FROM User u").executeUpdate();
+    }
+
+    private FeedSubscriptionDTO subscribe() {
+        var response = client
+            .toBlocking()
+            .exchange(HttpRequest.POST("/subscribe", Map.of("url", url, "userId", user.id(), "token", login.token())),
+                FeedSubscriptionDTO.class);
+        assertEquals(HttpStatus.CREATED, response.getStatus());
+        return response.body();
+    }
+
+    private FeedSubscriptionDTO awaitFirstSync() throws InterruptedException {
+        var session = new LoginSessionDTO(user.id(), login.token());
+        for (var i = 0; i < 100; i++) {
+            var subscriptions = client
+                .toBlocking()
+                .retrieve(HttpRequest.POST("/all", session), Argument.listOf(FeedSubscriptionDTO.class));
+            if (subscriptions.get(0).lastSync() != null) return subscriptions.get(0);
+            Thread.sleep(100);
+        }
+        throw new AssertionError("Feed not synchronized.");
+    }
+
+    @Test
+    public void testSubscribeSynchronizesFeed() throws InterruptedException {
+        var subscription = subscribe();
+        assertEquals(url, subscription.url());
+        var synced = awaitFirstSync();
+        assertEquals(subscription.id(), synced.id());
+        var count = manager.createQuery("SELECT COUNT(e) FROM Event e WHERE e.user.id = :userId", Long.class)
+            .setParameter("userId", user.id())
+            .getSingleResult();
+        assertEquals(1, count);
+    }
+
+    @Test
+    public void testSubscribeTwiceConflicts() throws InterruptedException {
+        subscribe();
+        awaitFirstSync();
+        var exception = assertThrows(HttpClientResponseException.class, this::subscribe);
+        assertEquals(HttpStatus.CONFLICT, exception.getStatus());
+    }
+
+    @Test
+    public void testSubscribeInvalidURLFails() {
+        var exception = assertThrows(HttpClientResponseException.class, () -> client
+            .toBlocking()
+            .exchange(HttpRequest.POST("/subscribe", Map.of("url", "file:///etc/passwd", "userId", user.id(), "token", login.token())))
+        );
+        assertEquals(HttpStatus.BAD_REQUEST, exception.getStatus());
+    }
+
+    @Test
+    public void testSyncUnchangedFeed() throws InterruptedException {
+        var subscription = subscribe();
+        awaitFirstSync();
+        var result = client
+            .toBlocking()
+            .retrieve(HttpRequest.POST("/sync/" + subscription.id(), new LoginSessionDTO(user.id(), login.token())),
+                FeedSyncDTO.class);
+        assertEquals(new FeedSyncDTO(true, 0, 0, 0, 0, 0, null), result);
+    }
+
+    @Test
+    public void testSyncWithWrongLoginTokenFails() throws InterruptedException {
+        var subscription = subscribe();
+        awaitFirstSync();
+        var exception = assertThrows(HttpClientResponseException.class, () -> client
+            .toBlocking()
+            .exchange(HttpRequest.POST("/sync/" + subscription.id(), new LoginSessionDTO(user.id(), UUID.randomUUID())))
+        );
+        assertEquals(HttpStatus.UNAUTHORIZED, exception.getStatus());
+    }
+
+    @Test
+    public void testDelete() throws InterruptedException {
+        var subscription = subscribe();
+        awaitFirstSync();
+        var response = client
+            .toBlocking()
+            .exchange(HttpRequest.DELETE("/delete/" + subscription.id(), new LoginSessionDTO(user.id(), login.token())));
+        assertEquals(HttpStatus.NO_CONTENT, response.getStatus());
+        manager.clear();
+        var count = manager.createQuery("SELECT COUNT(e) FROM Event e WHERE e.user.id = :userId", Long.class)
+            .setParameter("userId", user.id())
+            .getSingleResult();
+        assertEquals(0, count);
+        assertNotNull(response.getHeaders().get("Location"));
+    }
+}
@@ -0,0 +1,164 @@
+package com.kalia.friday.feed;
+
+import com.kalia.friday.TestDbProperties;
+import com.kalia.friday.event.Event;
+import com.kalia.friday.event.EventDTO;
+import com.kalia.friday.login.Login;
+import com.kalia.friday.user.User;
+import com.kalia.friday.user.UserRepository;
+import com.kalia.friday.util.PasswordHasher;
+import com.kalia.friday.util.RepositoryResponse;
+import io.micronaut.test.annotation.TransactionMode;
+import io.micronaut.test.extensions.junit5.annotation.MicronautTest;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@MicronautTest(transactionMode = TransactionMode.SINGLE_TRANSACTION)
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+@TestDbProperties
+public class FeedSubscriptionRepositoryTest {
+    private static final String URL = "https://example.com/feed.ics";
+
+    @Inject
+    private FeedSubscriptionRepository repository;
+
+    @Inject
+    private UserRepository userRepository;
+
+    @Inject
+    @PersistenceContext
+    private EntityManager manager;
+
+    @Inject
+    private PasswordHasher hasher;
+
+    private User user;
+    private Login login;
+
+    @BeforeEach
+    public void setupUserAndLogin() {
+        user = new User(UUID.randomUUID().toString(), hasher.hash("password"));
+        manager.persist(user);
+        login = new Login(user, LocalDateTime.now());
+        manager.persist(login);
+        manager.getTransaction().commit();
+        manager.getTransaction().begin();
+    }
+
+    @AfterEach
+    public void clear() {
+        manager.createQuery("DELETE FROM Event e").executeUpdate();
+        manager.createQuery("DELETE FROM FeedSubscription s").executeUpdate();
+        manager.createQuery("DELETE FROM Login l").executeUpdate();
+        manager.createQuery("DELETE FROM User u").executeUpdate();
+    }
+
+    private static FeedEvent feedEvent(String uid, int sequence, String title) {
+        var event = new EventDTO(null, null, title, null, null, null, LocalDateTime.of(2021, 6, 1, 10, 0), null, null, null);
+        return FeedEvent.of(uid, null, sequence, null, event);
+    }
+
+    @Test
+    public void testSubscribe() {
+        var response = repository.authenticatedSubscribe(user.id(), login.token(), URL);
+        assertEquals(RepositoryResponse.Status.OK, response.status());
+        var subscriptions = repository.authenticatedFindByUserId(user.id(), login.token()).get();
+        assertEquals(1, subscriptions.size());
+        assertEquals(URL, subscriptions.get(0).url());
+        assertEquals(response.get().id(), subscriptions.get(0).id());
+    }
+
+    @Test
+    public void testSubscribeTwiceConflicts() {
+        repository.authenticatedSubscribe(user.id(), login.token(), URL);
+        var response = repository.authenticatedSubscribe(user.id(), login.token(), URL);
+        assertEquals(RepositoryResponse.Status.CONFLICT, response.status());
+    }
+
+    @Test
+    public void testSubscribeWrongTokenFails() {
+        var response = repository.authenticatedSubscribe(user.id(), UUID.randomUUID(), URL);
+        assertEquals(RepositoryResponse.Status.UNAUTHORIZED, response.status());
+    }
+
+    @Test
+    public void testSubscribeTooLongURLFails() {
+        var url = URL + "?" + "x".repeat(FeedSubscription.MAX_URL_LENGTH);
+        assertThrows(IllegalArgumentException.class, () -> repository.authenticatedSubscribe(user.id(), login.token(), url));
+    }
+
+    @Test
+    public void testApplyChanges() {
+        var id = repository.authenticatedSubscribe(user.id(), login.token(), URL).get().id();
+        repository.applyChanges(id, List.of(feedEvent("a", 0, "a"), feedEvent("b", 0, "b")), Map.of(), List.of());
+        var versions = repository.eventVersions(id);
+        assertEquals(2, versions.size());
+        var a = versions.get("a").eventId();
+        var b = versions.get("b").eventId();
+        repository.applyChanges(id, List.of(), Map.of(a, feedEvent("a", 1, "a bis")), List.of(b));
+        versions = repository.eventVersions(id);
+        assertEquals(Map.of("a", new FeedSubscriptionRepository.EventVersion(a, "1/")), versions);
+        assertEquals("a bis", manager.find(Event.class, a).title());
+    }
+
+    @Test
+    public void testUnsubscribeDeletesEvents() {
+        var id = repository.authenticatedSubscribe(user.id(), login.token(), URL).get().id();
+        repository.applyChanges(id, List.of(feedEvent("a", 0, "a")), Map.of(), List.of());
+        var response = repository.authenticatedUnsubscribe(id, user.id(), login.token());
+        assertEquals(RepositoryResponse.Status.OK, response.status());
+        manager.flush();
+        manager.clear();
+        assertTrue(repository.findById(id).isEmpty());
+        assertTrue(repository.eventVersions(id).isEmpty());
+    }
+
+    @Test
+    public void testUnsubscribeOtherUserIsNotFound() {
+        var id = repository.authenticatedSubscribe(user.id(), login.token(), URL).get().id();
+        var other = new User(UUID.randomUUID().toString(), hasher.hash("password"));
+        manager.persist(other);
+        var otherLogin = new Login(other, LocalDateTime.now());
+        manager.persist(otherLogin);
+        var response = repository.authenticatedUnsubscribe(id, other.id(), otherLogin.token());
+        assertEquals(RepositoryResponse.Status.NOT_FOUND, response.status());
+    }
+
+    @Test
+    public void testFindIdsSyncedBefore() {
+        var never = repository.authenticatedSubscribe(user.id(), login.token(), URL).get().id();
+        var old = repository.authenticatedSubscribe(user.id(), login.token(), URL + "?old").get().id();
+        var recent = repository.authenticatedSubscribe(user.id(), login.token(), URL + "?recent").get().id();
+        var now = LocalDateTime.now();
+        repository.markSynced(old, now.minusHours(2), null, null, null);
+        repository.markSynced(recent, now, "\"v1\"", null, null);
+        assertEquals(List.of(never, old), repository.findIdsSyncedBefore(now.minusHours(1)));
+    }
+
+    @Test
+    public void testDeleteUserDeletesSubscriptions() {
+        var id = repository.authenticatedSubscribe(user.id(), login.token(), URL).get().id();
+        repository.applyChanges(id, List.of(feedEvent("a", 0, "a")), Map.of(), List.of());
+        manager.getTransaction().commit();
+        manager.getTransaction().begin();
+        manager.clear();
+        assertEquals(RepositoryResponse.Status.OK, userRepository.deleteById(user.id(), "password").status());
+        manager.flush();
+        manager.clear();
+        assertTrue(repository.findById(id).isEmpty());
+    }
+}
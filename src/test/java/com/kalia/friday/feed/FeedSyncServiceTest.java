@@ -0,0 +1,218 @@
+package com.kalia.friday.feed;
+
+import com.kalia.friday.TestDbProperties;
+import com.kalia.friday.event.Event;
+import com.kalia.friday.login.Login;
+import com.kalia.friday.user.User;
+import com.kalia.friday.util.PasswordHasher;
+import com.sun.net.httpserver.HttpServer;
+import io.micronaut.test.annotation.TransactionMode;
+import io.micronaut.test.extensions.junit5.annotation.MicronautTest;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@MicronautTest(transactionMode = TransactionMode.SINGLE_TRANSACTION)
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+@TestDbProperties
+public class FeedSyncServiceTest {
+
+    @Inject
+    private FeedSyncService service;
+
+    @Inject
+    private FeedSubscriptionRepository repository;
+
+    @Inject
+    @PersistenceContext
+    private EntityManager manager;
+
+    @Inject
+    private PasswordHasher hasher;
+
+    private final AtomicInteger downloads = new AtomicInteger();
+    private HttpServer server;
+    private volatile String content;
+    private volatile String etag;
+    private volatile int status;
+    private User user;
+    private Login login;
+
+    @BeforeAll
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/feed.ics", exchange -> {
+            if (etag != null) exchange.getResponseHeaders().add("ETag", etag);
+            if (etag != null && etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                exchange.sendResponseHeaders(304, -1);
+                exchange.close();
+                return;
+            }
+            downloads.incrementAndGet();
+            var body = content.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(status, body.length);
+            try (var out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+    }
+
+    @AfterAll
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    @BeforeEach
+    public void setupUserAndLogin() {
+        user = new User(UUID.randomUUID().toString(), hasher.hash("password"));
+        manager.persist(user);
+        login = new Login(user, LocalDateTime.now());
+        manager.persist(login);
+        manager.getTransaction().commit();
+        manager.getTransaction().begin();
+        downloads.set(0);
+        etag = null;
+        status = 200;
+    }
+
+    @AfterEach
+    public void clear() {
+        manager.createQuery("DELETE FROM Event e").executeUpdate();
+        manager.createQuery("DELETE FROM FeedSubscription s").executeUpdate();
+        manager.createQuery("DELETE FROM Login l").executeUpdate();
+        manager.createQuery("DELETE FROM User u").executeUpdate();
+    }
+
+    private FeedSubscription subscribe() {
+        var url = "http://localhost:" + server.getAddress().getPort() + "/feed.ics";
+        var subscription = repository.authenticatedSubscribe(user.id(), login.token(), url).get();
+        manager.getTransaction().commit();
+        manager.getTransaction().begin();
+        return subscription;
+    }
+
+    private FeedSyncDTO sync(FeedSubscription subscription) {
+        var result = service.authenticatedSync(subscription.id(), user.id(), login.token()).get();
+        manager.flush();
+        manager.clear();
+        return result;
+    }
+
+    private static String event(int uid, int sequence, String title) {
+        return "BEGIN:VEVENT\r\nUID:" + uid + "\r\nSEQUENCE:" + sequence + "\r\nSUMMARY:" + title +
+            "\r\nDTSTART:20210601T100000Z\r\nDTEND:20210601T110000Z\r\nEND:VEVENT\r\n";
+    }
+
+    private static String calendar(String... events) {
+        return "BEGIN:VCALENDAR\r\nVERSION:2.0\r\nPRODID:test\r\n" + String.join("", events) + "END:VCALENDAR\r\n";
+    }
+
+    private long countEvents() {
+        return manager.createQuery("SELECT COUNT(e) FROM Event e WHERE e.user.id = :userId", Long.class)
+            .setParameter("userId", user.id())
+            .getSingleResult();
+    }
+
+    @Test
+    public void testSyncAppliesOnlyChanges() {
+        var subscription = subscribe();
+        content = calendar(event(1, 0, "one"), event(2, 0, "two"), event(3, 0, "three"));
+        assertEquals(new FeedSyncDTO(false, 3, 0, 0, 0, 0, null), sync(subscription));
+        assertEquals(3, countEvents());
+        var unchangedId = repository.eventVersions(subscription.id()).get("1").eventId();
+
+        content = calendar(event(1, 0, "one"), event(2, 1, "two bis"), event(4, 0, "four"));
+        assertEquals(new FeedSyncDTO(false, 1, 1, 1, 1, 0, null), sync(subscription));
+        assertEquals(3, countEvents());
+        var versions = repository.eventVersions(subscription.id());
+        assertEquals(unchangedId, versions.get("1").eventId()); // left as it was
+        assertEquals("two bis", manager.find(Event.class, versions.get("2").eventId()).title());
+        assertFalse(versions.containsKey("3"));
+        assertTrue(versions.containsKey("4"));
+    }
+
+    @Test
+    public void testSyncLeavesOtherEventsAlone() {
+        var manual = Event.createEvent(user, "manual", null, null, null, LocalDateTime.now(), null, null, null);
+        manager.persist(manual);
+        manager.getTransaction().commit();
+        manager.getTransaction().begin();
+        var subscription = subscribe();
+        content = calendar(event(1, 0, "one"));
+        sync(subscription);
+        content = calendar();
+        assertEquals(new FeedSyncDTO(false, 0, 0, 1, 0, 0, null), sync(subscription));
+        assertEquals(1, countEvents());
+        assertNotNull(manager.find(Event.class, manual.id()));
+    }
+
+    @Test
+    public void testUnchangedFeedIsNotModified() {
+        var subscription = subscribe();
+        content = calendar(event(1, 0, "one"));
+        etag = "\"v1\"";
+        sync(subscription);
+        assertEquals(new FeedSyncDTO(true, 0, 0, 0, 0, 0, null), sync(subscription));
+        assertEquals(1, downloads.get());
+        var synced = repository.findById(subscription.id()).orElseThrow();
+        assertEquals("\"v1\"", synced.etag());
+        assertNotNull(synced.lastSync());
+    }
+
+    @Test
+    public void testSyncWithoutVersionComparesContent() {
+        var subscription = subscribe();
+        var event = "BEGIN:VEVENT\r\nUID:1\r\nSUMMARY:%s\r\nDTSTART:20210601T100000Z\r\nEND:VEVENT\r\n";
+        content = calendar(event.formatted("one"));
+        sync(subscription);
+        assertEquals(new FeedSyncDTO(false, 0, 0, 0, 1, 0, null), sync(subscription));
+        content = calendar(event.formatted("one bis"));
+        assertEquals(new FeedSyncDTO(false, 0, 1, 0, 0, 0, null), sync(subscription));
+    }
+
+    @Test
+    public void testSyncSkipsInvalidAndDuplicatedEvents() {
+        var subscription = subscribe();
+        var invalid = "BEGIN:VEVENT\r\nUID:5\r\nSUMMARY:invalid\r\n" +
+            "DTSTART:20210601T110000Z\r\nDTEND:20210601T100000Z\r\nEND:VEVENT\r\n";
+        content = calendar(event(1, 0, "one"), event(1, 0, "one again"), invalid);
+        assertEquals(new FeedSyncDTO(false, 1, 0, 0, 0, 2, null), sync(subscription));
+        assertEquals(1, countEvents());
+    }
+
+    @Test
+    public void testFailedSyncIsRecorded() {
+        var subscription = subscribe();
+        content = calendar(event(1, 0, "one"));
+        etag = "\"v1\"";
+        sync(subscription);
+        etag = null;
+        status = 500;
+        var result = sync(subscription);
+        assertNotNull(result.error());
+        assertEquals(1, countEvents());
+        var failed = repository.findById(subscription.id()).orElseThrow();
+        assertNotNull(failed.lastError());
+        assertNull(failed.etag()); // downloaded again next time
+    }
+}
@@ -1,17 +1,85 @@
 package com.kalia.friday.googlecalendar;
 
+import com.google.api.client.auth.oauth2.BearerToken;
+import com.google.api.client.auth.oauth2.ClientParametersAuthentication;
+import com.google.api.client.auth.oauth2.Credential;
+import com.google.api.client.http.javanet.NetHttpTransport;
+import com.google.api.client.json.gson.GsonFactory;
+import com.sun.net.httpserver.HttpServer;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
 import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
 import java.security.GeneralSecurityException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public final class GoogleCalendarTest {
 
     @Test
     public void testGoogleCalendarWithUnknownUser() throws GeneralSecurityException, IOException {
-        var response = new GoogleCalendar().getCalendar("foo");
-        Assertions.assertEquals(GoogleCalendar.GoogleCalendarRequestResponse.Status.AUTH_REQUIRED, response.status());
+        Assertions.assertTrue(new GoogleCalendar().authenticationURL("foo").isPresent());
     }
 
+    private static HttpServer tokenServer(int status, String body, AtomicInteger requests) throws IOException {
+        var server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/token", exchange -> {
+            requests.incrementAndGet();
+            var bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json; charset=UTF-8");
+            exchange.sendResponseHeaders(status, bytes.length);
+            try (var out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        });
+        server.start();
+        return server;
+    }
+
+    private static Credential credential(HttpServer server, long expiresInSeconds) {
+        return new Credential.Builder(BearerToken.authorizationHeaderAccessMethod())
+            .setTransport(new NetHttpTransport())
+            .setJsonFactory(GsonFactory.getDefaultInstance())
+            .setTokenServerEncodedUrl("http://localhost:" + server.getAddress().getPort() + "/token")
+            .setClientAuthentication(new ClientParametersAuthentication("client", "secret"))
+            .build()
+            .setAccessToken("old")
+            .setRefreshToken("refresh")
+            .setExpiresInSeconds(expiresInSeconds);
+    }
+
+    @Test
+    public void testExpiringCredentialIsRefreshed() throws IOException {
+        var requests = new AtomicInteger();
+        var server = tokenServer(200, "{\"access_token\":\"new\",\"expires_in\":3600,\"token_type\":\"Bearer\"}", requests);
+        try {
+            var googleCalendar = new GoogleCalendar();
+            var expiring = credential(server, 30);
+            var valid = credential(server, 3600);
+            googleCalendar.cacheCredential("expiring", expiring);
+            googleCalendar.cacheCredential("valid", valid);
+            googleCalendar.refreshExpiringCredentials();
+            Assertions.assertEquals(1, requests.get());
+            Assertions.assertEquals("new", expiring.getAccessToken());
+            Assertions.assertEquals("old", valid.getAccessToken());
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void testRevokedCredentialIsForgotten() throws IOException {
+        var requests = new AtomicInteger();
+        var server = tokenServer(400, "{\"error\":\"invalid_grant\"}", requests);
+        try {
+            var googleCalendar = new GoogleCalendar();
+            googleCalendar.cacheCredential("revoked", credential(server, 30));
+            googleCalendar.refreshExpiringCredentials();
+            googleCalendar.refreshExpiringCredentials();
+            Assertions.assertEquals(1, requests.get());
+        } finally {
+            server.stop(0);
+        }
+    }
 }
@@ -0,0 +1,284 @@
+package com.kalia.friday.googlecalendar;
+
+import com.google.api.client.http.javanet.NetHttpTransport;
+import com.google.api.client.json.gson.GsonFactory;
+import com.google.api.services.calendar.Calendar;
+import com.kalia.friday.TestDbProperties;
+import com.kalia.friday.event.ImportJobService;
+import com.kalia.friday.feed.FeedSubscription;
+import com.kalia.friday.feed.FeedSyncDTO;
+import com.kalia.friday.user.User;
+import com.kalia.friday.util.PasswordHasher;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micronaut.test.annotation.TransactionMode;
+import io.micronaut.test.extensions.junit5.annotation.MicronautTest;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@MicronautTest(transactionMode = TransactionMode.SINGLE_TRANSACTION)
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+@TestDbProperties
+public class GoogleSyncServiceTest {
+    private static final String GOOGLE_ID = "foo.example@gmail.com";
+    private static final int PAGE_SIZE = 2;
+
+    @Inject
+    private GoogleSyncService syncService;
+
+    @Inject
+    @PersistenceContext
+    private EntityManager manager;
+
+    @Inject
+    private PasswordHasher hasher;
+
+    private final Map<String, List<String>> calendars = new ConcurrentHashMap<>();
+    private final Map<String, List<String>> changes = new ConcurrentHashMap<>();
+    private final Set<String> expiredTokens = ConcurrentHashMap.newKeySet();
+    private final Set<String> failing = ConcurrentHashMap.newKeySet();
+    private final List<String> receivedTokens = new CopyOnWriteArrayList<>();
+    private HttpServer server;
+    private ExecutorService worker;
+    private Calendar service;
+    private User user;
+
+    @BeforeAll
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/calendar/v3/users/me/calendarList", exchange -> {
+            var ids = List.copyOf(new TreeSet<>(calendars.keySet()));
+            var items = ids.stream().map(id -> "{\"id\":\"" + id + "\"}").toList();
+            page(exchange, items, null);
+        });
+        server.createContext("/calendar/v3/calendars/", exchange -> {
+            var calendarId = exchange.getRequestURI().getPath().split("/")[4];
+            var syncToken = query(exchange).get("syncToken");
+            if (failing.contains(calendarId)) {
+                send(exchange, 500, "{\"error\":{\"code\":500,\"message\":\"Backend Error\"}}");
+            } else if (syncToken == null) {
+                page(exchange, calendars.get(calendarId), "token-" + calendarId);
+            } else if (expiredTokens.contains(syncToken)) {
+                send(exchange, 410, "{\"error\":{\"code\":410,\"message\":\"Sync token is no longer valid\"}}");
+            } else {
+                receivedTokens.add(syncToken);
+                page(exchange, changes.getOrDefault(calendarId, List.of()), syncToken + "+");
+            }
+        });
+        server.start();
+        service = new Calendar.Builder(new NetHttpTransport(), GsonFactory.getDefaultInstance(), null)
+            .setRootUrl("http://localhost:" + server.getAddress().getPort() + "/")
+            .setApplicationName("test")
+            .build();
+        worker = Executors.newSingleThreadExecutor();
+    }
+
+    @AfterAll
+    public void stopServer() {
+        server.stop(0);
+        worker.shutdownNow();
+    }
+
+    @BeforeEach
+    public void setupUser() {
+        user = new User(UUID.randomUUID().toString(), hasher.hash("password"));
+        manager.persist(user);
+        manager.getTransaction().commit();
+        manager.getTransaction().begin();
+        calendars.clear();
+        changes.clear();
+        expiredTokens.clear();
+        failing.clear();
+        receivedTokens.clear();
+    }
+
+    @AfterEach
+    public void clear() {
+        manager.createQuery("DELETE FROM Event e").executeUpdate();
+        manager.createQuery("DELETE FROM FeedSubscription s").executeUpdate();
+        manager.createQuery("DELETE FROM User u").executeUpdate();
+    }
+
+    private static Map<String, String> query(HttpExchange exchange) {
+        var parameters = new HashMap<String, String>();
+        var query = exchange.getRequestURI().getRawQuery();
+        if (query == null) return parameters;
+        for (var parameter : query.split("&")) {
+            var pair = parameter.split("=", 2);
+            parameters.put(pair[0], URLDecoder.decode(pair[1], StandardCharsets.UTF_8));
+        }
+        return parameters;
+    }
+
+    /**
+     * Sends a page of items, with the next page token, or the next sync token on the last page.
+     */
+    private static void page(HttpExchange exchange, List<String> items, String nextSyncToken) throws IOException {
+        var pageToken = query(exchange).get("pageToken");
+        var from = pageToken == null ? 0 : Integer.parseInt(pageToken);
+        var to = Math.min(from + PAGE_SIZE, items.size());
+        var body = new StringBuilder("{\"items\":[").append(String.join(",", items.subList(from, to))).append(']');
+        if (to < items.size()) {
+            body.append(",\"nextPageToken\":\"").append(to).append('"');
+        } else if (nextSyncToken != null) {
+            body.append(",\"nextSyncToken\":\"").append(nextSyncToken).append('"');
+        }
+        send(exchange, 200, body.append('}').toString());
+    }
+
+    private static void send(HttpExchange exchange, int status, String body) throws IOException {
+        var bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json; charset=UTF-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (var out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static String event(String id, int sequence, String title) {
+        return """
+            {"id":"%s","status":"confirmed","summary":"%s","sequence":%d,"updated":"2021-06-0%dT08:00:00.000Z",
+            "start":{"dateTime":"2021-06-01T10:00:00Z"},"end":{"dateTime":"2021-06-01T11:00:00Z"}}"""
+            .formatted(id, title, sequence, sequence + 1);
+    }
+
+    private static String cancelled(String id) {
+        return "{\"id\":\"" + id + "\",\"status\":\"cancelled\"}";
+    }
+
+    /**
+     * Synchronizes outside the test transaction, as an import job does.
+     */
+    private Map<String, FeedSyncDTO> sync(Progress progress) throws Exception {
+        try {
+            return worker.submit(() -> syncService.sync(service, user.id(), GOOGLE_ID, progress)).get();
+        } catch (ExecutionException e) {
+            throw (Exception) e.getCause();
+        } finally {
+            manager.clear();
+        }
+    }
+
+    private long countEvents() {
+        return manager.createQuery("SELECT COUNT(e) FROM Event e WHERE e.user.id = :userId", Long.class)
+            .setParameter("userId", user.id())
+            .getSingleResult();
+    }
+
+    private FeedSubscription subscription(String calendarId) {
+        return manager.createQuery("SELECT s FROM FeedSubscription s WHERE s.url = :url", FeedSubscription.class)
+            .setParameter("url", GoogleSyncService.KEY_PREFIX + GOOGLE_ID + "/" + calendarId)
+            .getSingleResult();
+    }
+
+    @Test
+    public void testFirstSyncReadsAllPagesOfAllCalendars() throws Exception {
+        calendars.put("one", List.of(event("a", 0, "A"), event("b", 0, "B"), event("c", 0, "C")));
+        calendars.put("two", List.of(event("d", 0, "D")));
+        calendars.put("three", List.of());
+        var progress = new Progress();
+        var results = sync(progress);
+        assertEquals(new FeedSyncDTO(false, 3, 0, 0, 0, 0, null), results.get("one"));
+        assertEquals(new FeedSyncDTO(false, 1, 0, 0, 0, 0, null), results.get("two"));
+        assertEquals(new FeedSyncDTO(false, 0, 0, 0, 0, 0, null), results.get("three"));
+        assertEquals(4, countEvents());
+        assertEquals(4, progress.inserted.get());
+        var subscription = subscription("one");
+        assertEquals(FeedSubscription.Kind.GOOGLE, subscription.kind());
+        assertEquals("token-one", subscription.syncToken());
+        assertNotNull(subscription.lastSync());
+    }
+
+    @Test
+    public void testNextSyncReadsOnlyChanges() throws Exception {
+        calendars.put("one", List.of(event("a", 0, "A"), event("b", 0, "B"), event("c", 0, "C")));
+        calendars.put("two", List.of(event("d", 0, "D")));
+        sync(new Progress());
+        changes.put("one", List.of(event("a", 1, "A bis"), cancelled("b"), event("e", 0, "E")));
+        var results = sync(new Progress());
+        assertEquals(Set.of("token-one", "token-two"), Set.copyOf(receivedTokens));
+        assertEquals(new FeedSyncDTO(false, 1, 1, 1, 0, 0, null), results.get("one"));
+        assertEquals(new FeedSyncDTO(false, 0, 0, 0, 0, 0, null), results.get("two"));
+        assertEquals(4, countEvents());
+        var titles = manager.createQuery("SELECT e.title FROM Event e WHERE e.user.id = :userId ORDER BY e.title",
+                String.class)
+            .setParameter("userId", user.id())
+            .getResultList();
+        assertEquals(List.of("A bis", "C", "D", "E"), titles);
+        assertEquals("token-one+", subscription("one").syncToken());
+    }
+
+    @Test
+    public void testExpiredSyncTokenReadsCalendarAgain() throws Exception {
+        calendars.put("one", List.of(event("a", 0, "A"), event("b", 0, "B"), event("c", 0, "C")));
+        sync(new Progress());
+        calendars.put("one", List.of(event("a", 0, "A"), event("c", 0, "C")));
+        expiredTokens.add("token-one");
+        var results = sync(new Progress());
+        assertEquals(new FeedSyncDTO(false, 0, 0, 1, 2, 0, null), results.get("one"));
+        assertEquals(2, countEvents());
+        assertEquals("token-one", subscription("one").syncToken());
+    }
+
+    @Test
+    public void testFailedCalendarIsRecorded() throws Exception {
+        calendars.put("one", List.of(event("a", 0, "A")));
+        calendars.put("two", List.of(event("b", 0, "B")));
+        failing.add("two");
+        assertThrows(IOException.class, () -> sync(new Progress()));
+        assertEquals(1, countEvents()); // the other calendars are synchronized
+        var failed = subscription("two");
+        assertNotNull(failed.lastError());
+        assertNull(failed.syncToken()); // read entirely next time
+        failing.clear();
+        var results = sync(new Progress());
+        assertEquals(new FeedSyncDTO(false, 1, 0, 0, 0, 0, null), results.get("two"));
+        assertEquals(2, countEvents());
+    }
+
+    private static final class Progress implements ImportJobService.Progress {
+        private final AtomicInteger inserted = new AtomicInteger();
+
+        @Override
+        public void parsed(int count) {
+        }
+
+        @Override
+        public void inserted(int count) {
+            inserted.addAndGet(count);
+        }
+
+        @Override
+        public void failed(int count) {
+        }
+    }
+}
@@ -3,7 +3,7 @@ package com.kalia.friday.login;
 import com.kalia.friday.TestDbProperties;
 import com.kalia.friday.user.User;
 import com.kalia.friday.user.UserCredsDTO;
-import com.kalia.friday.util.SHA512Hasher;
+import com.kalia.friday.util.PasswordHasher;
 import io.micronaut.http.HttpRequest;
 import io.micronaut.http.HttpStatus;
 import io.micronaut.http.client.HttpClient;
@@ -41,7 +41,7 @@ public class LoginControllerTest {
     private EntityManager manager;
 
     @Inject
-    private SHA512Hasher hasher;
+    private PasswordHasher hasher;
 
     private User user;
 
@@ -2,9 +2,11 @@ package com.kalia.friday.login;
 
 import com.kalia.friday.TestDbProperties;
 import com.kalia.friday.user.User;
+import com.kalia.friday.util.PasswordHasher;
 import com.kalia.friday.util.RepositoryResponse;
 import com.kalia.friday.util.SHA512Hasher;
 import io.micronaut.test.annotation.TransactionMode;
+import io.micronaut.transaction.TransactionOperations;
 import io.micronaut.test.extensions.junit5.annotation.MicronautTest;
 import jakarta.inject.Inject;
 import org.junit.jupiter.api.AfterEach;
@@ -14,12 +16,17 @@ import org.junit.jupiter.api.TestInstance;
 
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
+import java.sql.Connection;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -37,7 +44,16 @@ public class LoginRepositoryTest {
     private EntityManager manager;
 
     @Inject
-    private SHA512Hasher hasher;
+    private PasswordHasher hasher;
+
+    @Inject
+    private SHA512Hasher legacyHasher;
+
+    @Inject
+    private SessionCache sessionCache;
+
+    @Inject
+    private TransactionOperations<Connection> transactions;
 
     private User user;
 
@@ -113,6 +129,101 @@ public class LoginRepositoryTest {
         assertEquals(RepositoryResponse.Status.UNAUTHORIZED, response.status());
     }
 
+    @Test
+    public void testCheckIdentityCached() {
+        var login = insertLogin();
+        repository.checkIdentity(user.id(), login.token());
+        assertTrue(sessionCache.get(login.token(), LocalDateTime.now()).isPresent());
+        var response = repository.checkIdentity(user.id(), login.token());
+        assertEquals(RepositoryResponse.Status.OK, response.status());
+        assertEquals(login.token(), response.get().token());
+        assertEquals(user.id(), response.get().user().id());
+        response = repository.checkIdentity(UUID.randomUUID(), login.token());
+        assertEquals(RepositoryResponse.Status.UNAUTHORIZED, response.status());
+    }
+
+    @Test
+    public void testLogoutInvalidatesCachedSession() {
+        var login = insertLogin();
+        repository.checkIdentity(user.id(), login.token());
+        repository.logout(login.token());
+        var response = repository.checkIdentity(user.id(), login.token());
+        assertEquals(RepositoryResponse.Status.UNAUTHORIZED, response.status());
+    }
+
+    @Test
+    public void testCheckIdentityDuringLogoutIsNotCached() throws Exception {
+        var login = insertLogin();
+        var deleted = new CountDownLatch(1);
+        var checked = new CountDownLatch(1);
+        var executor = Executors.newFixedThreadPool(2);
+        try {
+            var logout = executor.submit(() -> transactions.executeWrite(status -> {
+                repository.logout(login.token());
+                manager.flush();
+                deleted.countDown();
+                checked.await(); // commits once the other thread has read the login
+                return null;
+            }));
+            deleted.await();
+            var during = executor.submit(() -> repository.checkIdentity(user.id(), login.token())).get();
+            assertEquals(RepositoryResponse.Status.OK, during.status()); // the deletion is not committed yet
+            checked.countDown();
+            logout.get();
+            var response = executor.submit(() -> repository.checkIdentity(user.id(), login.token())).get();
+            assertEquals(RepositoryResponse.Status.UNAUTHORIZED, response.status());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testLogoutAllInvalidatesCachedSessions() {
+        var login = insertLogin();
+        repository.checkIdentity(user.id(), login.token());
+        repository.logoutAll(user.id());
+        assertTrue(sessionCache.get(login.token(), LocalDateTime.now()).isEmpty());
+    }
+
+    @Test
+    public void testRefreshTokens() {
+        var login = insertLogin();
+        var other = insertLogin();
+        var time = LocalDateTime.of(2021, 6, 1, 12, 0);
+        assertEquals(1, repository.refreshTokens(List.of(login.token(), UUID.randomUUID()), time));
+        manager.clear();
+        assertEquals(time, manager.find(Login.class, new LoginId(login.token(), user)).lastRefresh());
+        assertNotEquals(time, manager.find(Login.class, new LoginId(other.token(), user)).lastRefresh());
+    }
+
+    @Test
+    public void testPurgeExpiredTokens() {
+        var now = LocalDateTime.now();
+        for (int i = 0; i < 5; i++) {
+            manager.persist(new Login(user, now.minusDays(8)));
+        }
+        var fresh = new Login(user, now);
+        manager.persist(fresh);
+        manager.flush();
+        assertEquals(3, repository.purgeExpiredTokens(now.minusDays(7), 3));
+        assertEquals(2, repository.purgeExpiredTokens(now.minusDays(7), 3));
+        assertEquals(0, repository.purgeExpiredTokens(now.minusDays(7), 3));
+        manager.clear();
+        var remaining = repository.allLogins().get();
+        assertEquals(1, remaining.size());
+        assertEquals(fresh.token(), remaining.get(0).token());
+    }
+
+    @Test
+    public void testPurgeExpiredTokensInvalidatesCachedSessions() {
+        var login = new Login(user, LocalDateTime.now().minusDays(8));
+        manager.persist(login);
+        manager.flush();
+        sessionCache.put(login.token(), new SessionCache.Session(user.id(), LocalDateTime.now(), login.lastRefresh()));
+        assertEquals(1, repository.purgeExpiredTokens(LocalDateTime.now().minusDays(7), 10));
+        assertTrue(sessionCache.get(login.token(), LocalDateTime.now()).isEmpty());
+    }
+
     @Test
     public void testLogin() {
         var response = repository.login(user.username(), "1234");
@@ -123,6 +234,22 @@ public class LoginRepositoryTest {
         assertEquals(login.token(), fetched.token());
     }
 
+    @Test
+    public void testLoginRehashesLegacyPassword() {
+        var legacyUser = new User(UUID.randomUUID().toString(), legacyHasher.hash("1234"));
+        manager.persist(legacyUser);
+        manager.flush();
+        manager.getTransaction().commit();
+        manager.getTransaction().begin();
+        assertTrue(hasher.needsRehash(legacyUser.password()));
+        assertEquals(RepositoryResponse.Status.OK, repository.login(legacyUser.username(), "1234").status());
+        manager.clear();
+        var fetched = manager.find(User.class, legacyUser.id());
+        assertFalse(hasher.needsRehash(fetched.password()));
+        assertTrue(hasher.verify("1234", fetched.password()));
+        assertEquals(RepositoryResponse.Status.OK, repository.login(legacyUser.username(), "1234").status());
+    }
+
     @Test
     public void testLoginWrongUser() {
         var response = repository.login("wrong", "1234");
@@ -0,0 +1,55 @@
+package com.kalia.friday.login;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SessionCacheTest {
+
+    @Test
+    public void testExpiration() {
+        var cache = new SessionCache();
+        var token = UUID.randomUUID();
+        var now = LocalDateTime.now();
+        cache.put(token, new SessionCache.Session(UUID.randomUUID(), now, now));
+        assertTrue(cache.get(token, now.plusDays(SessionManagerService.TOKEN_LIFETIME_IN_DAYS)).isPresent());
+        assertTrue(cache.get(token, now.plusDays(SessionManagerService.TOKEN_LIFETIME_IN_DAYS).plusSeconds(1)).isEmpty());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testInvalidateUser() {
+        var cache = new SessionCache();
+        var userId = UUID.randomUUID();
+        var now = LocalDateTime.now();
+        cache.put(UUID.randomUUID(), new SessionCache.Session(userId, now, now));
+        cache.put(UUID.randomUUID(), new SessionCache.Session(userId, now, now));
+        var other = UUID.randomUUID();
+        cache.put(other, new SessionCache.Session(UUID.randomUUID(), now, now));
+        cache.invalidateUser(userId);
+        assertEquals(1, cache.size());
+        assertTrue(cache.get(other, now).isPresent());
+    }
+
+    @Test
+    public void testPutAfterConcurrentInvalidationIsIgnored() {
+        var cache = new SessionCache();
+        var token = UUID.randomUUID();
+        var userId = UUID.randomUUID();
+        var now = LocalDateTime.now();
+        var generation = cache.generation(); // a check starts reading the login
+        cache.invalidate(token); // the logout completes
+        cache.put(token, new SessionCache.Session(userId, now, now), generation); // the check ends
+        assertTrue(cache.get(token, now).isEmpty());
+        generation = cache.generation();
+        cache.invalidateUser(userId); // the user is deleted
+        cache.put(token, new SessionCache.Session(userId, now, now), generation);
+        assertTrue(cache.get(token, now).isEmpty());
+        cache.put(token, new SessionCache.Session(userId, now, now), cache.generation());
+        assertTrue(cache.get(token, now).isPresent());
+    }
+}
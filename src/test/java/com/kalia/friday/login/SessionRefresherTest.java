@@ -0,0 +1,51 @@
+package com.kalia.friday.login;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SessionRefresherTest {
+
+    @Test
+    public void testIsStale() {
+        var refresher = new SessionRefresher(Duration.ofMinutes(1));
+        var time = LocalDateTime.of(2021, 6, 1, 12, 0);
+        assertFalse(refresher.isStale(time, time.plusSeconds(60)));
+        assertTrue(refresher.isStale(time, time.plusSeconds(61)));
+    }
+
+    @Test
+    public void testDrainGroupsByRoundedTime() {
+        var refresher = new SessionRefresher(Duration.ofMinutes(1));
+        var a = UUID.randomUUID();
+        var b = UUID.randomUUID();
+        var c = UUID.randomUUID();
+        var time = LocalDateTime.of(2021, 6, 1, 12, 0);
+        refresher.touch(a, time.plusSeconds(10));
+        refresher.touch(b, time.plusSeconds(50));
+        refresher.touch(c, time.plusSeconds(70));
+        refresher.touch(c, time.plusSeconds(65)); // older touch is ignored
+        var buckets = refresher.drain();
+        assertEquals(Map.of(time, List.of(a, b), time.plusMinutes(1), List.of(c)).keySet(), buckets.keySet());
+        assertEquals(2, buckets.get(time).size());
+        assertEquals(List.of(c), buckets.get(time.plusMinutes(1)));
+        assertEquals(0, refresher.pending());
+    }
+
+    @Test
+    public void testForget() {
+        var refresher = new SessionRefresher(Duration.ofMinutes(1));
+        var token = UUID.randomUUID();
+        refresher.touch(token, LocalDateTime.now());
+        refresher.forget(token);
+        assertTrue(refresher.drain().isEmpty());
+    }
+}
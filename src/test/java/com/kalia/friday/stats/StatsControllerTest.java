@@ -0,0 +1,124 @@
+package com.kalia.friday.stats;
+
+import com.kalia.friday.TestDbProperties;
+import com.kalia.friday.event.Event;
+import com.kalia.friday.event.OccurrenceCache;
+import com.kalia.friday.event.RecurrenceRuleCache;
+import com.kalia.friday.login.Login;
+import com.kalia.friday.login.LoginSessionDTO;
+import com.kalia.friday.user.User;
+import com.kalia.friday.util.BoundedCache;
+import com.kalia.friday.util.HashingExecutor;
+import com.kalia.friday.util.PasswordHasher;
+import io.micronaut.context.annotation.Property;
+import io.micronaut.http.HttpRequest;
+import io.micronaut.http.HttpStatus;
+import io.micronaut.http.client.HttpClient;
+import io.micronaut.http.client.annotation.Client;
+import io.micronaut.http.client.exceptions.HttpClientResponseException;
+import io.micronaut.test.annotation.TransactionMode;
+import io.micronaut.test.extensions.junit5.annotation.MicronautTest;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@MicronautTest(transactionMode = TransactionMode.SINGLE_TRANSACTION)
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+@TestDbProperties
+@Property(name = "jpa.default.properties.hibernate.generate_statistics", value = "true")
+public class StatsControllerTest {
+
+    @Inject
+    @Client("/api/stats")
+    private HttpClient client;
+
+    @Inject
+    @PersistenceContext
+    private EntityManager manager;
+
+    @Inject
+    private PasswordHasher hasher;
+
+    @Inject
+    private HashingExecutor hashingExecutor;
+
+    @Inject
+    private OccurrenceCache occurrenceCache;
+
+    private LoginSessionDTO session;
+
+    @BeforeEach
+    public void setupUserAndLogin() {
+        var user = new User(UUID.randomUUID().toString(), hasher.hash("password"));
+        manager.persist(user);
+        var login = new Login(user, LocalDateTime.now());
+        manager.persist(login);
+        manager.getTransaction().commit();
+        manager.getTransaction().begin();
+        session = new LoginSessionDTO(user.id(), login.token());
+    }
+
+    @AfterEach
+    public void clear() {
+        manager.createQuery("DELETE FROM Login l").executeUpdate();
+        manager.createQuery("DELETE FROM User u").executeUpdate();
+    }
+
+    @Test
+    public void testHashingStats() {
+        var stats = client.toBlocking().retrieve(HttpRequest.POST("/hashing", session), HashingExecutor.Stats.class);
+        assertNotNull(stats);
+        assertEquals(hashingExecutor.stats().threads(), stats.threads());
+        assertEquals(hashingExecutor.stats().queueCapacity(), stats.queueCapacity());
+    }
+
+    @Test
+    public void testCacheStats() {
+        var stats = client.toBlocking().retrieve(HttpRequest.POST("/cache", session), CacheStatsDTO.class);
+        assertNotNull(stats);
+        assertTrue(stats.regions().containsKey(Event.class.getName()));
+        assertTrue(stats.regions().containsKey(User.class.getName()));
+    }
+
+    @Test
+    public void testOccurrencesStats() {
+        var stats = client.toBlocking().retrieve(HttpRequest.POST("/occurrences", session), BoundedCache.Stats.class);
+        assertNotNull(stats);
+        assertEquals(occurrenceCache.stats().size(), stats.size());
+        var json = client.toBlocking().retrieve(HttpRequest.POST("/occurrences", session));
+        assertTrue(json.contains("\"hits\":") && json.contains("\"weight\":") && json.contains("\"hitRate\":"), json);
+    }
+
+    @Test
+    public void testRulesStats() {
+        RecurrenceRuleCache.compile("FREQ=WEEKLY;BYDAY=MO");
+        RecurrenceRuleCache.compile("FREQ=WEEKLY;BYDAY=MO");
+        var stats = client.toBlocking().retrieve(HttpRequest.POST("/rules", session), BoundedCache.Stats.class);
+        assertTrue(stats.hits() >= 1);
+        assertTrue(stats.size() >= 1);
+    }
+
+    @Test
+    public void testStatsWrongToken() {
+        var wrong = new LoginSessionDTO(session.userId(), UUID.randomUUID());
+        for (var path : new String[]{"/hashing", "/cache", "/occurrences", "/rules"}) {
+            var exception = assertThrows(
+                HttpClientResponseException.class,
+                () -> client.toBlocking().exchange(HttpRequest.POST(path, wrong))
+            );
+            assertEquals(HttpStatus.UNAUTHORIZED, exception.getStatus(), path);
+        }
+    }
+}
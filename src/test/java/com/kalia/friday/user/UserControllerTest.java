@@ -1,7 +1,7 @@
 package com.kalia.friday.user;
 
 import com.kalia.friday.TestDbProperties;
-import com.kalia.friday.util.SHA512Hasher;
+import com.kalia.friday.util.PasswordHasher;
 import io.micronaut.http.HttpRequest;
 import io.micronaut.http.HttpStatus;
 import io.micronaut.http.client.HttpClient;
@@ -22,6 +22,7 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @MicronautTest(transactionMode = TransactionMode.SINGLE_TRANSACTION)
 @TestInstance(TestInstance.Lifecycle.PER_CLASS)
@@ -37,7 +38,7 @@ public class UserControllerTest {
     private EntityManager manager;
 
     @Inject
-    private SHA512Hasher hasher;
+    private PasswordHasher hasher;
 
     private User user;
 
@@ -65,7 +66,7 @@ public class UserControllerTest {
         var user = manager.find(User.class, body.id());
         assertNotNull(user);
         assertEquals(username, user.username());
-        assertEquals(hasher.hash("1234"), user.password());
+        assertTrue(hasher.verify("1234", user.password()));
     }
 
     @Test
@@ -92,7 +93,7 @@ public class UserControllerTest {
         assertEquals(HttpStatus.NO_CONTENT, responseUpdate.getStatus());
         manager.refresh(user);
         assertNotNull(user);
-        assertEquals(hasher.hash("abcd"), user.password());
+        assertTrue(hasher.verify("abcd", user.password()));
     }
 
     @Test
@@ -1,8 +1,8 @@
 package com.kalia.friday.user;
 
 import com.kalia.friday.TestDbProperties;
+import com.kalia.friday.util.PasswordHasher;
 import com.kalia.friday.util.RepositoryResponse;
-import com.kalia.friday.util.SHA512Hasher;
 import io.micronaut.test.annotation.TransactionMode;
 import io.micronaut.test.extensions.junit5.annotation.MicronautTest;
 import jakarta.inject.Inject;
@@ -18,6 +18,7 @@ import java.util.UUID;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @MicronautTest(transactionMode = TransactionMode.SINGLE_TRANSACTION)
 @TestInstance(TestInstance.Lifecycle.PER_CLASS)
@@ -32,7 +33,7 @@ public class UserRepositoryTest {
     private EntityManager manager;
 
     @Inject
-    private SHA512Hasher hasher;
+    private PasswordHasher hasher;
 
     private User user;
 
@@ -87,7 +88,7 @@ public class UserRepositoryTest {
         assertEquals(saved.id(), fetched.id());
         assertEquals(saved.username(), fetched.username());
         assertEquals(saved.password(), fetched.password());
-        assertEquals(hasher.hash("1234"), fetched.password());
+        assertTrue(hasher.verify("1234", fetched.password()));
     }
 
     @Test
@@ -115,7 +116,7 @@ public class UserRepositoryTest {
         var response = repository.updatePassword(user.id(), "1234", "abcd");
         assertEquals(RepositoryResponse.Status.OK, response.status());
         var fetched = manager.find(User.class, user.id());
-        assertEquals(hasher.hash("abcd"), fetched.password());
+        assertTrue(hasher.verify("abcd", fetched.password()));
     }
 
     @Test
@@ -3,14 +3,55 @@ package com.kalia.friday.util;
 import biweekly.util.ByDay;
 import biweekly.util.DayOfWeek;
 import biweekly.util.Frequency;
+import com.kalia.friday.event.EventDTO;
+import com.kalia.friday.feed.FeedEvent;
 import org.junit.jupiter.api.Test;
 
+import java.io.StringReader;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
 import java.util.List;
+import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class BiWeeklyUtilsTest {
+    private static final String CALENDAR = """
+        BEGIN:VCALENDAR
+        VERSION:2.0
+        PRODID:test
+        BEGIN:VTIMEZONE
+        TZID:Custom/Zone
+        BEGIN:STANDARD
+        DTSTART:19700101T000000
+        TZOFFSETFROM:+0300
+        TZOFFSETTO:+0300
+        END:STANDARD
+        END:VTIMEZONE
+        BEGIN:VEVENT
+        UID:1
+        SUMMARY:first
+          event
+        DTSTART;TZID=Custom/Zone:20210601T100000
+        RRULE:FREQ=WEEKLY;INTERVAL=2;BYDAY=TU
+        BEGIN:VALARM
+        ACTION:DISPLAY
+        TRIGGER:-PT15M
+        END:VALARM
+        END:VEVENT
+        BEGIN:VEVENT
+        UID:2
+        SUMMARY:second
+        LOCATION:somewhere
+        DTSTART:20210602T100000Z
+        DTEND:20210602T110000Z
+        END:VEVENT
+        END:VCALENDAR
+        """;
 
     @Test
     public void shouldThrowWithNullParam() {
@@ -40,4 +81,83 @@ public class BiWeeklyUtilsTest {
             new ByDay(DayOfWeek.THURSDAY)
         ), recRule.getByDay());
     }
+
+    @Test
+    public void testEventStream() {
+        var userId = UUID.randomUUID();
+        var token = UUID.randomUUID();
+        List<EventDTO> events;
+        try (var stream = BiweeklyUtils.eventDTOStream(new StringReader(CALENDAR), userId, token)) {
+            events = stream.toList();
+        }
+        assertEquals(2, events.size());
+        var first = events.get(0);
+        assertEquals(userId, first.userId());
+        assertEquals(token, first.userToken());
+        assertEquals("first event", first.title());
+        assertEquals("FREQ=WEEKLY;BYDAY=TU", first.rrule());
+        var start = ZonedDateTime.of(2021, 6, 1, 10, 0, 0, 0, ZoneId.of("+03:00"));
+        assertEquals(start.withZoneSameInstant(ZoneId.systemDefault()).toLocalDateTime(), first.start());
+        assertNull(first.end());
+        var second = events.get(1);
+        assertEquals("second", second.title());
+        assertEquals("somewhere", second.place());
+        assertNull(second.rrule());
+        var end = ZonedDateTime.of(2021, 6, 2, 11, 0, 0, 0, ZoneId.of("Z"));
+        assertEquals(end.withZoneSameInstant(ZoneId.systemDefault()).toLocalDateTime(), second.end());
+    }
+
+    @Test
+    public void testEventStreamMatchesList() {
+        var userId = UUID.randomUUID();
+        var token = UUID.randomUUID();
+        try (var stream = BiweeklyUtils.eventDTOStream(new StringReader(CALENDAR), userId, token)) {
+            assertEquals(BiweeklyUtils.eventDTOListFromString(CALENDAR, userId, token), stream.toList());
+        }
+    }
+
+    @Test
+    public void testEventStreamIsLazy() {
+        var calendar = CALENDAR.replace("END:VCALENDAR\n", "BEGIN:VEVENT\nSUMMARY:unterminated\n");
+        try (var stream = BiweeklyUtils.eventDTOStream(new StringReader(calendar), UUID.randomUUID(), UUID.randomUUID())) {
+            assertEquals(2, stream.limit(2).count());
+        }
+        assertThrows(
+            IllegalArgumentException.class,
+            () -> BiweeklyUtils.eventDTOListFromString(calendar, UUID.randomUUID(), UUID.randomUUID())
+        );
+    }
+
+    @Test
+    public void testEventStreamRejectsTooLongEvent() {
+        var calendar = "BEGIN:VCALENDAR\r\nBEGIN:VEVENT\r\nDESCRIPTION:" +
+            "x".repeat(VEventReader.MAX_COMPONENT_LENGTH) + "\r\nEND:VEVENT\r\nEND:VCALENDAR\r\n";
+        assertThrows(
+            IllegalArgumentException.class,
+            () -> BiweeklyUtils.eventDTOListFromString(calendar, UUID.randomUUID(), UUID.randomUUID())
+        );
+    }
+
+    @Test
+    public void testFeedEventStream() {
+        var calendar = CALENDAR
+            .replace("UID:1\n", "UID:1\nSEQUENCE:2\nLAST-MODIFIED:20210601T120000Z\n")
+            .replace("UID:2\n", "");
+        List<FeedEvent> events;
+        try (var stream = BiweeklyUtils.feedEventStream(new StringReader(calendar))) {
+            events = stream.toList();
+        }
+        assertEquals(2, events.size());
+        var first = events.get(0);
+        assertEquals("1", first.uid());
+        assertEquals("2/" + Instant.parse("2021-06-01T12:00:00Z").toEpochMilli(), first.revision());
+        assertNull(first.event().userId());
+        assertEquals("first event", first.event().title());
+        var second = events.get(1);
+        assertTrue(second.uid().startsWith("hash:"));
+        assertTrue(second.revision().startsWith("hash:"));
+        try (var stream = BiweeklyUtils.feedEventStream(new StringReader(calendar))) {
+            assertEquals(events, stream.toList()); // the keys and revisions are stable
+        }
+    }
 }
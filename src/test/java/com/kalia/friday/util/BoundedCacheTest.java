@@ -0,0 +1,105 @@
+package com.kalia.friday.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class BoundedCacheTest {
+
+    @Test
+    public void testLoadsOnce() {
+        var cache = new BoundedCache<String, Integer>(2);
+        var loads = new AtomicInteger();
+        assertEquals(3, cache.get("foo", k -> loads.incrementAndGet() + 2));
+        assertEquals(3, cache.get("foo", k -> loads.incrementAndGet() + 2));
+        assertEquals(1, loads.get());
+        assertEquals(new BoundedCache.Stats(1, 1, 0, 1), cache.stats());
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsed() {
+        var cache = new BoundedCache<String, String>(2);
+        cache.get("a", k -> k);
+        cache.get("b", k -> k);
+        cache.get("a", k -> k);
+        cache.get("c", k -> k); // evicts b
+        cache.get("a", k -> k);
+        cache.get("b", k -> k + "!");
+        var stats = cache.stats();
+        assertEquals(2, stats.hits());
+        assertEquals(4, stats.misses());
+        assertEquals(2, stats.evictions());
+        assertEquals(2, stats.size());
+    }
+
+    @Test
+    public void testFailingLoaderStoresNothing() {
+        var cache = new BoundedCache<String, String>(2);
+        assertThrows(IllegalArgumentException.class, () -> cache.get("a", k -> {
+            throw new IllegalArgumentException();
+        }));
+        assertEquals(0, cache.stats().size());
+    }
+
+    @Test
+    public void testValueLoadedDuringInvalidationIsNotStored() {
+        var cache = new BoundedCache<String, String>(2);
+        assertEquals("a", cache.get("a", k -> {
+            cache.invalidate("b"); // a write committed while the value was read
+            return k;
+        }));
+        assertEquals(0, cache.stats().size());
+        assertEquals("a!", cache.get("a", k -> k + "!"));
+        assertEquals(1, cache.stats().size());
+    }
+
+    @Test
+    public void testInvalidate() {
+        var cache = new BoundedCache<String, String>(2);
+        cache.get("a", k -> k);
+        cache.invalidate("a");
+        assertEquals("a!", cache.get("a", k -> k + "!"));
+        cache.invalidateAll();
+        assertEquals(0, cache.stats().size());
+    }
+
+    @Test
+    public void testPutAndGetIfPresent() {
+        var cache = new BoundedCache<String, String>(1);
+        assertEquals(Optional.empty(), cache.getIfPresent("a"));
+        cache.put("a", "b");
+        assertEquals(Optional.of("b"), cache.getIfPresent("a"));
+        cache.put("c", "d"); // evicts a
+        assertEquals(Optional.empty(), cache.getIfPresent("a"));
+        assertEquals(new BoundedCache.Stats(1, 2, 1, 1), cache.stats());
+    }
+
+    @Test
+    public void testEvictsByWeight() {
+        var cache = new BoundedCache<String, String>(10, String::length);
+        cache.put("a", "1234");
+        cache.put("b", "1234");
+        cache.getIfPresent("a");
+        cache.put("c", "123"); // evicts b
+        assertEquals(new BoundedCache.Stats(1, 0, 1, 2, 7), cache.stats());
+        cache.put("a", "1"); // replaces the weight of a
+        assertEquals(4, cache.stats().weight());
+        cache.put("d", "12345678901"); // heavier than the cache, evicts everything
+        assertEquals(new BoundedCache.Stats(1, 0, 4, 0, 0), cache.stats());
+    }
+
+    @Test
+    public void testInvalidateIf() {
+        var cache = new BoundedCache<String, String>(10, String::length);
+        cache.put("a1", "12");
+        cache.put("a2", "123");
+        cache.put("b1", "1");
+        cache.invalidateIf(key -> key.startsWith("a"));
+        assertEquals(Optional.of("1"), cache.getIfPresent("b1"));
+        assertEquals(new BoundedCache.Stats(1, 0, 0, 1, 1), cache.stats());
+    }
+}
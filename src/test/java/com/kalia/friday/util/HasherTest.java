@@ -3,6 +3,12 @@ package com.kalia.friday.util;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+
 public class HasherTest {
 
     @Test
@@ -29,4 +35,40 @@ public class HasherTest {
 
         Assertions.assertEquals(hashed1, hashed2);
     }
+
+    @Test
+    public void testHasherConcurrently() throws InterruptedException, ExecutionException {
+        var threads = 32;
+        var iterations = 2_000;
+        var hasher = new SHA512Hasher();
+        var words = new String[threads];
+        var expected = new String[threads];
+        for (int i = 0; i < threads; i++) {
+            words[i] = "password" + i;
+            expected[i] = hasher.hash(words[i]);
+        }
+        var executor = Executors.newFixedThreadPool(threads);
+        try {
+            var start = new CountDownLatch(1);
+            var tasks = new ArrayList<Callable<Integer>>();
+            for (int i = 0; i < threads; i++) {
+                var index = i;
+                tasks.add(() -> {
+                    start.await();
+                    var mismatches = 0;
+                    for (int j = 0; j < iterations; j++) {
+                        if (!expected[index].equals(hasher.hash(words[index]))) mismatches++;
+                    }
+                    return mismatches;
+                });
+            }
+            var futures = tasks.stream().map(executor::submit).toList();
+            start.countDown();
+            for (var future : futures) {
+                Assertions.assertEquals(0, future.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
 }
@@ -0,0 +1,71 @@
+package com.kalia.friday.util;
+
+import io.micronaut.http.HttpResponse;
+import io.micronaut.http.HttpStatus;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class HashingExecutorTest {
+
+    @Test
+    public void testSubmit() throws ExecutionException, InterruptedException {
+        var executor = new HashingExecutor(2, 4);
+        try {
+            var response = executor.submit(() -> HttpResponse.ok("hashed")).get();
+            assertEquals(HttpStatus.OK, response.getStatus());
+            assertEquals("hashed", response.body());
+            var stats = executor.stats();
+            assertEquals(2, stats.threads());
+            assertEquals(4, stats.queueCapacity());
+            assertEquals(1, stats.completed());
+            assertEquals(0, stats.rejected());
+        } finally {
+            executor.stop();
+        }
+    }
+
+    @Test
+    public void testRejectWhenSaturated() throws ExecutionException, InterruptedException {
+        var executor = new HashingExecutor(1, 1);
+        var started = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        try {
+            var running = executor.submit(() -> {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return HttpResponse.ok();
+            });
+            started.await();
+            var queued = executor.submit(HttpResponse::ok);
+            var rejected = executor.submit(HttpResponse::ok);
+            assertTrue(rejected.isDone());
+            assertEquals(HttpStatus.SERVICE_UNAVAILABLE, rejected.get().getStatus());
+            var stats = executor.stats();
+            assertEquals(1, stats.active());
+            assertEquals(1, stats.queued());
+            assertEquals(1, stats.rejected());
+            release.countDown();
+            assertEquals(HttpStatus.OK, running.get().getStatus());
+            assertEquals(HttpStatus.OK, queued.get().getStatus());
+        } finally {
+            release.countDown();
+            executor.stop();
+        }
+    }
+
+    @Test
+    public void testInvalidSizes() {
+        assertThrows(IllegalArgumentException.class, () -> new HashingExecutor(-1, 1));
+        assertThrows(IllegalArgumentException.class, () -> new HashingExecutor(1, 0));
+    }
+}
@@ -0,0 +1,75 @@
+package com.kalia.friday.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PasswordHasherTest {
+    private static final Duration TARGET = Duration.ofMillis(100);
+
+    private static Pbkdf2PasswordHasher hasher(int iterations) {
+        return new Pbkdf2PasswordHasher(new SHA512Hasher(), iterations, false, TARGET);
+    }
+
+    @Test
+    public void testHashAndVerify() {
+        var hasher = hasher(Pbkdf2PasswordHasher.MIN_ITERATIONS);
+        var hashed1 = hasher.hash("APZOEI102938");
+        var hashed2 = hasher.hash("APZOEI102938");
+        assertNotEquals(hashed1, hashed2); // one salt per hash
+        assertTrue(hashed1.startsWith("$pbkdf2-sha512$10000$"));
+        assertTrue(hasher.verify("APZOEI102938", hashed1));
+        assertTrue(hasher.verify("APZOEI102938", hashed2));
+        assertFalse(hasher.verify("APZOEI10293", hashed1));
+        assertFalse(hasher.needsRehash(hashed1));
+    }
+
+    @Test
+    public void testLegacyHash() {
+        var hasher = hasher(Pbkdf2PasswordHasher.MIN_ITERATIONS);
+        var legacy = new SHA512Hasher().hash("APZOEI102938");
+        assertTrue(hasher.verify("APZOEI102938", legacy));
+        assertFalse(hasher.verify("APZOEI10293", legacy));
+        assertTrue(hasher.needsRehash(legacy));
+    }
+
+    @Test
+    public void testRehashWhenCostIncreases() {
+        var hashed = hasher(Pbkdf2PasswordHasher.MIN_ITERATIONS).hash("APZOEI102938");
+        var stronger = hasher(2 * Pbkdf2PasswordHasher.MIN_ITERATIONS);
+        assertTrue(stronger.verify("APZOEI102938", hashed));
+        assertTrue(stronger.needsRehash(hashed));
+    }
+
+    @Test
+    public void testMalformedHash() {
+        var hasher = hasher(Pbkdf2PasswordHasher.MIN_ITERATIONS);
+        assertFalse(hasher.verify("APZOEI102938", "$pbkdf2-sha512$abc$AAAA$AAAA"));
+        assertFalse(hasher.verify("APZOEI102938", "$pbkdf2-sha512$10000$AAAA"));
+        assertFalse(hasher.verify("APZOEI102938", "$pbkdf2-sha512$10000$!!$AAAA"));
+        assertTrue(hasher.needsRehash("$pbkdf2-sha512$abc$AAAA$AAAA"));
+    }
+
+    @Test
+    public void testCalibration() {
+        var hasher = new Pbkdf2PasswordHasher(new SHA512Hasher(), Pbkdf2PasswordHasher.MIN_ITERATIONS, true, TARGET);
+        assertTrue(hasher.iterations() >= Pbkdf2PasswordHasher.MIN_ITERATIONS);
+        assertTrue(hasher.verify("APZOEI102938", hasher.hash("APZOEI102938")));
+    }
+
+    @Test
+    public void testInvalidCost() {
+        assertThrows(IllegalArgumentException.class, () -> hasher(1));
+        assertThrows(
+            IllegalArgumentException.class,
+            () -> new Pbkdf2PasswordHasher(new SHA512Hasher(), Pbkdf2PasswordHasher.MIN_ITERATIONS, true, Duration.ZERO)
+        );
+        assertEquals(Pbkdf2PasswordHasher.MIN_ITERATIONS, hasher(Pbkdf2PasswordHasher.MIN_ITERATIONS).iterations());
+    }
+}
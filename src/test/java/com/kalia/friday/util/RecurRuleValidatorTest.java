@@ -0,0 +1,59 @@
+package com.kalia.friday.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RecurRuleValidatorTest {
+
+    @Test
+    public void testValidRules() {
+        var rules = List.of(
+            "FREQ=DAILY",
+            "freq=daily",
+            "INTERVAL=2;FREQ=DAILY",
+            "FREQ=DAILY;BYDAY=-1MO",
+            "FREQ=WEEKLY;INTERVAL=2;BYDAY=TU,WE,TH",
+            "FREQ=MONTHLY;BYMONTHDAY=-1,15;COUNT=10",
+            "FREQ=DAILY;UNTIL=20210101",
+            "FREQ=DAILY;UNTIL=20210101T000000Z",
+            "FREQ=YEARLY;WKST=SU;BYWEEKNO=20",
+            "FREQ=DAILY;FOO=BAR"
+        );
+        for (var rule : rules) {
+            assertTrue(RecurRuleValidator.isValid(rule), rule);
+        }
+    }
+
+    @Test
+    public void testInvalidRules() {
+        var rules = List.of(
+            "",
+            "FREQ=abc",
+            "INTERVAL=2",
+            "FREQ=DAILY;BYDAY=+1MO",
+            "FREQ=DAILY;BYDAY=1XX",
+            "FREQ=DAILY;INTERVAL=02",
+            "FREQ=DAILY;COUNT=-0",
+            "FREQ=DAILY;COUNT=2147483648",
+            "FREQ=DAILY;UNTIL=20210101T000000",
+            "FREQ=DAILY;BYMONTHDAY=1,,2",
+            "FREQ=DAILY;;",
+            "FREQ=DAILY;=1",
+            "FREQ=DAILY;BYDAY=MO;BYDAY=TU",
+            "FREQ=DAILY;FOO=BAR;foo=BAZ"
+        );
+        for (var rule : rules) {
+            assertFalse(RecurRuleValidator.isValid(rule), rule);
+        }
+    }
+
+    @Test
+    public void testNullRule() {
+        assertThrows(NullPointerException.class, () -> RecurRuleValidator.isValid(null));
+    }
+}
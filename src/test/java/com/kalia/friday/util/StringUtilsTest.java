@@ -55,4 +55,11 @@ public class StringUtilsTest {
     public void testNotNullOrBlankElseWithNotBlank() {
         assertEquals("bar", StringUtils.notNullOrBlankElse("bar", "foo"));
     }
+
+    @Test
+    public void testContentHashSeparatesFields() {
+        assertEquals(StringUtils.contentHash("a", null, 1), StringUtils.contentHash("a", null, 1));
+        assertNotEquals(StringUtils.contentHash("ab", "c"), StringUtils.contentHash("a", "bc"));
+        assertNotEquals(StringUtils.contentHash("a", null), StringUtils.contentHash("a", "null", null));
+    }
 }